@@ -28,7 +28,7 @@ public class MainActivity extends AppCompatActivity {
 
         currentTemperature.setText("25");
         targetTemperature.setText("20");
-        mVirtualThermostat.setCurrentTemperature("25");
+        mVirtualThermostat.setCurrentTemperature(25);
         mVirtualThermostat.setProgress(20);
 
         setEcoTemperatureRange();
@@ -55,13 +55,13 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onClick(View v) {
                 if(!currentTemperature.getText().toString().isEmpty()) {
-                    mVirtualThermostat.setCurrentTemperature(currentTemperature.getText().toString());
                     int temperature = Integer.parseInt(currentTemperature.getText().toString());
+                    mVirtualThermostat.setCurrentTemperature(temperature, true);
                     int color = (temperature < 18)? COLOR_COLD : COLOR_HEAT;
-                    mVirtualThermostat.setBackgroundColor(color);
+                    mVirtualThermostat.setBackgroundColor(color, true);
                 }
                 if(!targetTemperature.getText().toString().isEmpty())
-                    mVirtualThermostat.setProgress(Integer.parseInt(targetTemperature.getText().toString()));
+                    mVirtualThermostat.setProgress(Integer.parseInt(targetTemperature.getText().toString()), true);
             }
         });
 
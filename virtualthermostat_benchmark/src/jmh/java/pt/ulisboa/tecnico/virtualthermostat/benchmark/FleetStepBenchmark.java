@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import pt.ulisboa.tecnico.virtualthermostat.core.FleetSimulator;
+
+/**
+ * 
+ * FleetStepBenchmark.java
+ * 
+ * One simulated minute of a whole fleet (FleetSimulator.step), on the
+ * benchmark thread and split across a thread pool with one thread per
+ * core. Thermostats stepped per second is count times the throughput.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FleetStepBenchmark {
+
+	private static final int MINUTE = 60 * 1000;
+
+	@Param({"100000"})
+	public int count;
+
+	private FleetSimulator mFleet;
+	private ExecutorService mPool;
+
+	@Setup
+	public void setUp() {
+		mFleet = new FleetSimulator(count, 15, 35, 42);
+		mFleet.setLeafRange(15, 18);
+		mPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	@TearDown
+	public void tearDown() {
+		mPool.shutdown();
+	}
+
+	@Benchmark
+	public long stepSequential() {
+		mFleet.step(MINUTE);
+		return mFleet.getNowMillis();
+	}
+
+	@Benchmark
+	public long stepParallel() {
+		mFleet.step(mPool, MINUTE);
+		return mFleet.getNowMillis();
+	}
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import pt.ulisboa.tecnico.virtualthermostat.core.ArcGeometry;
+
+/**
+ * 
+ * ThumbPositionBenchmark.java
+ * 
+ * Thumb and setpoint label positions for a step, from the precomputed
+ * ArcGeometry table and, as a baseline, with the trigonometry the widget
+ * used to run on every update.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ThumbPositionBenchmark {
+
+	private static final int STEPS = 20;
+	private static final int RADIUS = 500;
+	private static final int START_ANGLE = 60;
+	private static final int SWEEP_ANGLE = 240;
+	private static final int ROTATION = 180;
+
+	private ArcGeometry mGeometry;
+	private int mNext;
+
+	@Setup
+	public void setUp() {
+		mGeometry = new ArcGeometry();
+		mGeometry.update(STEPS, RADIUS, START_ANGLE, SWEEP_ANGLE, ROTATION);
+	}
+
+	@Benchmark
+	public void table(Blackhole blackhole) {
+		int step = mNext++ % (STEPS + 1);
+		blackhole.consume(mGeometry.getThumbX(step));
+		blackhole.consume(mGeometry.getThumbY(step));
+		blackhole.consume(mGeometry.getLabelX(step));
+		blackhole.consume(mGeometry.getLabelY(step));
+	}
+
+	@Benchmark
+	public void trigonometry(Blackhole blackhole) {
+		int step = mNext++ % (STEPS + 1);
+		float sweep = (float) step / STEPS * SWEEP_ANGLE;
+		int thumbAngle = (int) (START_ANGLE + sweep + ROTATION + 90);
+		blackhole.consume((int) (RADIUS * Math.cos(Math.toRadians(thumbAngle))));
+		blackhole.consume((int) (RADIUS * Math.sin(Math.toRadians(thumbAngle))));
+		blackhole.consume((int) (RADIUS * Math.cos(Math.toRadians(thumbAngle + 10))));
+		blackhole.consume((int) (RADIUS * Math.sin(Math.toRadians(thumbAngle + 10))));
+	}
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.benchmark;
+
+/**
+ * 
+ * TouchPoints.java
+ * 
+ * Touch positions around a dial, relative to its center, replayed by the
+ * benchmarks so every invocation sees a different angle.
+ * 
+ */
+final class TouchPoints {
+
+	static final int COUNT = 1024;
+	static final int MASK = COUNT - 1;
+
+	final float[] x = new float[COUNT];
+	final float[] y = new float[COUNT];
+
+	TouchPoints(float radius) {
+		for (int i = 0; i < COUNT; i++) {
+			double angle = 2 * Math.PI * i / COUNT;
+			x[i] = (float) (radius * Math.cos(angle));
+			y[i] = (float) (radius * Math.sin(angle));
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import pt.ulisboa.tecnico.virtualthermostat.core.ArcGeometry;
+
+/**
+ * 
+ * TouchToProgressBenchmark.java
+ * 
+ * The work done for every touch sample: the touch position to arc angle
+ * conversion (getTouchDegrees) and the angle to step lookup
+ * (getProgressForAngle).
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TouchToProgressBenchmark {
+
+	@Param({"20", "100"})
+	public int steps;
+
+	private ArcGeometry mGeometry;
+	private TouchPoints mTouches;
+	private int mIndex;
+
+	@Setup
+	public void setUp() {
+		mGeometry = new ArcGeometry();
+		mGeometry.update(steps, 500, 60, 240, 180);
+		mTouches = new TouchPoints(450);
+	}
+
+	@Benchmark
+	public int touchToProgress() {
+		int i = mIndex++ & TouchPoints.MASK;
+		double angle = mGeometry.getTouchDegrees(mTouches.x[i], mTouches.y[i], true);
+		return mGeometry.getStepForAngle(angle);
+	}
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import pt.ulisboa.tecnico.virtualthermostat.core.ArcGeometry;
+import pt.ulisboa.tecnico.virtualthermostat.core.ThermostatModel;
+
+/**
+ * 
+ * UpdateProgressBenchmark.java
+ * 
+ * The platform independent part of VirtualThermostat.updateProgress:
+ * clamping the new step, storing it in the model and looking up the sweep
+ * and thumb/label positions.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UpdateProgressBenchmark {
+
+	@Param({"20", "100"})
+	public int steps;
+
+	private ThermostatModel mModel;
+	private ArcGeometry mGeometry;
+	private int mNext;
+
+	@Setup
+	public void setUp() {
+		mModel = new ThermostatModel(15, 15 + steps);
+		mGeometry = new ArcGeometry();
+		mGeometry.update(steps, 500, 60, 240, 180);
+	}
+
+	@Benchmark
+	public void updateProgress(Blackhole blackhole) {
+		// Walks past both ends of the range so clamping is exercised
+		int step = mModel.clampStep((mNext++ % (steps + 10)) - 5);
+		blackhole.consume(mModel.setStep(step));
+		blackhole.consume(mGeometry.getSweep(step));
+		blackhole.consume(mGeometry.getThumbX(step));
+		blackhole.consume(mGeometry.getThumbY(step));
+		blackhole.consume(mGeometry.getLabelX(step));
+		blackhole.consume(mGeometry.getLabelY(step));
+		blackhole.consume(mModel.isInLeafRange());
+	}
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+/**
+ * 
+ * ArcGeometry.java
+ * 
+ * Precomputed positions of the thumb and of the setpoint label for every
+ * progress step of a thermostat dial, so that moving the thumb is a table
+ * lookup instead of four trigonometric calls. The table is rebuilt when the
+ * size or the arc angles change. Also converts touch positions back to steps.
+ *
+ * Positions are offsets from the center of the arc, to be subtracted from
+ * it, the same convention VirtualThermostat has always used. Not thread
+ * safe.
+ * 
+ */
+public class ArcGeometry {
+
+	public static final int INVALID_STEP = ThermostatModel.INVALID_STEP;
+
+	/**
+	 * Angle between the thumb and the setpoint label, in degrees
+	 */
+	private static final int LABEL_ANGLE_OFFSET = 10;
+
+	private int mMax = -1;
+	private int mRadius;
+	private int mStartAngle;
+	private int mRotation;
+	private float mStepsPerDegree;
+	private float[] mSweep = new float[0];
+	private int[] mThumbX = new int[0];
+	private int[] mThumbY = new int[0];
+	private int[] mLabelX = new int[0];
+	private int[] mLabelY = new int[0];
+
+	/**
+	 * Rebuilds the table.
+	 *
+	 * @param max
+	 *            The number of steps, positions are computed for 0..max
+	 * @param radius
+	 *            The radius of the arc
+	 * @param startAngle
+	 *            The angle the arc starts at
+	 * @param sweepAngle
+	 *            The angle the arc covers
+	 * @param rotation
+	 *            The rotation of the arc
+	 */
+	public void update(int max, int radius, int startAngle, int sweepAngle, int rotation) {
+		max = (max < 0) ? 0 : max;
+		if (mSweep.length < max + 1) {
+			mSweep = new float[max + 1];
+			mThumbX = new int[max + 1];
+			mThumbY = new int[max + 1];
+			mLabelX = new int[max + 1];
+			mLabelY = new int[max + 1];
+		}
+		mMax = max;
+		mRadius = radius;
+		mStartAngle = startAngle;
+		mRotation = rotation;
+		mStepsPerDegree = (sweepAngle == 0) ? 0 : (float) max / sweepAngle;
+
+		for (int step = 0; step <= max; step++) {
+			float sweep = (max == 0) ? 0 : (float) step / max * sweepAngle;
+			int thumbAngle = (int) (startAngle + sweep + rotation + 90);
+			double thumbRadians = Math.toRadians(thumbAngle);
+			double labelRadians = Math.toRadians(thumbAngle + LABEL_ANGLE_OFFSET);
+			mSweep[step] = sweep;
+			mThumbX[step] = (int) (radius * Math.cos(thumbRadians));
+			mThumbY[step] = (int) (radius * Math.sin(thumbRadians));
+			mLabelX[step] = (int) (radius * Math.cos(labelRadians));
+			mLabelY[step] = (int) (radius * Math.sin(labelRadians));
+		}
+	}
+
+	public int getMax() {
+		return mMax;
+	}
+
+	public float getSweep(int step) {
+		return mSweep[step];
+	}
+
+	public int getThumbX(int step) {
+		return mThumbX[step];
+	}
+
+	public int getThumbY(int step) {
+		return mThumbY[step];
+	}
+
+	public int getLabelX(int step) {
+		return mLabelX[step];
+	}
+
+	public int getLabelY(int step) {
+		return mLabelY[step];
+	}
+
+	/**
+	 * Returns the step whose sweep is closest to the given one.
+	 */
+	public int getStepForSweep(float sweep) {
+		if (mMax <= 0) {
+			return 0;
+		}
+		int step = Math.round(sweep / mSweep[mMax] * mMax);
+		return (step < 0) ? 0 : (step > mMax) ? mMax : step;
+	}
+
+	/**
+	 * Computes the thumb and label offsets for a sweep that is not on a step,
+	 * used while animating. Same formula as the table, but with trigonometry.
+	 *
+	 * @param sweep
+	 *            The sweep of the progress arc
+	 * @param out
+	 *            Receives the thumb x, thumb y, label x and label y offsets
+	 */
+	public void getPositionsForSweep(float sweep, int[] out) {
+		int thumbAngle = (int) (mStartAngle + sweep + mRotation + 90);
+		double thumbRadians = Math.toRadians(thumbAngle);
+		double labelRadians = Math.toRadians(thumbAngle + LABEL_ANGLE_OFFSET);
+		out[0] = (int) (mRadius * Math.cos(thumbRadians));
+		out[1] = (int) (mRadius * Math.sin(thumbRadians));
+		out[2] = (int) (mRadius * Math.cos(labelRadians));
+		out[3] = (int) (mRadius * Math.sin(labelRadians));
+	}
+
+	/**
+	 * Returns the step closest to an angle measured from the start of the
+	 * arc, or INVALID_STEP if the angle is outside of the arc.
+	 */
+	public int getStepForAngle(double angle) {
+		int step = (int) Math.round(mStepsPerDegree * angle);
+		return (step < 0 || step > mMax) ? INVALID_STEP : step;
+	}
+
+	/**
+	 * Converts a touch position to an angle measured from the start of the
+	 * arc, in degrees.
+	 *
+	 * @param x
+	 *            The horizontal distance of the touch from the arc center
+	 * @param y
+	 *            The vertical distance of the touch from the arc center
+	 * @param clockwise
+	 *            False if the dial is mirrored
+	 */
+	public double getTouchDegrees(float x, float y, boolean clockwise) {
+		//invert the x-coord if we are rotating anti-clockwise
+		x = (clockwise) ? x : -x;
+		// convert to arc Angle
+		double angle = Math.toDegrees(Math.atan2(y, x) + (Math.PI / 2)
+				- Math.toRadians(mRotation));
+		if (angle < 0) {
+			angle = 360 + angle;
+		}
+		angle -= mStartAngle;
+		return angle;
+	}
+}
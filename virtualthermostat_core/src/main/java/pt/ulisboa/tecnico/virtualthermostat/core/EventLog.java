@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 
+ * EventLog.java
+ * 
+ * An append-only log of fixed-size thermostat events written through a
+ * memory map. The file grows a chunk at a time, appending is a few stores
+ * into the mapped chunk, and {@link #flush()} forces the new records to
+ * disk before it updates the record count in the header, so after a crash
+ * the log ends at the last flush. Reopening a log appends after its last
+ * flushed record. Read it back with {@link EventLogReader}.
+ * 
+ * The file is big-endian:
+ * 
+ * <pre>
+ * int   magic, "VTEL"
+ * int   version, 1
+ * long  number of records
+ * every record:
+ *     long  time, milliseconds since the epoch
+ *     short source, the thermostat or zone that logged it
+ *     short type, one of the TYPE_ constants
+ *     int   value, a setpoint or tenths of a degree
+ * </pre>
+ * 
+ * Not thread safe, {@link EventRecorder} appends from a background thread.
+ * 
+ */
+public final class EventLog implements Closeable {
+
+	/**
+	 * The user moved the setpoint, the value is the setpoint.
+	 */
+	public static final int TYPE_SETPOINT = 1;
+	/**
+	 * The user ended a gesture, the value is the setpoint it ended on.
+	 */
+	public static final int TYPE_SETPOINT_COMMITTED = 2;
+	/**
+	 * A current temperature was shown, the value is in tenths of a degree.
+	 */
+	public static final int TYPE_CURRENT_TEMPERATURE = 3;
+
+	static final int MAGIC = 0x5654454C;
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 16;
+	static final int RECORD_BYTES = 16;
+	static final int CHUNK_RECORDS = 64 * 1024;
+	static final int CHUNK_BYTES = CHUNK_RECORDS * RECORD_BYTES;
+
+	private static final int COUNT_OFFSET = 8;
+
+	private final RandomAccessFile mFile;
+	private final FileChannel mChannel;
+	private final MappedByteBuffer mHeader;
+	private MappedByteBuffer mChunk;
+	private long mChunkIndex = -1;
+	private long mCount;
+	private long mFlushedCount;
+
+	private EventLog(RandomAccessFile file) throws IOException {
+		mFile = file;
+		mChannel = file.getChannel();
+		boolean created = mChannel.size() == 0;
+		mHeader = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		if (created) {
+			mHeader.putInt(0, MAGIC);
+			mHeader.putInt(4, VERSION);
+			mHeader.putLong(COUNT_OFFSET, 0);
+			mHeader.force();
+		} else {
+			checkHeader(mHeader.getInt(0), mHeader.getInt(4));
+		}
+		mCount = mHeader.getLong(COUNT_OFFSET);
+		if (mCount < 0) {
+			throw new IOException("corrupt event log, record count " + mCount);
+		}
+		mFlushedCount = mCount;
+	}
+
+	/**
+	 * Opens a log for appending, creating the file if it does not exist.
+	 *
+	 * @throws IOException
+	 *             If the file cannot be written or is not an event log
+	 */
+	public static EventLog open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			return new EventLog(raf);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		} catch (RuntimeException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	static void checkHeader(int magic, int version) throws IOException {
+		if (magic != MAGIC) {
+			throw new IOException("not an event log");
+		}
+		if (version != VERSION) {
+			throw new IOException("unsupported event log version " + version);
+		}
+	}
+
+	/**
+	 * Returns the number of records, flushed or not.
+	 */
+	public long getRecordCount() {
+		return mCount;
+	}
+
+	/**
+	 * Appends a record, it is durable after the next {@link #flush()}.
+	 */
+	public void append(long timeMillis, int source, int type, int value) throws IOException {
+		long chunk = mCount / CHUNK_RECORDS;
+		if (chunk != mChunkIndex) {
+			mapChunk(chunk);
+		}
+		int offset = (int) (mCount % CHUNK_RECORDS) * RECORD_BYTES;
+		mChunk.putLong(offset, timeMillis);
+		mChunk.putShort(offset + 8, (short) source);
+		mChunk.putShort(offset + 10, (short) type);
+		mChunk.putInt(offset + 12, value);
+		mCount++;
+	}
+
+	/**
+	 * Forces the records appended since the last flush to disk, then
+	 * records their count in the header.
+	 */
+	public void flush() {
+		if (mCount == mFlushedCount) {
+			return;
+		}
+		if (mChunk != null) {
+			mChunk.force();
+		}
+		mHeader.putLong(COUNT_OFFSET, mCount);
+		mHeader.force();
+		mFlushedCount = mCount;
+	}
+
+	/**
+	 * Flushes and closes the log.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		// The maps stay valid until they are garbage collected
+		mFile.close();
+	}
+
+	private void mapChunk(long chunk) throws IOException {
+		if (mChunk != null) {
+			// Records of the previous chunk must be on disk before the count
+			// in the header can cover them
+			mChunk.force();
+		}
+		long position = HEADER_BYTES + chunk * CHUNK_BYTES;
+		mChunk = mChannel.map(FileChannel.MapMode.READ_WRITE, position, CHUNK_BYTES);
+		mChunkIndex = chunk;
+	}
+}
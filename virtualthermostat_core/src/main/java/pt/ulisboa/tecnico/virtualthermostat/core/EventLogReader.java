@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 
+ * EventLogReader.java
+ * 
+ * A cursor over the flushed records of an {@link EventLog}, in the order
+ * they were appended. The log is mapped read-only a chunk at a time and
+ * the cursor reads fields straight from the map, so replaying or
+ * exporting a log allocates nothing per record:
+ * 
+ * <pre>
+ * EventLogReader reader = EventLogReader.open(file);
+ * while (reader.next()) {
+ *     export(reader.getTimeMillis(), reader.getType(), reader.getValue());
+ * }
+ * reader.close();
+ * </pre>
+ * 
+ * Records appended after the reader was opened are not seen. Not thread
+ * safe.
+ * 
+ */
+public final class EventLogReader implements Closeable {
+
+	private final RandomAccessFile mFile;
+	private final FileChannel mChannel;
+	private final long mCount;
+	private MappedByteBuffer mChunk;
+	private long mChunkIndex = -1;
+	private long mIndex = -1;
+	private int mOffset;
+
+	private EventLogReader(RandomAccessFile file) throws IOException {
+		mFile = file;
+		mChannel = file.getChannel();
+		if (mChannel.size() < EventLog.HEADER_BYTES) {
+			throw new IOException("not an event log");
+		}
+		MappedByteBuffer header = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, EventLog.HEADER_BYTES);
+		EventLog.checkHeader(header.getInt(0), header.getInt(4));
+		mCount = header.getLong(8);
+		long end = EventLog.HEADER_BYTES + mCount * EventLog.RECORD_BYTES;
+		if (mCount < 0 || end > mChannel.size()) {
+			throw new IOException("truncated event log");
+		}
+	}
+
+	/**
+	 * Maps an event log file for reading.
+	 *
+	 * @throws IOException
+	 *             If the file cannot be read or is not an event log
+	 */
+	public static EventLogReader open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return new EventLogReader(raf);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		} catch (RuntimeException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the number of records in the log when it was opened.
+	 */
+	public long getRecordCount() {
+		return mCount;
+	}
+
+	/**
+	 * Returns the index of the current record, -1 before the first call to
+	 * {@link #next()}.
+	 */
+	public long getIndex() {
+		return mIndex;
+	}
+
+	/**
+	 * Moves to the next record.
+	 *
+	 * @return False if there are no more records
+	 */
+	public boolean next() throws IOException {
+		if (mIndex + 1 >= mCount) {
+			mIndex = mCount;
+			return false;
+		}
+		mIndex++;
+		long chunk = mIndex / EventLog.CHUNK_RECORDS;
+		if (chunk != mChunkIndex) {
+			mapChunk(chunk);
+		}
+		mOffset = (int) (mIndex % EventLog.CHUNK_RECORDS) * EventLog.RECORD_BYTES;
+		return true;
+	}
+
+	public long getTimeMillis() {
+		return mChunk.getLong(mOffset);
+	}
+
+	public int getSource() {
+		return mChunk.getShort(mOffset + 8);
+	}
+
+	/**
+	 * Returns one of the EventLog.TYPE_ constants.
+	 */
+	public int getType() {
+		return mChunk.getShort(mOffset + 10);
+	}
+
+	public int getValue() {
+		return mChunk.getInt(mOffset + 12);
+	}
+
+	@Override
+	public void close() throws IOException {
+		// The map stays valid until it is garbage collected
+		mFile.close();
+	}
+
+	private void mapChunk(long chunk) throws IOException {
+		long position = EventLog.HEADER_BYTES + chunk * EventLog.CHUNK_BYTES;
+		long records = Math.min(EventLog.CHUNK_RECORDS, mCount - chunk * EventLog.CHUNK_RECORDS);
+		mChunk = mChannel.map(FileChannel.MapMode.READ_ONLY, position, records * EventLog.RECORD_BYTES);
+		mChunkIndex = chunk;
+	}
+}
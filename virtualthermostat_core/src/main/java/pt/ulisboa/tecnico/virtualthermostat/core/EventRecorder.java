@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 
+ * EventRecorder.java
+ * 
+ * Records thermostat events into an {@link EventLog} without doing any I/O
+ * on the recording thread. {@link #record} stores the event in a ring of
+ * primitive arrays and returns, a background thread moves the recorded
+ * events into the log and flushes it once per flush interval, so a burst
+ * of events costs one flush.
+ * 
+ * Recording never blocks or allocates: if the ring is full because the
+ * background thread fell behind, the event is dropped and counted, see
+ * {@link #getDroppedCount()}. Events must be recorded from one thread at a
+ * time, usually the UI thread.
+ * 
+ */
+public final class EventRecorder implements Closeable {
+
+	private static final int DEFAULT_CAPACITY = 4096;
+	private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+	private final EventLog mLog;
+	private final long mFlushIntervalNanos;
+	private final int mMask;
+	private final long[] mTimes;
+	private final int[] mSourceTypes;
+	private final int[] mValues;
+
+	// Written by the recording thread, read by the writer
+	private final AtomicLong mHead = new AtomicLong();
+	// Written by the writer, read by the recording thread
+	private final AtomicLong mTail = new AtomicLong();
+	private final AtomicLong mDropped = new AtomicLong();
+
+	private final Thread mWriter;
+	private volatile boolean mClosed;
+	private volatile IOException mError;
+
+	/**
+	 * Records into a log, holding up to 4096 events between flushes which
+	 * are done every second.
+	 */
+	public EventRecorder(EventLog log) {
+		this(log, DEFAULT_CAPACITY, DEFAULT_FLUSH_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * @param log
+	 *            The log to append to, owned by the recorder until it is
+	 *            closed
+	 * @param capacity
+	 *            The number of events held before they are written, a power
+	 *            of two
+	 * @param flushIntervalMillis
+	 *            How often the log is flushed when there are new events
+	 */
+	public EventRecorder(EventLog log, int capacity, long flushIntervalMillis) {
+		if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+			throw new IllegalArgumentException("capacity is not a power of two: " + capacity);
+		}
+		if (flushIntervalMillis <= 0) {
+			throw new IllegalArgumentException("flushIntervalMillis <= 0: " + flushIntervalMillis);
+		}
+		mLog = log;
+		mFlushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+		mMask = capacity - 1;
+		mTimes = new long[capacity];
+		mSourceTypes = new int[capacity];
+		mValues = new int[capacity];
+		mWriter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "EventRecorder");
+		mWriter.setDaemon(true);
+		mWriter.start();
+	}
+
+	/**
+	 * Records an event stamped with the current time.
+	 *
+	 * @param source
+	 *            The thermostat or zone the event is about
+	 * @param type
+	 *            One of the EventLog.TYPE_ constants
+	 */
+	public void record(int source, int type, int value) {
+		record(System.currentTimeMillis(), source, type, value);
+	}
+
+	/**
+	 * Records an event.
+	 *
+	 * @return False if it was dropped because the recorder is full or closed
+	 */
+	public boolean record(long timeMillis, int source, int type, int value) {
+		long head = mHead.get();
+		if (mClosed || head - mTail.get() > mMask) {
+			mDropped.incrementAndGet();
+			return false;
+		}
+		int slot = (int) head & mMask;
+		mTimes[slot] = timeMillis;
+		mSourceTypes[slot] = (source << 16) | (type & 0xFFFF);
+		mValues[slot] = value;
+		// Publishes the slot to the writer
+		mHead.lazySet(head + 1);
+		if (head - mTail.get() == mMask >> 1) {
+			// Half full, write now instead of waiting for the interval
+			LockSupport.unpark(mWriter);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of events dropped because the recorder was full.
+	 */
+	public long getDroppedCount() {
+		return mDropped.get();
+	}
+
+	/**
+	 * Writes and flushes the recorded events, stops the background thread
+	 * and closes the log.
+	 *
+	 * @throws IOException
+	 *             If writing to the log failed, now or on the background
+	 *             thread
+	 */
+	@Override
+	public void close() throws IOException {
+		if (mClosed) {
+			return;
+		}
+		mClosed = true;
+		LockSupport.unpark(mWriter);
+		boolean interrupted = false;
+		while (mWriter.isAlive()) {
+			try {
+				mWriter.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			mLog.close();
+		} catch (IOException e) {
+			if (mError == null) {
+				mError = e;
+			}
+		}
+		if (mError != null) {
+			throw mError;
+		}
+	}
+
+	private void writeLoop() {
+		while (true) {
+			boolean closed = mClosed;
+			try {
+				drain();
+				mLog.flush();
+			} catch (IOException e) {
+				// Stop writing, the error is reported by close()
+				mError = e;
+				return;
+			}
+			if (closed) {
+				return;
+			}
+			LockSupport.parkNanos(this, mFlushIntervalNanos);
+		}
+	}
+
+	private void drain() throws IOException {
+		long tail = mTail.get();
+		long head = mHead.get();
+		while (tail < head) {
+			int slot = (int) tail & mMask;
+			int sourceType = mSourceTypes[slot];
+			mLog.append(mTimes[slot], sourceType >> 16, (short) sourceType, mValues[slot]);
+			tail++;
+			// Frees the slot for the recording thread
+			mTail.lazySet(tail);
+		}
+	}
+}
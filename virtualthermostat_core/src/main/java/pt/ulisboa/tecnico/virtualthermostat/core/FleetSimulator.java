@@ -0,0 +1,405 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * 
+ * FleetSimulator.java
+ * 
+ * A headless simulation of many thermostats, each heating or cooling a room
+ * towards its setpoint, for load testing without devices. Setpoints follow
+ * the widget: the range, clamping and eco (leaf) range are those of a
+ * {@link ThermostatModel} shared by the fleet, which keeps only the step of
+ * each thermostat.
+ * 
+ * Every room loses heat to the outside in proportion to the difference of
+ * temperature, at a rate drawn per room from the seed. A thermostat starts
+ * heating when the room falls below setpoint - hysteresis and stops once
+ * it reaches setpoint + hysteresis, and cools the other way round. Rooms
+ * whose setpoint is in the eco range use the wider eco hysteresis, trading
+ * comfort for fewer cycles.
+ * 
+ * State is kept as one primitive array per property. Time only moves with
+ * {@link #step}, and the per step noise is a hash of the seed, the room and
+ * the step number, so a run is the same for a seed whether it is stepped on
+ * one thread or split across an Executor. Not thread safe, apart from the
+ * parallel step itself.
+ * 
+ */
+public class FleetSimulator {
+
+	public static final int MODE_IDLE = 0;
+	public static final int MODE_HEATING = 1;
+	public static final int MODE_COOLING = -1;
+
+	// Rooms per parallel task, large enough to amortize the task overhead
+	private static final int STEP_GRAIN = 8192;
+
+	// Heating and cooling power, in tenths of a degree per second (5 degrees
+	// an hour)
+	private static final float HVAC_RATE = 50f / 3600;
+	// Heat loss per second per degree of difference, a room loses half of
+	// the difference to the outside in 4 to 12 hours
+	private static final float LOSS_MIN = 0.693f / (12 * 3600);
+	private static final float LOSS_MAX = 0.693f / (4 * 3600);
+	// Amplitude of the per step noise, in tenths of a degree
+	private static final float NOISE = 0.2f;
+
+	// The range and eco range, its own setpoint is unused
+	private final ThermostatModel mModel;
+	private final long mSeed;
+
+	private final int[] mSteps;
+	private final float[] mTemperatures;
+	private final float[] mLoss;
+	private final byte[] mModes;
+	private final long[] mHeatingMillis;
+	private final long[] mCoolingMillis;
+
+	private int mHysteresisTenths = 5;
+	private int mEcoHysteresisTenths = 10;
+	private int mOutdoorTenths = 50;
+	private long mNowMillis;
+	private long mTick;
+
+	/**
+	 * @param count
+	 *            The number of thermostats
+	 * @param min
+	 *            The lowest setpoint
+	 * @param max
+	 *            The highest setpoint
+	 * @param seed
+	 *            The seed of the room properties and of the noise
+	 */
+	public FleetSimulator(int count, int min, int max, long seed) {
+		if (count < 0) {
+			throw new IllegalArgumentException("count < 0: " + count);
+		}
+		if (max < min) {
+			throw new IllegalArgumentException("max < min: " + max + " < " + min);
+		}
+		mModel = new ThermostatModel(min, max);
+		mSeed = seed;
+		mSteps = new int[count];
+		mTemperatures = new float[count];
+		mLoss = new float[count];
+		mModes = new byte[count];
+		mHeatingMillis = new long[count];
+		mCoolingMillis = new long[count];
+
+		// Setpoints at the middle of the range, rooms within 5 degrees of it
+		int middle = mModel.getSteps() / 2;
+		for (int i = 0; i < count; i++) {
+			mSteps[i] = middle;
+			mTemperatures[i] = (min + middle) * 10 + (unit(seed, i, -1) - 0.5f) * 100;
+			mLoss[i] = LOSS_MIN + unit(seed, i, -2) * (LOSS_MAX - LOSS_MIN);
+		}
+	}
+
+	public int getCount() {
+		return mSteps.length;
+	}
+
+	public int getMin() {
+		return mModel.getMin();
+	}
+
+	public int getMax() {
+		return mModel.getMax();
+	}
+
+	public long getSeed() {
+		return mSeed;
+	}
+
+	/**
+	 * Returns the simulated time, in milliseconds since the start.
+	 */
+	public long getNowMillis() {
+		return mNowMillis;
+	}
+
+	public int getSetpoint(int thermostat) {
+		return mModel.getMin() + mSteps[thermostat];
+	}
+
+	/**
+	 * Sets the setpoint of a thermostat, clamped to the range.
+	 *
+	 * @return True if the setpoint changed
+	 */
+	public boolean setSetpoint(int thermostat, int setpoint) {
+		int step = mModel.clampStep(setpoint - mModel.getMin());
+		if (mSteps[thermostat] == step) {
+			return false;
+		}
+		mSteps[thermostat] = step;
+		return true;
+	}
+
+	/**
+	 * Sets the range of setpoints using the eco hysteresis, both limits
+	 * included.
+	 */
+	public void setLeafRange(int downLimit, int upperLimit) {
+		mModel.setLeafRange(downLimit, upperLimit);
+	}
+
+	public boolean isInLeafRange(int thermostat) {
+		return mModel.isInLeafRange(getSetpoint(thermostat));
+	}
+
+	/**
+	 * Sets how far past the setpoint, in tenths of a degree, a room goes
+	 * before the thermostat switches.
+	 *
+	 * @param tenths
+	 *            The hysteresis outside the eco range
+	 * @param ecoTenths
+	 *            The hysteresis in the eco range
+	 */
+	public void setHysteresisTenths(int tenths, int ecoTenths) {
+		if (tenths < 0 || ecoTenths < 0) {
+			throw new IllegalArgumentException("negative hysteresis: " + tenths + ", " + ecoTenths);
+		}
+		mHysteresisTenths = tenths;
+		mEcoHysteresisTenths = ecoTenths;
+	}
+
+	public void setOutdoorTemperatureTenths(int tenths) {
+		mOutdoorTenths = tenths;
+	}
+
+	public int getOutdoorTemperatureTenths() {
+		return mOutdoorTenths;
+	}
+
+	/**
+	 * Returns the room temperature of a thermostat in tenths of a degree,
+	 * as the widget shows it.
+	 */
+	public int getCurrentTemperatureTenths(int thermostat) {
+		return Math.round(mTemperatures[thermostat]);
+	}
+
+	/**
+	 * Returns MODE_IDLE, MODE_HEATING or MODE_COOLING.
+	 */
+	public int getMode(int thermostat) {
+		return mModes[thermostat];
+	}
+
+	/**
+	 * Returns the simulated time the thermostat has spent heating.
+	 */
+	public long getHeatingMillis(int thermostat) {
+		return mHeatingMillis[thermostat];
+	}
+
+	public long getCoolingMillis(int thermostat) {
+		return mCoolingMillis[thermostat];
+	}
+
+	/**
+	 * Returns the number of thermostats in a mode.
+	 */
+	public int countMode(int mode) {
+		int count = 0;
+		for (byte m : mModes) {
+			if (m == mode) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Advances every thermostat by some simulated time on the calling thread.
+	 */
+	public void step(int deltaMillis) {
+		checkDelta(deltaMillis);
+		stepRange(0, mSteps.length, deltaMillis, mTick);
+		advance(deltaMillis);
+	}
+
+	/**
+	 * Advances every thermostat by some simulated time, split into tasks run
+	 * on an executor, and waits for them. The result is the same as
+	 * {@link #step(int)}.
+	 *
+	 * @throws RuntimeException
+	 *             The first exception thrown by a task, or by the executor
+	 *             rejecting one, once the submitted tasks ran. The clock
+	 *             does not move, but some rooms may have been stepped.
+	 */
+	public void step(Executor executor, int deltaMillis) {
+		checkDelta(deltaMillis);
+		final int count = mSteps.length;
+		final int tasks = (count + STEP_GRAIN - 1) / STEP_GRAIN;
+		final CountDownLatch done = new CountDownLatch(tasks);
+		final StepTask[] stepTasks = new StepTask[tasks];
+		for (int i = 0; i < tasks; i++) {
+			int from = i * STEP_GRAIN;
+			stepTasks[i] = new StepTask(this, from, Math.min(count, from + STEP_GRAIN),
+					deltaMillis, mTick, done);
+		}
+		int submitted = 0;
+		try {
+			for (StepTask task : stepTasks) {
+				executor.execute(task);
+				submitted++;
+			}
+		} finally {
+			// Tasks that were not submitted never count down
+			for (int i = submitted; i < tasks; i++) {
+				done.countDown();
+			}
+			awaitUninterruptibly(done);
+		}
+		for (StepTask task : stepTasks) {
+			if (task.mFailure != null) {
+				throw task.mFailure;
+			}
+		}
+		advance(deltaMillis);
+	}
+
+	/**
+	 * Waits for the tasks even if interrupted, as they write to the state,
+	 * and restores the interrupt afterwards.
+	 */
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				latch.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void checkDelta(int deltaMillis) {
+		if (deltaMillis <= 0) {
+			throw new IllegalArgumentException("deltaMillis <= 0: " + deltaMillis);
+		}
+	}
+
+	private void advance(int deltaMillis) {
+		mNowMillis += deltaMillis;
+		mTick++;
+	}
+
+	private void stepRange(int from, int to, int deltaMillis, long tick) {
+		final float seconds = deltaMillis / 1000f;
+		final float outdoor = mOutdoorTenths;
+		final float hvac = HVAC_RATE * seconds;
+		final ThermostatModel model = mModel;
+		final int min = model.getMin();
+		for (int i = from; i < to; i++) {
+			int setpoint = min + mSteps[i];
+			int hysteresis = model.isInLeafRange(setpoint) ? mEcoHysteresisTenths
+					: mHysteresisTenths;
+			float low = setpoint * 10 - hysteresis;
+			float high = setpoint * 10 + hysteresis;
+
+			float temperature = mTemperatures[i];
+			int mode = mModes[i];
+			if (mode == MODE_HEATING) {
+				mHeatingMillis[i] += deltaMillis;
+			} else if (mode == MODE_COOLING) {
+				mCoolingMillis[i] += deltaMillis;
+			}
+			temperature += mLoss[i] * seconds * (outdoor - temperature) + mode * hvac
+					+ (unit(mSeed, i, tick) - 0.5f) * NOISE;
+
+			if (mode == MODE_HEATING ? temperature >= high
+					: mode == MODE_COOLING ? temperature <= low : false) {
+				mode = MODE_IDLE;
+			} else if (mode == MODE_IDLE) {
+				if (temperature < low) {
+					mode = MODE_HEATING;
+				} else if (temperature > high) {
+					mode = MODE_COOLING;
+				}
+			}
+			mTemperatures[i] = temperature;
+			mModes[i] = (byte) mode;
+		}
+	}
+
+	/**
+	 * Returns a value from 0 inclusive to 1 exclusive that only depends on
+	 * its arguments.
+	 */
+	private static float unit(long seed, int thermostat, long tick) {
+		long z = seed + thermostat * 0x9E3779B97F4A7C15L + tick * 0xC2B2AE3D27D4EB4FL;
+		// splitmix64 finalizer
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (z >>> 40) * 0x1.0p-24f;
+	}
+
+	private static final class StepTask implements Runnable {
+
+		private final FleetSimulator mSimulator;
+		private final int mFrom;
+		private final int mTo;
+		private final int mDeltaMillis;
+		private final long mTick;
+		private final CountDownLatch mDone;
+		// Read after mDone is counted down, which publishes it
+		RuntimeException mFailure;
+
+		StepTask(FleetSimulator simulator, int from, int to, int deltaMillis, long tick,
+				CountDownLatch done) {
+			mSimulator = simulator;
+			mFrom = from;
+			mTo = to;
+			mDeltaMillis = deltaMillis;
+			mTick = tick;
+			mDone = done;
+		}
+
+		@Override
+		public void run() {
+			try {
+				mSimulator.stepRange(mFrom, mTo, mDeltaMillis, mTick);
+			} catch (RuntimeException e) {
+				mFailure = e;
+			} finally {
+				mDone.countDown();
+			}
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+/**
+ * 
+ * LatencyHistogram.java
+ * 
+ * Fixed size histogram of non negative values, typically microseconds.
+ * Buckets are log-linear: exact below 16, then 16 buckets per power of two,
+ * so percentiles are within about 6% of the recorded values. Recording is a
+ * few arithmetic operations and never allocates.
+ *
+ * Values above 2^31 - 1 are recorded as 2^31 - 1. Not thread safe.
+ * 
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final long MAX_VALUE = Integer.MAX_VALUE;
+	private static final int BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+	private final long[] mCounts = new long[BUCKETS];
+	private long mTotalCount;
+	private long mMax;
+	private long mSum;
+
+	public void record(long value) {
+		value = (value < 0) ? 0 : (value > MAX_VALUE) ? MAX_VALUE : value;
+		mCounts[bucketIndex(value)]++;
+		mTotalCount++;
+		mSum += value;
+		if (value > mMax) {
+			mMax = value;
+		}
+	}
+
+	public long getTotalCount() {
+		return mTotalCount;
+	}
+
+	public long getMax() {
+		return mMax;
+	}
+
+	public double getMean() {
+		return (mTotalCount == 0) ? 0 : (double) mSum / mTotalCount;
+	}
+
+	/**
+	 * Returns the highest value of the bucket holding the given percentile,
+	 * capped at the maximum recorded value, or 0 if nothing was recorded.
+	 *
+	 * @param percentile
+	 *            The percentile, from 0 to 100
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (mTotalCount == 0) {
+			return 0;
+		}
+		percentile = (percentile < 0) ? 0 : (percentile > 100) ? 100 : percentile;
+		long rank = (long) Math.ceil(percentile / 100 * mTotalCount);
+		rank = (rank < 1) ? 1 : rank;
+
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += mCounts[i];
+			if (seen >= rank) {
+				return Math.min(bucketUpperBound(i), mMax);
+			}
+		}
+		return mMax;
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			mCounts[i] = 0;
+		}
+		mTotalCount = 0;
+		mMax = 0;
+		mSum = 0;
+	}
+
+	private static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+
+	private static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		long subBucket = SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+/**
+ * 
+ * ProgressColors.java
+ * 
+ * Interpolates the progress arc color between two ARGB colors in HSV space,
+ * the way the widget colors the arc from blue to red. The conversions follow
+ * the ones android.graphics.Color uses, so results match on and off device.
+ *
+ * Uses scratch arrays, not thread safe.
+ * 
+ */
+public class ProgressColors {
+
+	private final int mStartColor;
+	private final float[] mHsvStart = new float[3];
+	private final float[] mHsvEnd = new float[3];
+	private final float[] mHsvResult = new float[3];
+
+	public ProgressColors(int startColor, int endColor) {
+		mStartColor = startColor;
+		colorToHsv(startColor, mHsvStart);
+		colorToHsv(endColor, mHsvEnd);
+	}
+
+	public int getStartColor() {
+		return mStartColor;
+	}
+
+	/**
+	 * Returns the color at a position between the two colors.
+	 *
+	 * @param bias
+	 *            0 for the start color, 1 for the end color
+	 */
+	public int getColor(float bias) {
+		mHsvResult[0] = interpolate(mHsvStart[0], mHsvEnd[0], bias);
+		mHsvResult[1] = interpolate(mHsvStart[1], mHsvEnd[1], bias);
+		mHsvResult[2] = interpolate(mHsvStart[2], mHsvEnd[2], bias);
+		return hsvToColor(mHsvResult);
+	}
+
+	private static float interpolate(float a, float b, float bias) {
+		return (a + ((b - a) * bias));
+	}
+
+	/**
+	 * Converts an ARGB color to hue [0..360), saturation and value [0..1].
+	 */
+	public static void colorToHsv(int color, float[] hsv) {
+		int r = (color >> 16) & 0xFF;
+		int g = (color >> 8) & 0xFF;
+		int b = color & 0xFF;
+		int max = Math.max(r, Math.max(g, b));
+		int min = Math.min(r, Math.min(g, b));
+		int delta = max - min;
+
+		hsv[2] = max / 255f;
+		if (delta == 0) {
+			hsv[0] = 0;
+			hsv[1] = 0;
+			return;
+		}
+		hsv[1] = (float) delta / max;
+
+		float h;
+		if (r == max) {
+			h = (float) (g - b) / delta;
+		} else if (g == max) {
+			h = 2 + (float) (b - r) / delta;
+		} else {
+			h = 4 + (float) (r - g) / delta;
+		}
+		h *= 60;
+		if (h < 0) {
+			h += 360;
+		}
+		hsv[0] = h;
+	}
+
+	/**
+	 * Converts hue, saturation and value to an opaque ARGB color.
+	 */
+	public static int hsvToColor(float[] hsv) {
+		float s = pin(hsv[1]);
+		float v = pin(hsv[2]);
+		int value = round(v * 255);
+
+		if (s <= 1f / (1 << 12)) {
+			return argb(value, value, value);
+		}
+
+		float hx = (hsv[0] < 0 || hsv[0] >= 360) ? 0 : hsv[0] / 60;
+		float w = (float) Math.floor(hx);
+		float f = hx - w;
+
+		int p = round((1 - s) * v * 255);
+		int q = round((1 - (s * f)) * v * 255);
+		int t = round((1 - (s * (1 - f))) * v * 255);
+
+		switch ((int) w) {
+			case 0:
+				return argb(value, t, p);
+			case 1:
+				return argb(q, value, p);
+			case 2:
+				return argb(p, value, t);
+			case 3:
+				return argb(p, q, value);
+			case 4:
+				return argb(t, p, value);
+			default:
+				return argb(value, p, q);
+		}
+	}
+
+	private static float pin(float value) {
+		return (value < 0) ? 0 : (value > 1) ? 1 : value;
+	}
+
+	private static int round(float value) {
+		return (int) Math.floor(value + 0.5f);
+	}
+
+	private static int argb(int r, int g, int b) {
+		return 0xFF000000 | (r << 16) | (g << 8) | b;
+	}
+}
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * 
+ * ScheduleStore.java
+ * 
+ * The weekly schedules of many zones in one binary file, read through a
+ * read-only memory map. Opening a store only checks its header, a zone's
+ * schedule is found by a binary search of the zone index and is returned
+ * as a view of the mapped changes, so loading thousands of zones reads and
+ * parses nothing up front.
+ * 
+ * The file is big-endian:
+ * 
+ * <pre>
+ * int   magic, "VTSC"
+ * int   version, 1
+ * int   zone count
+ * zone count times, sorted by zone id:
+ *     int zone id
+ *     int index of the zone's first change
+ *     int number of changes
+ * every change, packed as in {@link WeeklySchedule}:
+ *     int minute of the week &lt;&lt; 16 | setpoint &amp; 0xFFFF
+ * </pre>
+ * 
+ * Safe to read from several threads once opened.
+ * 
+ */
+public final class ScheduleStore implements Closeable {
+
+	private static final int MAGIC = 0x56545343;
+	private static final int VERSION = 1;
+	private static final int HEADER_INTS = 3;
+	private static final int INDEX_INTS = 3;
+
+	private final RandomAccessFile mFile;
+	private final IntBuffer mIndex;
+	private final IntBuffer mChanges;
+	private final int mZoneCount;
+
+	private ScheduleStore(RandomAccessFile file, MappedByteBuffer map) throws IOException {
+		mFile = file;
+		IntBuffer ints = map.asIntBuffer();
+		if (ints.limit() < HEADER_INTS || ints.get(0) != MAGIC) {
+			throw new IOException("not a schedule store");
+		}
+		if (ints.get(1) != VERSION) {
+			throw new IOException("unsupported schedule store version " + ints.get(1));
+		}
+		mZoneCount = ints.get(2);
+		long indexEnd = HEADER_INTS + (long) mZoneCount * INDEX_INTS;
+		if (mZoneCount < 0 || indexEnd > ints.limit()) {
+			throw new IOException("truncated schedule store");
+		}
+		int changesStart = (int) indexEnd;
+		mIndex = slice(ints, HEADER_INTS, changesStart);
+		mChanges = slice(ints, changesStart, ints.limit());
+	}
+
+	/**
+	 * Maps a schedule store file.
+	 *
+	 * @throws IOException
+	 *             If the file cannot be read or is not a schedule store
+	 */
+	public static ScheduleStore open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new ScheduleStore(raf, map);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		} catch (RuntimeException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the schedules of some zones to a file, replacing it.
+	 *
+	 * @param zoneIds
+	 *            The id of each zone, unique
+	 * @param schedules
+	 *            The schedule of each zone
+	 */
+	public static void write(File file, int[] zoneIds, WeeklySchedule[] schedules) throws IOException {
+		if (zoneIds.length != schedules.length) {
+			throw new IllegalArgumentException("zoneIds and schedules differ in length: "
+					+ zoneIds.length + " != " + schedules.length);
+		}
+		// Sort the zones by id, keeping their schedules alongside
+		long[] order = new long[zoneIds.length];
+		for (int i = 0; i < zoneIds.length; i++) {
+			order[i] = ((long) zoneIds[i] << 32) | i;
+		}
+		Arrays.sort(order);
+		for (int i = 1; i < order.length; i++) {
+			if ((int) (order[i] >> 32) == (int) (order[i - 1] >> 32)) {
+				throw new IllegalArgumentException("duplicate zone id " + (int) (order[i] >> 32));
+			}
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(order.length);
+			int offset = 0;
+			for (long entry : order) {
+				WeeklySchedule schedule = schedules[(int) entry];
+				out.writeInt((int) (entry >> 32));
+				out.writeInt(offset);
+				out.writeInt(schedule.size());
+				offset += schedule.size();
+			}
+			for (long entry : order) {
+				WeeklySchedule schedule = schedules[(int) entry];
+				for (int i = 0; i < schedule.size(); i++) {
+					out.writeInt(WeeklySchedule.pack(schedule.getMinute(i), schedule.getSetpoint(i)));
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public int getZoneCount() {
+		return mZoneCount;
+	}
+
+	/**
+	 * Returns the id of a zone, zones are sorted by id.
+	 */
+	public int getZoneId(int index) {
+		return mIndex.get(index * INDEX_INTS);
+	}
+
+	/**
+	 * Returns the index of a zone, or -1 if the store has no such zone.
+	 */
+	public int indexOfZone(int zoneId) {
+		int low = 0;
+		int high = mZoneCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int id = getZoneId(mid);
+			if (id < zoneId) {
+				low = mid + 1;
+			} else if (id > zoneId) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the schedule of a zone as a view of the mapped file, or null if
+	 * the store has no such zone.
+	 */
+	public WeeklySchedule getSchedule(int zoneId) {
+		int index = indexOfZone(zoneId);
+		if (index < 0) {
+			return null;
+		}
+		int first = mIndex.get(index * INDEX_INTS + 1);
+		int count = mIndex.get(index * INDEX_INTS + 2);
+		return new WeeklySchedule(slice(mChanges, first, first + count));
+	}
+
+	@Override
+	public void close() throws IOException {
+		// The map stays valid until it is garbage collected
+		mFile.close();
+	}
+
+	private static IntBuffer slice(IntBuffer buffer, int start, int end) {
+		IntBuffer copy = buffer.duplicate();
+		copy.limit(end);
+		copy.position(start);
+		return copy.slice();
+	}
+}
@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+/**
+ * 
+ * TemperatureHistory.java
+ * 
+ * The recent temperature samples of a thermostat in a ring buffer of
+ * primitive arrays, along with a downsampled copy sized for a sparkline.
+ * 
+ * The window is split in as many time buckets as there are points to draw,
+ * and Largest-Triangle-Three-Buckets picks one sample per bucket: the one
+ * forming the largest triangle with the point picked for the previous
+ * bucket and the average of the next one. The pick for a bucket is made
+ * once the following bucket is complete, so each sample is looked at once
+ * when it is added and once when its bucket is picked from, which is O(1)
+ * per sample amortized. Picked points older than the window are dropped.
+ * 
+ * Not thread safe.
+ * 
+ */
+public class TemperatureHistory {
+
+	private final long mWindowMillis;
+
+	// Raw samples, sample n is at n % capacity
+	private final long[] mTimes;
+	private final float[] mValues;
+	private long mSampleCount;
+
+	// Downsampled points, point n is at n % mPointCapacity
+	private int mResolution;
+	private long mBucketMillis;
+	private int mPointCapacity;
+	private long[] mPointTimes;
+	private float[] mPointValues;
+	private long mPointStart;
+	private long mPointEnd;
+	private int mVersion;
+
+	// The bucket being filled, its number, first sample and running sums
+	private long mBucket;
+	private long mBucketFirst;
+	private double mBucketTimeSum;
+	private double mBucketSum;
+	private boolean mBucketOpen;
+
+	// The complete bucket waiting for the average of the next one
+	private long mPendingFirst;
+	private long mPendingEnd;
+
+	/**
+	 * @param capacity
+	 *            The number of samples kept, enough to cover the window at the
+	 *            sample rate
+	 * @param windowMillis
+	 *            The time span shown, ending at the newest sample
+	 * @param resolution
+	 *            The number of points to downsample the window to, usually
+	 *            the width in pixels of the sparkline
+	 */
+	public TemperatureHistory(int capacity, long windowMillis, int resolution) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity < 1: " + capacity);
+		}
+		if (windowMillis < 1) {
+			throw new IllegalArgumentException("windowMillis < 1: " + windowMillis);
+		}
+		mTimes = new long[capacity];
+		mValues = new float[capacity];
+		mWindowMillis = windowMillis;
+		setResolution(resolution);
+	}
+
+	public long getWindowMillis() {
+		return mWindowMillis;
+	}
+
+	public int getResolution() {
+		return mResolution;
+	}
+
+	/**
+	 * Changes the number of points the window is downsampled to, the kept
+	 * samples are downsampled again.
+	 */
+	public void setResolution(int resolution) {
+		if (resolution < 2) {
+			throw new IllegalArgumentException("resolution < 2: " + resolution);
+		}
+		if (resolution == mResolution) {
+			return;
+		}
+		mResolution = resolution;
+		mBucketMillis = Math.max(1, mWindowMillis / resolution);
+		// One point per bucket, plus the first sample and a bucket of slack
+		mPointCapacity = resolution + 2;
+		mPointTimes = new long[mPointCapacity];
+		mPointValues = new float[mPointCapacity];
+		rebuildPoints();
+	}
+
+	/**
+	 * Adds a sample, samples must be added in time order.
+	 */
+	public void add(long timeMillis, float value) {
+		long n = mSampleCount++;
+		int slot = (int) (n % mTimes.length);
+		mTimes[slot] = timeMillis;
+		mValues[slot] = value;
+		downsample(n);
+	}
+
+	/**
+	 * Removes every sample.
+	 */
+	public void clear() {
+		mSampleCount = 0;
+		resetPoints();
+	}
+
+	/**
+	 * Returns the number of samples kept.
+	 */
+	public int size() {
+		return (int) Math.min(mSampleCount, mTimes.length);
+	}
+
+	/**
+	 * Returns the time of a kept sample, 0 being the oldest.
+	 */
+	public long getTime(int index) {
+		return mTimes[slot(mSampleCount - size() + index)];
+	}
+
+	public float getValue(int index) {
+		return mValues[slot(mSampleCount - size() + index)];
+	}
+
+	/**
+	 * Returns the number of downsampled points. They are followed by the
+	 * newest sample, which is not included.
+	 */
+	public int getPointCount() {
+		return (int) (mPointEnd - mPointStart);
+	}
+
+	public long getPointTime(int index) {
+		return mPointTimes[(int) ((mPointStart + index) % mPointCapacity)];
+	}
+
+	public float getPointValue(int index) {
+		return mPointValues[(int) ((mPointStart + index) % mPointCapacity)];
+	}
+
+	/**
+	 * Returns a number that changes whenever the downsampled points do, the
+	 * newest sample aside.
+	 */
+	public int getVersion() {
+		return mVersion;
+	}
+
+	private int slot(long n) {
+		return (int) (n % mTimes.length);
+	}
+
+	private void resetPoints() {
+		mPointStart = 0;
+		mPointEnd = 0;
+		mBucketOpen = false;
+		mPendingFirst = 0;
+		mPendingEnd = 0;
+		mVersion++;
+	}
+
+	private void rebuildPoints() {
+		resetPoints();
+		if (mSampleCount == 0) {
+			return;
+		}
+		long newest = mTimes[slot(mSampleCount - 1)];
+		for (long n = mSampleCount - size(); n < mSampleCount; n++) {
+			if (mTimes[slot(n)] >= newest - mWindowMillis) {
+				downsample(n);
+			}
+		}
+	}
+
+	private void downsample(long n) {
+		final long time = mTimes[slot(n)];
+		final float value = mValues[slot(n)];
+		if (mPointEnd == 0) {
+			// The first sample is always kept
+			emit(time, value);
+			return;
+		}
+		long bucket = floorDiv(time, mBucketMillis);
+		if (!mBucketOpen) {
+			openBucket(bucket, n, time, value);
+		} else if (bucket != mBucket) {
+			if (mPendingEnd > mPendingFirst) {
+				long count = n - mBucketFirst;
+				pick(mBucketTimeSum / count, mBucketSum / count);
+			}
+			mPendingFirst = Math.max(mBucketFirst, mSampleCount - mTimes.length);
+			mPendingEnd = n;
+			openBucket(bucket, n, time, value);
+		} else {
+			mBucketTimeSum += time;
+			mBucketSum += value;
+		}
+		trim(time);
+	}
+
+	private void openBucket(long bucket, long first, long time, float value) {
+		mBucket = bucket;
+		mBucketFirst = first;
+		mBucketTimeSum = time;
+		mBucketSum = value;
+		mBucketOpen = true;
+	}
+
+	/**
+	 * Picks the sample of the pending bucket forming the largest triangle
+	 * with the last point and the average of the bucket after it.
+	 */
+	private void pick(double nextTime, double nextValue) {
+		long last = mPointEnd - 1;
+		double ax = mPointTimes[(int) (last % mPointCapacity)];
+		double ay = mPointValues[(int) (last % mPointCapacity)];
+		double cx = nextTime;
+		double cy = nextValue;
+
+		long first = Math.max(mPendingFirst, mSampleCount - mTimes.length);
+		long best = first;
+		double bestArea = -1;
+		for (long n = first; n < mPendingEnd; n++) {
+			int s = slot(n);
+			double area = Math.abs((ax - cx) * (mValues[s] - ay) - (ax - mTimes[s]) * (cy - ay));
+			if (area > bestArea) {
+				bestArea = area;
+				best = n;
+			}
+		}
+		emit(mTimes[slot(best)], mValues[slot(best)]);
+	}
+
+	private void emit(long time, float value) {
+		if (mPointEnd - mPointStart == mPointCapacity) {
+			mPointStart++;
+		}
+		int slot = (int) (mPointEnd % mPointCapacity);
+		mPointTimes[slot] = time;
+		mPointValues[slot] = value;
+		mPointEnd++;
+		mVersion++;
+	}
+
+	/**
+	 * Drops the points that left the window.
+	 */
+	private void trim(long newest) {
+		long oldest = newest - mWindowMillis;
+		while (mPointEnd - mPointStart > 1
+				&& mPointTimes[(int) (mPointStart % mPointCapacity)] < oldest) {
+			mPointStart++;
+			mVersion++;
+		}
+	}
+
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+		return ((x % y != 0) && ((x ^ y) < 0)) ? q - 1 : q;
+	}
+}
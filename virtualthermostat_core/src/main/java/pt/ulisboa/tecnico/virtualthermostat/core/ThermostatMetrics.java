@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+/**
+ * 
+ * ThermostatMetrics.java
+ * 
+ * Frame time and input latency of a thermostat dial: draw durations and
+ * touch to draw latencies in fixed size histograms, plus invalidation,
+ * draw and listener callback counts. Recording never allocates, taking a
+ * {@link Snapshot} does.
+ *
+ * Recorded on the UI thread, call {@link #getSnapshot()} and
+ * {@link #reset()} from the same thread.
+ * 
+ */
+public class ThermostatMetrics {
+
+	private final LatencyHistogram mDrawMicros = new LatencyHistogram();
+	private final LatencyHistogram mTouchToDrawMicros = new LatencyHistogram();
+	private long mInvalidateCount;
+	private long mCallbackCount;
+	private long mTouchEventCount;
+	private long mStartNanos = System.nanoTime();
+
+	public void recordDraw(long durationNanos) {
+		mDrawMicros.record(durationNanos / 1000);
+	}
+
+	public void recordTouchToDraw(long latencyNanos) {
+		mTouchToDrawMicros.record(latencyNanos / 1000);
+	}
+
+	public void recordInvalidate() {
+		mInvalidateCount++;
+	}
+
+	public void recordCallback() {
+		mCallbackCount++;
+	}
+
+	public void recordTouchEvent() {
+		mTouchEventCount++;
+	}
+
+	public long getInvalidateCount() {
+		return mInvalidateCount;
+	}
+
+	public long getCallbackCount() {
+		return mCallbackCount;
+	}
+
+	public long getDrawCount() {
+		return mDrawMicros.getTotalCount();
+	}
+
+	/**
+	 * Returns the time since these metrics were created or last reset.
+	 */
+	public long getElapsedNanos() {
+		return System.nanoTime() - mStartNanos;
+	}
+
+	public Snapshot getSnapshot() {
+		return new Snapshot(this);
+	}
+
+	public void reset() {
+		mDrawMicros.reset();
+		mTouchToDrawMicros.reset();
+		mInvalidateCount = 0;
+		mCallbackCount = 0;
+		mTouchEventCount = 0;
+		mStartNanos = System.nanoTime();
+	}
+
+	/**
+	 * Immutable copy of the metrics at one point in time. Times are in
+	 * microseconds.
+	 */
+	public static final class Snapshot {
+
+		public final long elapsedNanos;
+		public final long drawCount;
+		public final long invalidateCount;
+		public final long callbackCount;
+		public final long touchEventCount;
+
+		public final long drawP50;
+		public final long drawP90;
+		public final long drawP99;
+		public final long drawMax;
+		public final double drawMean;
+
+		public final long touchToDrawCount;
+		public final long touchToDrawP50;
+		public final long touchToDrawP90;
+		public final long touchToDrawP99;
+		public final long touchToDrawMax;
+
+		Snapshot(ThermostatMetrics metrics) {
+			elapsedNanos = metrics.getElapsedNanos();
+			invalidateCount = metrics.mInvalidateCount;
+			callbackCount = metrics.mCallbackCount;
+			touchEventCount = metrics.mTouchEventCount;
+
+			LatencyHistogram draw = metrics.mDrawMicros;
+			drawCount = draw.getTotalCount();
+			drawP50 = draw.getValueAtPercentile(50);
+			drawP90 = draw.getValueAtPercentile(90);
+			drawP99 = draw.getValueAtPercentile(99);
+			drawMax = draw.getMax();
+			drawMean = draw.getMean();
+
+			LatencyHistogram latency = metrics.mTouchToDrawMicros;
+			touchToDrawCount = latency.getTotalCount();
+			touchToDrawP50 = latency.getValueAtPercentile(50);
+			touchToDrawP90 = latency.getValueAtPercentile(90);
+			touchToDrawP99 = latency.getValueAtPercentile(99);
+			touchToDrawMax = latency.getMax();
+		}
+
+		@Override
+		public String toString() {
+			return "draws=" + drawCount + " invalidates=" + invalidateCount
+					+ " callbacks=" + callbackCount + " touches=" + touchEventCount
+					+ " draw[p50=" + drawP50 + "us p90=" + drawP90 + "us p99=" + drawP99
+					+ "us max=" + drawMax + "us]"
+					+ " touchToDraw[p50=" + touchToDrawP50 + "us p90=" + touchToDrawP90
+					+ "us p99=" + touchToDrawP99 + "us max=" + touchToDrawMax + "us]";
+		}
+	}
+}
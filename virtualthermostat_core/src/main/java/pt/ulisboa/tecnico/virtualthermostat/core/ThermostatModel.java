@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+/**
+ * 
+ * ThermostatModel.java
+ * 
+ * The setpoint state of a thermostat: its range, the selected setpoint and
+ * the eco (leaf) range. It has no Android dependencies so the same setpoint
+ * logic the widget uses can run and be tested on a plain JVM.
+ *
+ * The setpoint is kept as a step, 0 being the minimum, and the range as a
+ * minimum plus a number of steps. Like the widget always did, changing the
+ * minimum keeps the number of steps, so set the minimum before the maximum.
+ * Not thread safe.
+ * 
+ */
+public class ThermostatModel {
+
+	public static final int INVALID_STEP = -1;
+
+	private int mMin = 0;
+	private int mSteps = 100;
+	private int mStep = 0;
+	private int mLeafDownRange = 0;
+	private int mLeafUpperRange = 0;
+
+	public ThermostatModel() {
+	}
+
+	public ThermostatModel(int min, int max) {
+		mMin = min;
+		mSteps = max - min;
+	}
+
+	public int getMin() {
+		return mMin;
+	}
+
+	/**
+	 * Sets the minimum, keeping the number of steps.
+	 */
+	public void setMin(int min) {
+		mMin = min;
+	}
+
+	public int getMax() {
+		return mMin + mSteps;
+	}
+
+	/**
+	 * Sets the maximum, the number of steps becomes max - min.
+	 */
+	public void setMax(int max) {
+		mSteps = max - mMin;
+		mStep = clampStep(mStep);
+	}
+
+	/**
+	 * Returns the number of steps between the minimum and the maximum.
+	 */
+	public int getSteps() {
+		return mSteps;
+	}
+
+	/**
+	 * Returns the setpoint as a step, 0 being the minimum.
+	 */
+	public int getStep() {
+		return mStep;
+	}
+
+	/**
+	 * Sets the setpoint as a step, clamped to 0..steps. INVALID_STEP is
+	 * ignored.
+	 *
+	 * @return true if the setpoint changed
+	 */
+	public boolean setStep(int step) {
+		if (step == INVALID_STEP) {
+			return false;
+		}
+		step = clampStep(step);
+		if (step == mStep) {
+			return false;
+		}
+		mStep = step;
+		return true;
+	}
+
+	/**
+	 * Returns the setpoint.
+	 */
+	public int getProgress() {
+		return mStep + mMin;
+	}
+
+	/**
+	 * Sets the setpoint, clamped to the range.
+	 *
+	 * @return true if the setpoint changed
+	 */
+	public boolean setProgress(int progress) {
+		return setStep(clampStep(progress - mMin));
+	}
+
+	public int clampStep(int step) {
+		step = (step > mSteps) ? mSteps : step;
+		step = (step < 0) ? 0 : step;
+		return step;
+	}
+
+	/**
+	 * Sets the range of setpoints where the eco (leaf) icon is shown, both
+	 * limits included.
+	 */
+	public void setLeafRange(int downLimit, int upperLimit) {
+		mLeafDownRange = downLimit;
+		mLeafUpperRange = upperLimit;
+	}
+
+	public int getLeafDownRange() {
+		return mLeafDownRange;
+	}
+
+	public int getLeafUpperRange() {
+		return mLeafUpperRange;
+	}
+
+	/**
+	 * Returns true if the current setpoint is in the eco range.
+	 */
+	public boolean isInLeafRange() {
+		return isInLeafRange(getProgress());
+	}
+
+	public boolean isInLeafRange(int progress) {
+		return progress >= mLeafDownRange && progress <= mLeafUpperRange;
+	}
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+/**
+ * 
+ * ThermostatZones.java
+ * 
+ * The state of many thermostats sharing one setpoint range, kept as one
+ * primitive array per property instead of an object per zone: the setpoint
+ * step, the current temperature in tenths of a degree and the background
+ * color of every zone.
+ *
+ * Setters return whether the value changed, so a view can repaint only the
+ * zones that did. Not thread safe.
+ * 
+ */
+public class ThermostatZones {
+
+	public static final int NO_TEMPERATURE = Integer.MIN_VALUE;
+
+	private final int mMin;
+	private final int mStepCount;
+	private final int[] mSteps;
+	private final int[] mCurrentTenths;
+	private final int[] mBackgroundColors;
+
+	/**
+	 * @param count
+	 *            The number of zones
+	 * @param min
+	 *            The lowest setpoint
+	 * @param max
+	 *            The highest setpoint
+	 * @param backgroundColor
+	 *            The initial background color of every zone
+	 */
+	public ThermostatZones(int count, int min, int max, int backgroundColor) {
+		if (count < 0) {
+			throw new IllegalArgumentException("count < 0: " + count);
+		}
+		if (max < min) {
+			throw new IllegalArgumentException("max < min: " + max + " < " + min);
+		}
+		mMin = min;
+		mStepCount = max - min;
+		mSteps = new int[count];
+		mCurrentTenths = new int[count];
+		mBackgroundColors = new int[count];
+		for (int i = 0; i < count; i++) {
+			mCurrentTenths[i] = NO_TEMPERATURE;
+			mBackgroundColors[i] = backgroundColor;
+		}
+	}
+
+	public int getCount() {
+		return mSteps.length;
+	}
+
+	public int getMin() {
+		return mMin;
+	}
+
+	public int getMax() {
+		return mMin + mStepCount;
+	}
+
+	/**
+	 * Returns the number of steps between the minimum and the maximum.
+	 */
+	public int getStepCount() {
+		return mStepCount;
+	}
+
+	public int getStep(int zone) {
+		return mSteps[zone];
+	}
+
+	/**
+	 * Sets the setpoint step of a zone, clamped to the range.
+	 *
+	 * @return True if the step changed
+	 */
+	public boolean setStep(int zone, int step) {
+		step = clampStep(step);
+		if (mSteps[zone] == step) {
+			return false;
+		}
+		mSteps[zone] = step;
+		return true;
+	}
+
+	public int getSetpoint(int zone) {
+		return mMin + mSteps[zone];
+	}
+
+	/**
+	 * Sets the setpoint of a zone, clamped to the range.
+	 *
+	 * @return True if the setpoint changed
+	 */
+	public boolean setSetpoint(int zone, int setpoint) {
+		return setStep(zone, setpoint - mMin);
+	}
+
+	/**
+	 * Returns the current temperature of a zone in tenths of a degree, or
+	 * NO_TEMPERATURE if it was never set.
+	 */
+	public int getCurrentTemperatureTenths(int zone) {
+		return mCurrentTenths[zone];
+	}
+
+	/**
+	 * @return True if the current temperature changed
+	 */
+	public boolean setCurrentTemperatureTenths(int zone, int tenths) {
+		if (mCurrentTenths[zone] == tenths) {
+			return false;
+		}
+		mCurrentTenths[zone] = tenths;
+		return true;
+	}
+
+	public int getBackgroundColor(int zone) {
+		return mBackgroundColors[zone];
+	}
+
+	/**
+	 * @return True if the background color changed
+	 */
+	public boolean setBackgroundColor(int zone, int color) {
+		if (mBackgroundColors[zone] == color) {
+			return false;
+		}
+		mBackgroundColors[zone] = color;
+		return true;
+	}
+
+	public int clampStep(int step) {
+		if (step > mStepCount) {
+			return mStepCount;
+		}
+		return (step < 0) ? 0 : step;
+	}
+}
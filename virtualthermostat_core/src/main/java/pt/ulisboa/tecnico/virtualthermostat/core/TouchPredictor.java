@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+/**
+ * 
+ * TouchPredictor.java
+ * 
+ * Predicts where a dragging finger will be on the arc when the next frame
+ * reaches the screen, to draw the thumb there instead of where the finger
+ * was when the last touch sample was taken. The angular velocity is the
+ * least squares slope of the samples of the last 50 ms, and the
+ * prediction extrapolates the newest sample with it to the next vsync,
+ * one frame interval after the frame being drawn. The frame interval is
+ * measured from consecutive frames, so it follows 60, 90 or 120 Hz panels.
+ * 
+ * Predictions never look more than two 60 Hz frames ahead, and once the
+ * finger has not moved for 40 ms the prediction is the newest sample, so
+ * the thumb settles where the finger stopped. Angles are unwrapped, a drag
+ * across 0 degrees does not turn into a 360 degree jump.
+ * 
+ * Times are in the System.nanoTime() base, which on Android is also the
+ * base of MotionEvent times converted to nanoseconds. Not thread safe.
+ * 
+ */
+public class TouchPredictor {
+
+	private static final int MAX_SAMPLES = 8;
+	private static final long NANOS_PER_MILLI = 1000000L;
+	private static final long VELOCITY_WINDOW_NANOS = 50 * NANOS_PER_MILLI;
+	private static final long STALE_NANOS = 40 * NANOS_PER_MILLI;
+	private static final long MAX_LOOKAHEAD_NANOS = 33 * NANOS_PER_MILLI;
+	private static final long DEFAULT_FRAME_INTERVAL_NANOS = 16666667L;
+	private static final long MIN_FRAME_INTERVAL_NANOS = 4 * NANOS_PER_MILLI;
+	private static final long MAX_FRAME_INTERVAL_NANOS = 50 * NANOS_PER_MILLI;
+
+	private final long[] mTimes = new long[MAX_SAMPLES];
+	private final double[] mAngles = new double[MAX_SAMPLES];
+	private int mCount;
+	private int mNewest = -1;
+	private long mFrameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+	private long mLastFrameNanos;
+
+	/**
+	 * Forgets the samples, call when a gesture starts or ends. The frame
+	 * interval is kept.
+	 */
+	public void reset() {
+		mCount = 0;
+		mNewest = -1;
+		mLastFrameNanos = 0;
+	}
+
+	public boolean hasSamples() {
+		return mCount > 0;
+	}
+
+	/**
+	 * Adds a touch sample, samples must be added in time order.
+	 *
+	 * @param timeNanos
+	 *            The time the sample was taken
+	 * @param degrees
+	 *            The angle of the touch, as returned by
+	 *            {@link ArcGeometry#getTouchDegrees}
+	 */
+	public void addSample(long timeNanos, double degrees) {
+		if (mCount > 0) {
+			// Unwrap, keeping the new angle within half a turn of the last one
+			double last = mAngles[mNewest];
+			degrees -= 360 * Math.round((degrees - last) / 360);
+		}
+		mNewest = (mNewest + 1) % MAX_SAMPLES;
+		mTimes[mNewest] = timeNanos;
+		mAngles[mNewest] = degrees;
+		if (mCount < MAX_SAMPLES) {
+			mCount++;
+		}
+	}
+
+	/**
+	 * Returns the angle of the newest sample, unwrapped.
+	 */
+	public double getNewestAngle() {
+		return mAngles[mNewest];
+	}
+
+	/**
+	 * Returns the measured frame interval.
+	 */
+	public long getFrameIntervalNanos() {
+		return mFrameIntervalNanos;
+	}
+
+	/**
+	 * Returns the predicted angle for a frame, unwrapped like the samples.
+	 * Call once per frame, the frame times are used to measure the frame
+	 * interval.
+	 *
+	 * @param frameTimeNanos
+	 *            The time the frame started
+	 * @throws IllegalStateException
+	 *             If there are no samples
+	 */
+	public double predict(long frameTimeNanos) {
+		if (mCount == 0) {
+			throw new IllegalStateException("no samples");
+		}
+		if (mLastFrameNanos != 0) {
+			long interval = frameTimeNanos - mLastFrameNanos;
+			if (interval >= MIN_FRAME_INTERVAL_NANOS && interval <= MAX_FRAME_INTERVAL_NANOS) {
+				mFrameIntervalNanos = interval;
+			}
+		}
+		mLastFrameNanos = frameTimeNanos;
+
+		final long newestTime = mTimes[mNewest];
+		final double newest = mAngles[mNewest];
+		if (mCount < 2 || frameTimeNanos - newestTime > STALE_NANOS) {
+			return newest;
+		}
+		long lookahead = frameTimeNanos + mFrameIntervalNanos - newestTime;
+		if (lookahead <= 0) {
+			return newest;
+		}
+		lookahead = Math.min(lookahead, MAX_LOOKAHEAD_NANOS);
+		return newest + getVelocity(newestTime) * lookahead / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Returns the least squares slope of the recent samples, in degrees per
+	 * millisecond, with times relative to the newest sample to keep the sums
+	 * small.
+	 */
+	private double getVelocity(long newestTime) {
+		double sumT = 0;
+		double sumA = 0;
+		double sumTT = 0;
+		double sumTA = 0;
+		int n = 0;
+		for (int i = 0; i < mCount; i++) {
+			int slot = (mNewest - i + MAX_SAMPLES) % MAX_SAMPLES;
+			long age = newestTime - mTimes[slot];
+			if (age > VELOCITY_WINDOW_NANOS) {
+				break;
+			}
+			double t = -age / (double) NANOS_PER_MILLI;
+			double a = mAngles[slot];
+			sumT += t;
+			sumA += a;
+			sumTT += t * t;
+			sumTA += t * a;
+			n++;
+		}
+		double denominator = n * sumTT - sumT * sumT;
+		if (n < 2 || denominator == 0) {
+			return 0;
+		}
+		return (n * sumTA - sumT * sumA) / denominator;
+	}
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import java.nio.IntBuffer;
+
+/**
+ * 
+ * WeeklySchedule.java
+ * 
+ * A weekly setpoint schedule: setpoint changes at minutes of the week,
+ * sorted by time, each setpoint holding until the next change and the last
+ * one wrapping around to the first change of the following week. Minutes of
+ * the week start at 0 on Monday 00:00.
+ * 
+ * Changes are stored packed, one int each, with the minute in the high 16
+ * bits and the setpoint as a signed short in the low 16 bits. This is also
+ * the layout of a {@link ScheduleStore} file, so a schedule read from one
+ * is a view of the mapped file and is never parsed. Lookups are binary
+ * searches. Immutable.
+ * 
+ */
+public final class WeeklySchedule {
+
+	public static final int MINUTES_PER_DAY = 24 * 60;
+	public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+	// 1970-01-01 was a Thursday, day 3 of a week starting on Monday
+	private static final int EPOCH_DAY_OF_WEEK = 3;
+	private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+	private final IntBuffer mChanges;
+
+	WeeklySchedule(IntBuffer changes) {
+		mChanges = changes;
+	}
+
+	/**
+	 * Creates a schedule from its changes.
+	 *
+	 * @param minutes
+	 *            The minute of the week of each change, strictly increasing
+	 *            and from 0 to MINUTES_PER_WEEK - 1
+	 * @param setpoints
+	 *            The setpoint of each change, from Short.MIN_VALUE to
+	 *            Short.MAX_VALUE
+	 */
+	public static WeeklySchedule of(int[] minutes, int[] setpoints) {
+		if (minutes.length != setpoints.length) {
+			throw new IllegalArgumentException("minutes and setpoints differ in length: "
+					+ minutes.length + " != " + setpoints.length);
+		}
+		int[] changes = new int[minutes.length];
+		for (int i = 0; i < minutes.length; i++) {
+			if (minutes[i] < 0 || minutes[i] >= MINUTES_PER_WEEK) {
+				throw new IllegalArgumentException("minute out of range: " + minutes[i]);
+			}
+			if (i > 0 && minutes[i] <= minutes[i - 1]) {
+				throw new IllegalArgumentException("minutes not increasing at " + i);
+			}
+			if (setpoints[i] < Short.MIN_VALUE || setpoints[i] > Short.MAX_VALUE) {
+				throw new IllegalArgumentException("setpoint out of range: " + setpoints[i]);
+			}
+			changes[i] = pack(minutes[i], setpoints[i]);
+		}
+		return new WeeklySchedule(IntBuffer.wrap(changes));
+	}
+
+	/**
+	 * Returns the minute of the week of a day and time.
+	 *
+	 * @param dayOfWeek
+	 *            The day, 0 for Monday to 6 for Sunday
+	 */
+	public static int minuteOfWeek(int dayOfWeek, int hour, int minute) {
+		return dayOfWeek * MINUTES_PER_DAY + hour * 60 + minute;
+	}
+
+	/**
+	 * Returns the minute of the week of a timestamp.
+	 *
+	 * @param epochMillis
+	 *            Milliseconds since the epoch, as System.currentTimeMillis()
+	 * @param utcOffsetMillis
+	 *            The offset of the local time zone at that time
+	 */
+	public static int minuteOfWeek(long epochMillis, int utcOffsetMillis) {
+		long minutes = floorDiv(epochMillis + utcOffsetMillis, MILLIS_PER_MINUTE);
+		long week = minutes + EPOCH_DAY_OF_WEEK * (long) MINUTES_PER_DAY;
+		return (int) (week - floorDiv(week, MINUTES_PER_WEEK) * MINUTES_PER_WEEK);
+	}
+
+	public int size() {
+		return mChanges.limit();
+	}
+
+	public int getMinute(int index) {
+		return mChanges.get(index) >>> 16;
+	}
+
+	public int getSetpoint(int index) {
+		return (short) mChanges.get(index);
+	}
+
+	/**
+	 * Returns the index of the change in effect at a minute of the week,
+	 * the last change of the week before the first one, or -1 if the
+	 * schedule is empty.
+	 */
+	public int indexAt(int minuteOfWeek) {
+		int low = 0;
+		int high = size() - 1;
+		if (high < 0) {
+			return -1;
+		}
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (getMinute(mid) <= minuteOfWeek) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return (high < 0) ? size() - 1 : high;
+	}
+
+	/**
+	 * Returns the index of the first change after a minute of the week,
+	 * wrapping around to the next week, or -1 if the schedule is empty.
+	 */
+	public int nextIndexAfter(int minuteOfWeek) {
+		int index = indexAt(minuteOfWeek);
+		return (index < 0) ? -1 : (index + 1) % size();
+	}
+
+	/**
+	 * Returns the setpoint in effect at a minute of the week.
+	 *
+	 * @throws IllegalStateException
+	 *             If the schedule is empty
+	 */
+	public int getActiveSetpoint(int minuteOfWeek) {
+		int index = indexAt(minuteOfWeek);
+		if (index < 0) {
+			throw new IllegalStateException("empty schedule");
+		}
+		return getSetpoint(index);
+	}
+
+	/**
+	 * Returns the minutes from a minute of the week until the next change,
+	 * from 1 to MINUTES_PER_WEEK, or -1 if the schedule is empty.
+	 */
+	public int getMinutesUntilNext(int minuteOfWeek) {
+		int next = nextIndexAfter(minuteOfWeek);
+		if (next < 0) {
+			return -1;
+		}
+		int minutes = getMinute(next) - minuteOfWeek;
+		return (minutes <= 0) ? minutes + MINUTES_PER_WEEK : minutes;
+	}
+
+	static int pack(int minute, int setpoint) {
+		return (minute << 16) | (setpoint & 0xFFFF);
+	}
+
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+		return ((x % y != 0) && ((x ^ y) < 0)) ? q - 1 : q;
+	}
+}
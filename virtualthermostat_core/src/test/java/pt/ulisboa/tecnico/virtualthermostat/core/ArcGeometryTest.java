@@ -0,0 +1,44 @@
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ArcGeometryTest {
+
+	@Test
+	public void thumbPositionsMatchTheArc() {
+		ArcGeometry geometry = new ArcGeometry();
+		geometry.update(20, 100, 60, 240, 180);
+
+		for (int step = 0; step <= 20; step++) {
+			float sweep = (float) step / 20 * 240;
+			double radians = Math.toRadians((int) (60 + sweep + 180 + 90));
+			assertEquals(sweep, geometry.getSweep(step), 0);
+			assertEquals((int) (100 * Math.cos(radians)), geometry.getThumbX(step));
+			assertEquals((int) (100 * Math.sin(radians)), geometry.getThumbY(step));
+		}
+	}
+
+	@Test
+	public void touchOnTheThumbMapsBackToItsStep() {
+		ArcGeometry geometry = new ArcGeometry();
+		geometry.update(20, 1000, 60, 240, 180);
+
+		for (int step = 0; step <= 20; step++) {
+			// The thumb is drawn at the arc center minus its offset
+			double degrees = geometry.getTouchDegrees(-geometry.getThumbX(step),
+					-geometry.getThumbY(step), true);
+			assertEquals(step, geometry.getStepForAngle(degrees));
+		}
+	}
+
+	@Test
+	public void anglesOutsideTheArcAreInvalid() {
+		ArcGeometry geometry = new ArcGeometry();
+		geometry.update(20, 100, 60, 240, 180);
+
+		assertEquals(ArcGeometry.INVALID_STEP, geometry.getStepForAngle(-10));
+		assertEquals(ArcGeometry.INVALID_STEP, geometry.getStepForAngle(270));
+	}
+}
@@ -0,0 +1,94 @@
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventLogTest {
+
+	@Rule
+	public final TemporaryFolder mFolder = new TemporaryFolder();
+
+	@Test
+	public void recordsAreAppendedAcrossChunksAndReopens() throws IOException {
+		File file = mFolder.newFile("events.bin");
+		int first = EventLog.CHUNK_RECORDS + 10;
+		EventLog log = EventLog.open(file);
+		for (int i = 0; i < first; i++) {
+			log.append(1000L + i, 7, EventLog.TYPE_SETPOINT, i);
+		}
+		log.close();
+
+		log = EventLog.open(file);
+		assertEquals(first, log.getRecordCount());
+		log.append(5, -2, EventLog.TYPE_CURRENT_TEMPERATURE, -15);
+		log.close();
+
+		EventLogReader reader = EventLogReader.open(file);
+		try {
+			assertEquals(first + 1, reader.getRecordCount());
+			for (int i = 0; i < first; i++) {
+				assertTrue(reader.next());
+				assertEquals(1000L + i, reader.getTimeMillis());
+				assertEquals(7, reader.getSource());
+				assertEquals(i, reader.getValue());
+			}
+			assertTrue(reader.next());
+			assertEquals(-2, reader.getSource());
+			assertEquals(EventLog.TYPE_CURRENT_TEMPERATURE, reader.getType());
+			assertEquals(-15, reader.getValue());
+			assertFalse(reader.next());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void unflushedRecordsAreNotRead() throws IOException {
+		File file = mFolder.newFile("events.bin");
+		EventLog log = EventLog.open(file);
+		log.append(1, 0, EventLog.TYPE_SETPOINT, 20);
+		log.flush();
+		log.append(2, 0, EventLog.TYPE_SETPOINT, 21);
+
+		EventLogReader reader = EventLogReader.open(file);
+		assertEquals(1, reader.getRecordCount());
+		reader.close();
+		log.close();
+	}
+
+	@Test
+	public void recorderWritesEventsInOrder() throws IOException {
+		File file = mFolder.newFile("events.bin");
+		EventRecorder recorder = new EventRecorder(EventLog.open(file), 1024, 10);
+		int recorded = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (recorder.record(i, 1, EventLog.TYPE_CURRENT_TEMPERATURE, i)) {
+				recorded++;
+			}
+		}
+		recorder.close();
+		assertEquals(100000, recorded + recorder.getDroppedCount());
+		assertFalse(recorder.record(0, 1, EventLog.TYPE_SETPOINT, 0));
+
+		EventLogReader reader = EventLogReader.open(file);
+		try {
+			assertEquals(recorded, reader.getRecordCount());
+			long previous = -1;
+			while (reader.next()) {
+				assertTrue(reader.getTimeMillis() > previous);
+				assertEquals(reader.getTimeMillis(), reader.getValue());
+				previous = reader.getTimeMillis();
+			}
+		} finally {
+			reader.close();
+		}
+	}
+}
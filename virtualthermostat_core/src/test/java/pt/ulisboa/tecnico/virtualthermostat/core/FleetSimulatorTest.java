@@ -0,0 +1,67 @@
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FleetSimulatorTest {
+
+	@Test
+	public void parallelStepsMatchSequentialSteps() {
+		FleetSimulator sequential = new FleetSimulator(20000, 15, 35, 42);
+		FleetSimulator parallel = new FleetSimulator(20000, 15, 35, 42);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			for (int i = 0; i < 100; i++) {
+				sequential.step(60000);
+				parallel.step(pool, 60000);
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		assertEquals(sequential.getNowMillis(), parallel.getNowMillis());
+		for (int i = 0; i < sequential.getCount(); i++) {
+			assertEquals(sequential.getCurrentTemperatureTenths(i), parallel.getCurrentTemperatureTenths(i));
+			assertEquals(sequential.getMode(i), parallel.getMode(i));
+			assertEquals(sequential.getHeatingMillis(i), parallel.getHeatingMillis(i));
+		}
+	}
+
+	@Test
+	public void roomsSettleAroundTheSetpoint() {
+		FleetSimulator fleet = new FleetSimulator(100, 15, 35, 7);
+		fleet.setLeafRange(15, 18);
+		fleet.setHysteresisTenths(5, 10);
+		for (int i = 0; i < 100; i++) {
+			fleet.setSetpoint(i, 20);
+		}
+		// A day in minutes
+		for (int i = 0; i < 24 * 60; i++) {
+			fleet.step(60000);
+		}
+
+		for (int i = 0; i < 100; i++) {
+			int tenths = fleet.getCurrentTemperatureTenths(i);
+			assertTrue("room " + i + " at " + tenths, tenths >= 190 && tenths <= 210);
+			assertTrue(fleet.getHeatingMillis(i) > 0);
+			assertFalse(fleet.isInLeafRange(i));
+		}
+	}
+
+	@Test
+	public void setpointsAreClampedToTheRange() {
+		FleetSimulator fleet = new FleetSimulator(2, 15, 35, 0);
+
+		assertTrue(fleet.setSetpoint(0, 40));
+		assertEquals(35, fleet.getSetpoint(0));
+		assertFalse(fleet.setSetpoint(0, 35));
+		assertTrue(fleet.setSetpoint(1, 0));
+		assertEquals(15, fleet.getSetpoint(1));
+	}
+}
@@ -0,0 +1,46 @@
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void smallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 10; i++) {
+			histogram.record(i);
+		}
+
+		assertEquals(10, histogram.getTotalCount());
+		assertEquals(5, histogram.getValueAtPercentile(50));
+		assertEquals(10, histogram.getValueAtPercentile(100));
+		assertEquals(10, histogram.getMax());
+	}
+
+	@Test
+	public void percentilesAreWithinTheBucketPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100000; i++) {
+			histogram.record(i);
+		}
+
+		long p99 = histogram.getValueAtPercentile(99);
+		assertTrue("p99 was " + p99, p99 >= 99000 && p99 <= 99000 * 1.07);
+		assertEquals(100000, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void resetClearsEverything() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(Long.MAX_VALUE);
+		histogram.record(-1);
+		histogram.reset();
+
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+	}
+}
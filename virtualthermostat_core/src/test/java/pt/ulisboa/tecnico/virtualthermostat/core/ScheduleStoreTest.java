@@ -0,0 +1,56 @@
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ScheduleStoreTest {
+
+	@Rule
+	public final TemporaryFolder mFolder = new TemporaryFolder();
+
+	@Test
+	public void schedulesRoundTripThroughTheFile() throws IOException {
+		int zones = 1000;
+		int[] ids = new int[zones];
+		WeeklySchedule[] schedules = new WeeklySchedule[zones];
+		for (int i = 0; i < zones; i++) {
+			// Written out of order, read back sorted
+			ids[i] = (zones - i) * 3;
+			schedules[i] = WeeklySchedule.of(new int[] { i, i + 600 }, new int[] { -i, i });
+		}
+		File file = mFolder.newFile("schedules.bin");
+		ScheduleStore.write(file, ids, schedules);
+
+		ScheduleStore store = ScheduleStore.open(file);
+		try {
+			assertEquals(zones, store.getZoneCount());
+			assertEquals(3, store.getZoneId(0));
+			assertNull(store.getSchedule(4));
+
+			WeeklySchedule schedule = store.getSchedule(ids[250]);
+			assertEquals(2, schedule.size());
+			assertEquals(250, schedule.getMinute(0));
+			assertEquals(-250, schedule.getActiveSetpoint(250));
+			assertEquals(250, schedule.getActiveSetpoint(850));
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void otherFilesAreRejected() throws IOException {
+		File file = mFolder.newFile("other.bin");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 });
+		out.close();
+		ScheduleStore.open(file).close();
+	}
+}
@@ -0,0 +1,58 @@
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TemperatureHistoryTest {
+
+	private static final long HOUR = 60 * 60 * 1000L;
+	private static final long DAY = 24 * HOUR;
+	private static final int SAMPLES_PER_DAY = 24 * 60 * 60;
+
+	@Test
+	public void ringBufferKeepsTheNewestSamples() {
+		TemperatureHistory history = new TemperatureHistory(3, DAY, 10);
+		for (int i = 0; i < 5; i++) {
+			history.add(i * 1000L, i);
+		}
+		assertEquals(3, history.size());
+		assertEquals(2000L, history.getTime(0));
+		assertEquals(4f, history.getValue(2), 0f);
+	}
+
+	@Test
+	public void downsamplingKeepsPeaksWithinTheResolution() {
+		int resolution = 100;
+		TemperatureHistory history = new TemperatureHistory(SAMPLES_PER_DAY, DAY, resolution);
+		// Two days at 1 Hz of a flat 20 degrees with a single one second spike
+		long spikeTime = 2 * DAY - 6 * HOUR;
+		for (long t = 0; t < 2 * DAY; t += 1000) {
+			history.add(t, (t == spikeTime) ? 30f : 20f);
+		}
+
+		int points = history.getPointCount();
+		assertTrue("too many points: " + points, points <= resolution + 2);
+		assertTrue("too few points: " + points, points >= resolution - 2);
+		assertTrue(history.getPointTime(0) >= DAY - 1000 - DAY / resolution);
+
+		boolean spikeKept = false;
+		for (int i = 0; i < points; i++) {
+			spikeKept |= history.getPointTime(i) == spikeTime && history.getPointValue(i) == 30f;
+		}
+		assertTrue(spikeKept);
+	}
+
+	@Test
+	public void changingTheResolutionDownsamplesAgain() {
+		TemperatureHistory history = new TemperatureHistory(1000, DAY, 100);
+		for (int i = 0; i < 1000; i++) {
+			history.add(i * 60000L, i % 7);
+		}
+		int version = history.getVersion();
+		history.setResolution(10);
+		assertTrue(history.getVersion() != version);
+		assertTrue(history.getPointCount() <= 12);
+	}
+}
@@ -0,0 +1,58 @@
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThermostatModelTest {
+
+	@Test
+	public void setpointIsClampedToTheRange() {
+		ThermostatModel model = new ThermostatModel(15, 35);
+
+		assertTrue(model.setProgress(40));
+		assertEquals(35, model.getProgress());
+		assertEquals(20, model.getStep());
+
+		assertTrue(model.setProgress(10));
+		assertEquals(15, model.getProgress());
+		assertEquals(0, model.getStep());
+	}
+
+	@Test
+	public void unchangedOrInvalidStepIsNotAChange() {
+		ThermostatModel model = new ThermostatModel(15, 35);
+		model.setProgress(20);
+
+		assertFalse(model.setProgress(20));
+		assertFalse(model.setStep(ThermostatModel.INVALID_STEP));
+		assertEquals(20, model.getProgress());
+	}
+
+	@Test
+	public void changingTheMinimumKeepsTheSteps() {
+		ThermostatModel model = new ThermostatModel();
+		model.setStep(10);
+
+		model.setMin(15);
+		assertEquals(115, model.getMax());
+		assertEquals(25, model.getProgress());
+
+		model.setMax(20);
+		assertEquals(5, model.getSteps());
+		assertEquals(5, model.getStep());
+	}
+
+	@Test
+	public void leafRangeIncludesBothLimits() {
+		ThermostatModel model = new ThermostatModel(15, 35);
+		model.setLeafRange(21, 26);
+
+		assertFalse(model.isInLeafRange(20));
+		assertTrue(model.isInLeafRange(21));
+		assertTrue(model.isInLeafRange(26));
+		assertFalse(model.isInLeafRange(27));
+	}
+}
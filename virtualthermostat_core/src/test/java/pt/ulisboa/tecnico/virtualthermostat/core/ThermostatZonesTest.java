@@ -0,0 +1,34 @@
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThermostatZonesTest {
+
+	@Test
+	public void zonesAreIndependentAndClamped() {
+		ThermostatZones zones = new ThermostatZones(3, 15, 35, 0xff000000);
+
+		assertTrue(zones.setSetpoint(1, 40));
+		assertEquals(35, zones.getSetpoint(1));
+		assertEquals(15, zones.getSetpoint(0));
+		assertEquals(15, zones.getSetpoint(2));
+
+		assertFalse(zones.setSetpoint(1, 35));
+		assertFalse(zones.setBackgroundColor(2, 0xff000000));
+		assertTrue(zones.setBackgroundColor(2, 0xffffffff));
+	}
+
+	@Test
+	public void currentTemperatureStartsUnset() {
+		ThermostatZones zones = new ThermostatZones(2, 15, 35, 0);
+
+		assertEquals(ThermostatZones.NO_TEMPERATURE, zones.getCurrentTemperatureTenths(0));
+		assertTrue(zones.setCurrentTemperatureTenths(0, 215));
+		assertFalse(zones.setCurrentTemperatureTenths(0, 215));
+		assertEquals(ThermostatZones.NO_TEMPERATURE, zones.getCurrentTemperatureTenths(1));
+	}
+}
@@ -0,0 +1,49 @@
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TouchPredictorTest {
+
+	private static final long MS = 1000000L;
+
+	@Test
+	public void extrapolatesToTheNextVsync() {
+		TouchPredictor predictor = new TouchPredictor();
+		// 120 Hz frames, a sample every 4 ms moving 0.1 degrees per ms
+		for (int frame = 0; frame < 10; frame++) {
+			long frameTime = 1000 * MS + frame * 8333333L;
+			predictor.addSample(frameTime - 4 * MS, 20 + 0.1 * (frameTime - 4 * MS - 1000 * MS) / MS);
+			predictor.addSample(frameTime, 20 + 0.1 * (frameTime - 1000 * MS) / MS);
+			double predicted = predictor.predict(frameTime);
+			if (frame > 0) {
+				// One frame interval ahead of the newest sample
+				assertEquals(8333333L, predictor.getFrameIntervalNanos());
+				assertEquals(predictor.getNewestAngle() + 0.1 * 8.333333, predicted, 1e-3);
+			}
+		}
+	}
+
+	@Test
+	public void settlesOnTheNewestSampleWhenTheFingerStops() {
+		TouchPredictor predictor = new TouchPredictor();
+		predictor.addSample(0, 10);
+		predictor.addSample(8 * MS, 12);
+		predictor.addSample(16 * MS, 14);
+
+		assertEquals(14, predictor.predict(100 * MS), 0);
+	}
+
+	@Test
+	public void unwrapsAnglesAcrossZero() {
+		TouchPredictor predictor = new TouchPredictor();
+		predictor.addSample(0, 358);
+		predictor.addSample(8 * MS, 359);
+		predictor.addSample(16 * MS, 0);
+
+		assertEquals(360, predictor.getNewestAngle(), 0);
+		// 1/8 degree per ms, a default 60 Hz frame ahead
+		assertEquals(360 + 16.666667 / 8, predictor.predict(16 * MS), 1e-6);
+	}
+}
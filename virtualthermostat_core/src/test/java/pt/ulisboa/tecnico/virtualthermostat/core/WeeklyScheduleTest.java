@@ -0,0 +1,43 @@
+package pt.ulisboa.tecnico.virtualthermostat.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class WeeklyScheduleTest {
+
+	private static final int MONDAY_7 = WeeklySchedule.minuteOfWeek(0, 7, 0);
+	private static final int MONDAY_22 = WeeklySchedule.minuteOfWeek(0, 22, 0);
+	private static final int SATURDAY_9 = WeeklySchedule.minuteOfWeek(5, 9, 0);
+
+	private final WeeklySchedule mSchedule = WeeklySchedule.of(
+			new int[] { MONDAY_7, MONDAY_22, SATURDAY_9 },
+			new int[] { 21, 17, 22 });
+
+	@Test
+	public void activeSetpointHoldsUntilTheNextChange() {
+		assertEquals(21, mSchedule.getActiveSetpoint(MONDAY_7));
+		assertEquals(21, mSchedule.getActiveSetpoint(MONDAY_22 - 1));
+		assertEquals(17, mSchedule.getActiveSetpoint(MONDAY_22));
+		assertEquals(22, mSchedule.getActiveSetpoint(WeeklySchedule.MINUTES_PER_WEEK - 1));
+	}
+
+	@Test
+	public void weekWrapsAround() {
+		// Before Monday 7:00 the Saturday setpoint is still in effect
+		assertEquals(22, mSchedule.getActiveSetpoint(0));
+		assertEquals(0, mSchedule.nextIndexAfter(0));
+		assertEquals(7 * 60, mSchedule.getMinutesUntilNext(0));
+		assertEquals(WeeklySchedule.MINUTES_PER_WEEK - SATURDAY_9 + MONDAY_7,
+				mSchedule.getMinutesUntilNext(SATURDAY_9));
+	}
+
+	@Test
+	public void timestampsMapToMinutesOfTheWeek() {
+		// 1970-01-05 was a Monday
+		long monday = 4 * 24 * 60 * 60 * 1000L;
+		assertEquals(0, WeeklySchedule.minuteOfWeek(monday, 0));
+		assertEquals(MONDAY_7, WeeklySchedule.minuteOfWeek(monday, 7 * 60 * 60 * 1000));
+		assertEquals(WeeklySchedule.MINUTES_PER_WEEK - 1, WeeklySchedule.minuteOfWeek(monday - 1, 0));
+	}
+}
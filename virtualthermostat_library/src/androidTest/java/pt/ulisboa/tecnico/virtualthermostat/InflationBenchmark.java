@@ -0,0 +1,53 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Times the creation of a screen of dials on a device, with the theme style
+ * resolved for every dial as XML inflation does and with one ThermostatStyle
+ * shared by all of them. The JVM tests can not measure this, the resource
+ * parsing that dominates it only happens on a device. Results are logged
+ * under the InflationBenchmark tag.
+ */
+public class InflationBenchmark extends AndroidTestCase {
+
+	private static final String TAG = "InflationBenchmark";
+	private static final int DIALS = 200;
+	private static final int RUNS = 5;
+
+	public void testCreateDials() {
+		Context context = getContext();
+		// Warm up so that class loading and the drawable cache are not timed
+		createResolvingEach(context);
+		createWithStyle(context);
+
+		long resolving = Long.MAX_VALUE;
+		long shared = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			resolving = Math.min(resolving, createResolvingEach(context));
+			shared = Math.min(shared, createWithStyle(context));
+		}
+		Log.i(TAG, String.format("%d dials: %.1f us/dial resolving each, %.1f us/dial sharing a style",
+				DIALS, resolving / 1000.0 / DIALS, shared / 1000.0 / DIALS));
+	}
+
+	private static long createResolvingEach(Context context) {
+		long start = System.nanoTime();
+		for (int i = 0; i < DIALS; i++) {
+			new VirtualThermostat(context,
+					ThermostatStyle.resolve(context, null, R.attr.virtualThermostatStyle));
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long createWithStyle(Context context) {
+		long start = System.nanoTime();
+		ThermostatStyle style = ThermostatStyle.obtain(context);
+		for (int i = 0; i < DIALS; i++) {
+			new VirtualThermostat(context, style);
+		}
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,188 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.test.AndroidTestCase;
+import android.view.View;
+
+/**
+ * Draws a dial into a real bitmap on a device and checks its pixels: the
+ * background, track and progress arc where the geometry puts them, the
+ * changed pixels of an update inside the region it invalidated, and no
+ * bitmap scaled while dragging. The JVM tests only see the calls made on a
+ * canvas that draws nothing, the colors, bounds and dirty regions can only
+ * be checked here.
+ */
+public class RenderingPixelTest extends AndroidTestCase {
+
+	private static final int SIZE = 500;
+	private static final int BACKGROUND_COLOR = 0xff00c000;
+	private static final int ARC_COLOR = 0xff808080;
+	private static final int PROGRESS_COLOR = 0xff0000ff;
+	private static final int STROKE_WIDTH = 24;
+	private static final int FRAMES = 360;
+
+	private DirtyRecordingThermostat mThermostat;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mThermostat = new DirtyRecordingThermostat(getContext());
+		mThermostat.setBackgroundColor(BACKGROUND_COLOR, false);
+		mThermostat.setArcColor(ARC_COLOR);
+		mThermostat.setProgressColor(PROGRESS_COLOR);
+		mThermostat.setArcWidth(STROKE_WIDTH);
+		mThermostat.setProgressWidth(STROKE_WIDTH);
+		mThermostat.setProgress((mThermostat.getMin() + mThermostat.getMax()) / 2);
+		int spec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+		mThermostat.measure(spec, spec);
+		mThermostat.layout(0, 0, SIZE, SIZE);
+	}
+
+	public void testArcsAndBackgroundAreWhereTheGeometryPutsThem() {
+		Bitmap bitmap = render();
+		int sweep = mThermostat.getSweepAngle();
+		// On the progress arc near its start, away from its end and the thumb
+		assertEquals(PROGRESS_COLOR, pixelOnArc(bitmap, sweep * 0.15f, 1f));
+		// On the track past the setpoint, which is half way
+		assertEquals(ARC_COLOR, pixelOnArc(bitmap, sweep * 0.85f, 1f));
+		// Inside the ring, clear of the labels
+		assertEquals(BACKGROUND_COLOR, pixelOnArc(bitmap, sweep * 0.15f, 0.5f));
+		// Outside the dial in a corner
+		assertEquals(0, bitmap.getPixel(1, 1));
+	}
+
+	public void testCurrentTemperatureRepaintsOnlyWhatItInvalidated() {
+		Bitmap before = render();
+		mThermostat.resetDirty();
+		mThermostat.setCurrentTemperatureTenths(215);
+		assertChangesInsideDirty(before, render());
+		assertTrue("invalidated " + mThermostat.mDirty + " for the current temperature",
+				mThermostat.mDirty.width() * mThermostat.mDirty.height() < SIZE * SIZE / 4);
+	}
+
+	public void testSetpointRepaintsOnlyWhatItInvalidated() {
+		Bitmap before = render();
+		mThermostat.resetDirty();
+		mThermostat.setProgress(mThermostat.getProgress() + 7);
+		assertChangesInsideDirty(before, render());
+	}
+
+	public void testDragScalesNoBitmap() {
+		ScaleCountingCanvas canvas = new ScaleCountingCanvas(
+				Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+		float radius = SIZE * 0.4f;
+		for (int i = 0; i < FRAMES; i++) {
+			double angle = Math.toRadians(i);
+			mThermostat.updateOnTouch((float) (SIZE / 2 + radius * Math.cos(angle)),
+					(float) (SIZE / 2 + radius * Math.sin(angle)));
+			mThermostat.draw(canvas);
+		}
+		assertEquals(0, canvas.mScaledBitmaps);
+	}
+
+	private Bitmap render() {
+		Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+		mThermostat.draw(new Canvas(bitmap));
+		return bitmap;
+	}
+
+	/**
+	 * Returns the pixel at a sweep along the arc, at a fraction of the
+	 * radius of the middle of its stroke.
+	 */
+	private int pixelOnArc(Bitmap bitmap, float sweep, float radiusFraction) {
+		int startAngle = mThermostat.getStartAngle() - 90 + mThermostat.getArcRotation();
+		double angle = Math.toRadians(startAngle + sweep);
+		// The arc is the largest circle in the view, its stroke is centered
+		// on the edge
+		float radius = (SIZE / 2 - STROKE_WIDTH / 4) * radiusFraction;
+		float x = (float) (radius * Math.cos(angle));
+		if (!mThermostat.isClockwise()) {
+			x = -x;
+		}
+		float y = (float) (radius * Math.sin(angle));
+		return bitmap.getPixel(Math.round(SIZE / 2 + x), Math.round(SIZE / 2 + y));
+	}
+
+	private void assertChangesInsideDirty(Bitmap before, Bitmap after) {
+		assertFalse("invalidated the whole view", mThermostat.mFull);
+		Rect changed = new Rect();
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				if (before.getPixel(x, y) != after.getPixel(x, y)) {
+					changed.union(x, y, x + 1, y + 1);
+				}
+			}
+		}
+		assertFalse("nothing was repainted", changed.isEmpty());
+		assertTrue("pixels changed in " + changed + " outside the invalidated " + mThermostat.mDirty,
+				mThermostat.mDirty.contains(changed));
+	}
+
+	/**
+	 * Collects the regions the dial invalidates.
+	 */
+	private static final class DirtyRecordingThermostat extends VirtualThermostat {
+
+		final Rect mDirty = new Rect();
+		boolean mFull;
+
+		DirtyRecordingThermostat(Context context) {
+			super(context);
+		}
+
+		void resetDirty() {
+			mDirty.setEmpty();
+			mFull = false;
+		}
+
+		@Override
+		public void invalidate(Rect dirty) {
+			mDirty.union(dirty);
+			super.invalidate(dirty);
+		}
+
+		@Override
+		public void invalidate() {
+			mFull = true;
+			super.invalidate();
+		}
+	}
+
+	/**
+	 * Counts the bitmaps drawn into a rectangle or through a matrix, which
+	 * scales them on every frame.
+	 */
+	private static final class ScaleCountingCanvas extends Canvas {
+
+		int mScaledBitmaps;
+
+		ScaleCountingCanvas(Bitmap bitmap) {
+			super(bitmap);
+		}
+
+		@Override
+		public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+			mScaledBitmaps++;
+			super.drawBitmap(bitmap, src, dst, paint);
+		}
+
+		@Override
+		public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+			mScaledBitmaps++;
+			super.drawBitmap(bitmap, src, dst, paint);
+		}
+
+		@Override
+		public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+			mScaledBitmaps++;
+			super.drawBitmap(bitmap, matrix, paint);
+		}
+	}
+}
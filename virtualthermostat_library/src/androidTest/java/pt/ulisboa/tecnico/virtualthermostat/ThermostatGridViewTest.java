@@ -0,0 +1,42 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.test.AndroidTestCase;
+import android.view.View;
+
+import pt.ulisboa.tecnico.virtualthermostat.core.ThermostatZones;
+
+/**
+ * Checks that the grid hit-tests the cells of its current column count,
+ * also before the layout requested by a change of column count.
+ */
+public class ThermostatGridViewTest extends AndroidTestCase {
+
+	private static final int WIDTH = 400;
+
+	private ThermostatGridView mGrid;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mGrid = new ThermostatGridView(getContext());
+		mGrid.setZones(new ThermostatZones(8, 15, 35, 0xff00c000));
+		mGrid.setColumnCount(4);
+		int widthSpec = View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY);
+		int heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+		mGrid.measure(widthSpec, heightSpec);
+		mGrid.layout(0, 0, mGrid.getMeasuredWidth(), mGrid.getMeasuredHeight());
+	}
+
+	public void testZonesFollowTheColumns() {
+		assertEquals(0, mGrid.getZoneAt(50, 50));
+		assertEquals(3, mGrid.getZoneAt(350, 50));
+		assertEquals(5, mGrid.getZoneAt(150, 150));
+	}
+
+	public void testColumnCountChangeMovesTheCellsBeforeLayout() {
+		mGrid.setColumnCount(2);
+		assertEquals(1, mGrid.getZoneAt(250, 50));
+		assertEquals(2, mGrid.getZoneAt(50, 250));
+		assertEquals(-1, mGrid.getZoneAt(50, 850));
+	}
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 
+ * BitmapPool.java
+ * 
+ * Bitmaps of one size kept for reuse, so rendering many snapshots does not
+ * allocate a bitmap per snapshot. Bitmaps are cleared to transparent when
+ * they are taken from the pool, and released bitmaps beyond the maximum
+ * are recycled. Thread safe and lock-free.
+ * 
+ */
+final class BitmapPool {
+
+	private final int mWidth;
+	private final int mHeight;
+	private final int mMaxFree;
+	private final ConcurrentLinkedQueue<Bitmap> mFree = new ConcurrentLinkedQueue<Bitmap>();
+	private final AtomicInteger mFreeCount = new AtomicInteger();
+
+	/**
+	 * @param maxFree
+	 *            The number of released bitmaps kept for reuse
+	 */
+	BitmapPool(int width, int height, int maxFree) {
+		mWidth = width;
+		mHeight = height;
+		mMaxFree = maxFree;
+	}
+
+	/**
+	 * Returns a transparent bitmap, from the pool or a new one.
+	 */
+	Bitmap acquire() {
+		Bitmap bitmap = mFree.poll();
+		if (bitmap == null) {
+			return Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+		}
+		mFreeCount.decrementAndGet();
+		bitmap.eraseColor(Color.TRANSPARENT);
+		return bitmap;
+	}
+
+	/**
+	 * Puts a bitmap taken from the pool back, it must not be used afterwards.
+	 */
+	void release(Bitmap bitmap) {
+		if (bitmap == null || bitmap.isRecycled()) {
+			return;
+		}
+		if (bitmap.getWidth() != mWidth || bitmap.getHeight() != mHeight) {
+			throw new IllegalArgumentException("bitmap is not " + mWidth + "x" + mHeight);
+		}
+		if (mFreeCount.incrementAndGet() <= mMaxFree) {
+			mFree.offer(bitmap);
+		} else {
+			mFreeCount.decrementAndGet();
+			bitmap.recycle();
+		}
+	}
+
+	/**
+	 * Recycles the pooled bitmaps.
+	 */
+	void clear() {
+		Bitmap bitmap;
+		while ((bitmap = mFree.poll()) != null) {
+			mFreeCount.decrementAndGet();
+			bitmap.recycle();
+		}
+	}
+}
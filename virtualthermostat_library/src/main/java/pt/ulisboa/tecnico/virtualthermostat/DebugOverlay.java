@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import java.util.Locale;
+
+/**
+ * 
+ * DebugOverlay.java
+ * 
+ * Rates drawn on top of a dial to find the dials that repaint too often:
+ * invalidations and onProgressChanged callbacks per second, the average
+ * onDraw time and the average share of the dial each invalidation
+ * repaints. The rates cover the last full second and their text is built
+ * once a second, the view is refreshed at the end of every second so an
+ * idle dial shows its rates going to 0. The regions invalidated are
+ * flashed and fade out.
+ * 
+ * UI thread only.
+ * 
+ */
+final class DebugOverlay {
+
+	private static final long WINDOW_NANOS = 1000000000L;
+	private static final long FLASH_NANOS = 300000000L;
+	private static final int MAX_FLASHES = 8;
+	private static final int FLASH_ALPHA = 0x60;
+	private static final int LINES = 4;
+
+	private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	private final Paint mBackgroundPaint = new Paint();
+	private final Paint mFlashPaint = new Paint();
+	private final float mLineHeight;
+	private final float mPadding;
+
+	// The last invalidated regions, oldest overwritten first
+	private final Rect[] mFlashRects = new Rect[MAX_FLASHES];
+	private final long[] mFlashTimes = new long[MAX_FLASHES];
+	private int mNextFlash;
+
+	// Counted since the start of the current window
+	private long mWindowStart;
+	private long mRefreshWindow = Long.MIN_VALUE;
+	private int mInvalidates;
+	private int mCallbacks;
+	private int mDraws;
+	private long mDrawNanos;
+	private long mDirtyPixels;
+	private long mViewPixels;
+
+	private final String[] mLines = new String[LINES];
+
+	DebugOverlay(float density, long nowNanos) {
+		mTextPaint.setColor(Color.WHITE);
+		mTextPaint.setTextSize(11 * density);
+		mBackgroundPaint.setColor(0xa0000000);
+		mFlashPaint.setColor(Color.MAGENTA);
+		mFlashPaint.setStyle(Paint.Style.FILL);
+		mLineHeight = 13 * density;
+		mPadding = 4 * density;
+		for (int i = 0; i < MAX_FLASHES; i++) {
+			mFlashRects[i] = new Rect();
+			mFlashTimes[i] = Long.MIN_VALUE;
+		}
+		mWindowStart = nowNanos;
+		mLines[0] = "inval -";
+		mLines[1] = "draw -";
+		mLines[2] = "onProgressChanged -";
+		mLines[3] = "dirty -";
+	}
+
+	/**
+	 * Counts an invalidation and flashes its region.
+	 *
+	 * @param dirty
+	 *            The region invalidated, or null for the whole view
+	 */
+	void onInvalidate(Rect dirty, int width, int height, long nowNanos) {
+		mInvalidates++;
+		Rect flash = mFlashRects[mNextFlash];
+		if (dirty == null) {
+			flash.set(0, 0, width, height);
+		} else {
+			flash.set(dirty);
+		}
+		mFlashTimes[mNextFlash] = nowNanos;
+		mNextFlash = (mNextFlash + 1) % MAX_FLASHES;
+		mDirtyPixels += (long) (flash.right - flash.left) * (flash.bottom - flash.top);
+		mViewPixels += (long) width * height;
+	}
+
+	void onCallback() {
+		mCallbacks++;
+	}
+
+	/**
+	 * Draws the rates and the fading regions.
+	 *
+	 * @param drawNanos
+	 *            How long the dial took to draw this frame
+	 * @return True while regions are still fading, the view must be drawn
+	 *         again to animate them
+	 */
+	boolean draw(Canvas canvas, long drawNanos, long nowNanos) {
+		if (nowNanos - mWindowStart >= WINDOW_NANOS) {
+			closeWindow();
+			if (nowNanos - mWindowStart >= WINDOW_NANOS) {
+				// Nothing was drawn, so nothing was counted, in the windows
+				// that went by since
+				closeWindow();
+				mWindowStart = nowNanos - (nowNanos - mWindowStart) % WINDOW_NANOS;
+			}
+		}
+		mDraws++;
+		mDrawNanos += drawNanos;
+
+		boolean fading = false;
+		for (int i = 0; i < MAX_FLASHES; i++) {
+			long age = nowNanos - mFlashTimes[i];
+			if (age >= 0 && age < FLASH_NANOS) {
+				mFlashPaint.setAlpha((int) (FLASH_ALPHA * (FLASH_NANOS - age) / FLASH_NANOS));
+				canvas.drawRect(mFlashRects[i], mFlashPaint);
+				fading = true;
+			}
+		}
+
+		float width = 0;
+		for (int i = 0; i < LINES; i++) {
+			width = Math.max(width, mTextPaint.measureText(mLines[i]));
+		}
+		canvas.drawRect(0, 0, width + 2 * mPadding, LINES * mLineHeight + 2 * mPadding,
+				mBackgroundPaint);
+		for (int i = 0; i < LINES; i++) {
+			float y = mPadding + (i + 1) * mLineHeight - mTextPaint.descent();
+			canvas.drawText(mLines[i], mPadding, y, mTextPaint);
+		}
+		return fading;
+	}
+
+	/**
+	 * Returns the delay until the current window ends, when the view must
+	 * be drawn again to show its rates, or -1 if a refresh was already
+	 * scheduled for it.
+	 */
+	long getRefreshDelayMillis(long nowNanos) {
+		if (mRefreshWindow == mWindowStart) {
+			return -1;
+		}
+		mRefreshWindow = mWindowStart;
+		long remaining = Math.max(0, mWindowStart + WINDOW_NANOS - nowNanos);
+		// Rounded up so the refresh does not land just before the end
+		return (remaining + 999999) / 1000000;
+	}
+
+	/**
+	 * Turns the counts of the window that ended into rates and starts the
+	 * next window, exactly one second after it.
+	 */
+	private void closeWindow() {
+		mLines[0] = String.format(Locale.US, "inval %d/s", mInvalidates);
+		mLines[1] = (mDraws == 0) ? "draw -"
+				: String.format(Locale.US, "draw %.2f ms", mDrawNanos / 1e6f / mDraws);
+		mLines[2] = String.format(Locale.US, "onProgressChanged %d/s", mCallbacks);
+		mLines[3] = (mViewPixels == 0) ? "dirty -"
+				: String.format(Locale.US, "dirty %d%%", mDirtyPixels * 100 / mViewPixels);
+
+		mWindowStart += WINDOW_NANOS;
+		mInvalidates = 0;
+		mCallbacks = 0;
+		mDraws = 0;
+		mDrawNanos = 0;
+		mDirtyPixels = 0;
+		mViewPixels = 0;
+	}
+
+	/**
+	 * Returns the lines drawn, for tests.
+	 */
+	String getLine(int index) {
+		return mLines[index];
+	}
+}
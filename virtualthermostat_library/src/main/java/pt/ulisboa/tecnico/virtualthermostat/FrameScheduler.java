@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * 
+ * FrameScheduler.java
+ * 
+ * Runs a callback once on the next display frame, however many times it is
+ * scheduled before that frame. Uses the Choreographer on API 16 and above,
+ * and a Handler with a fixed frame delay below.
+ *
+ * Must be used from the thread of its looper, the main thread unless one
+ * is given. Scheduling does not allocate.
+ * 
+ */
+final class FrameScheduler {
+
+	/**
+	 * Frame interval used when there is no Choreographer
+	 */
+	private static final long FALLBACK_FRAME_DELAY_MS = 16;
+
+	interface Callback {
+
+		/**
+		 * Called on the thread of the looper at the start of a frame.
+		 *
+		 * @param frameTimeNanos
+		 *            The time the frame started, in the System.nanoTime()
+		 *            time base
+		 */
+		void onFrame(long frameTimeNanos);
+	}
+
+	private final Callback mCallback;
+	private final Looper mLooper;
+	private final Runnable mFallbackRunnable;
+	private final Object mFrameCallback;
+	private Handler mHandler;
+	private boolean mScheduled;
+
+	FrameScheduler(Callback callback) {
+		this(callback, null);
+	}
+
+	/**
+	 * @param looper
+	 *            The looper of the thread to call back on, null for the main
+	 *            looper. The Choreographer of a thread is the one of its
+	 *            looper, so frames are paced to vsync on any looper thread.
+	 */
+	FrameScheduler(Callback callback, Looper looper) {
+		mCallback = callback;
+		mLooper = looper;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			mFallbackRunnable = null;
+			mFrameCallback = ChoreographerFrames.newFrameCallback(this);
+		} else {
+			mFrameCallback = null;
+			mFallbackRunnable = new Runnable() {
+				@Override
+				public void run() {
+					dispatchFrame(System.nanoTime());
+				}
+			};
+		}
+	}
+
+	/**
+	 * Requests a callback on the next frame, does nothing if one is already
+	 * pending.
+	 */
+	void schedule() {
+		if (mScheduled) {
+			return;
+		}
+		mScheduled = true;
+		if (mFrameCallback != null) {
+			ChoreographerFrames.post(mFrameCallback);
+		} else {
+			getHandler().postDelayed(mFallbackRunnable, FALLBACK_FRAME_DELAY_MS);
+		}
+	}
+
+	/**
+	 * Removes the pending callback, if any.
+	 */
+	void cancel() {
+		if (!mScheduled) {
+			return;
+		}
+		mScheduled = false;
+		if (mFrameCallback != null) {
+			ChoreographerFrames.remove(mFrameCallback);
+		} else {
+			getHandler().removeCallbacks(mFallbackRunnable);
+		}
+	}
+
+	boolean isScheduled() {
+		return mScheduled;
+	}
+
+	private void dispatchFrame(long frameTimeNanos) {
+		mScheduled = false;
+		mCallback.onFrame(frameTimeNanos);
+	}
+
+	private Handler getHandler() {
+		if (mHandler == null) {
+			mHandler = new Handler((mLooper != null) ? mLooper : Looper.getMainLooper());
+		}
+		return mHandler;
+	}
+
+	/**
+	 * Keeps the Choreographer references out of FrameScheduler so that it
+	 * still loads on API 15.
+	 */
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private static final class ChoreographerFrames {
+
+		static Object newFrameCallback(final FrameScheduler scheduler) {
+			return new Choreographer.FrameCallback() {
+				@Override
+				public void doFrame(long frameTimeNanos) {
+					scheduler.dispatchFrame(frameTimeNanos);
+				}
+			};
+		}
+
+		static void post(Object frameCallback) {
+			Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
+		}
+
+		static void remove(Object frameCallback) {
+			Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) frameCallback);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.graphics.Paint;
+
+/**
+ * 
+ * LabelCache.java
+ * 
+ * Pre-formatted temperature labels for a contiguous range of values, along
+ * with their width measured for the paint they are drawn with. Values are
+ * either whole degrees or fixed-point tenths of a degree.
+ *
+ * Labels are formatted the first time they are asked for (or all at once
+ * with {@link #fill()}) and kept for the lifetime of the cache, so drawing
+ * a value that was already shown never builds a String.
+ * 
+ */
+final class LabelCache {
+
+	private final int mFirst;
+	private final boolean mTenths;
+	private final String[] mLabels;
+	private final float[] mWidths;
+	private Paint mPaint;
+
+	/**
+	 * @param first
+	 *            The first value of the range, inclusive
+	 * @param last
+	 *            The last value of the range, inclusive
+	 * @param tenths
+	 *            True if the values are tenths of a degree
+	 */
+	LabelCache(int first, int last, boolean tenths) {
+		mFirst = first;
+		mTenths = tenths;
+		int size = (last < first) ? 0 : last - first + 1;
+		mLabels = new String[size];
+		mWidths = new float[size];
+	}
+
+	boolean contains(int value) {
+		return value >= mFirst && value - mFirst < mLabels.length;
+	}
+
+	/**
+	 * Returns the label for a value, formatting it if this is the first time
+	 * it is asked for. Values outside the range are formatted every call.
+	 */
+	String get(int value) {
+		if (!contains(value)) {
+			return format(value, mTenths);
+		}
+		int index = value - mFirst;
+		String label = mLabels[index];
+		if (label == null) {
+			label = format(value, mTenths);
+			mLabels[index] = label;
+			mWidths[index] = measure(label);
+		}
+		return label;
+	}
+
+	/**
+	 * Returns the width of the label of a value for the current paint.
+	 */
+	float getWidth(int value) {
+		if (!contains(value)) {
+			return measure(format(value, mTenths));
+		}
+		get(value);
+		return mWidths[value - mFirst];
+	}
+
+	/**
+	 * Formats every label of the range.
+	 */
+	void fill() {
+		for (int i = 0; i < mLabels.length; i++) {
+			get(mFirst + i);
+		}
+	}
+
+	/**
+	 * Sets the paint the labels are measured with and re-measures the labels
+	 * that were already formatted. Call again when its text size changes.
+	 */
+	void setPaint(Paint paint) {
+		mPaint = paint;
+		for (int i = 0; i < mLabels.length; i++) {
+			if (mLabels[i] != null) {
+				mWidths[i] = measure(mLabels[i]);
+			}
+		}
+	}
+
+	private float measure(String label) {
+		return (mPaint == null) ? 0 : mPaint.measureText(label);
+	}
+
+	static String format(int value, boolean tenths) {
+		if (!tenths) {
+			return String.valueOf(value);
+		}
+		StringBuilder sb = new StringBuilder(8);
+		if (value < 0) {
+			sb.append('-');
+		}
+		long abs = Math.abs((long) value);
+		sb.append(abs / 10).append('.').append(abs % 10);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import java.util.concurrent.Executor;
+
+import pt.ulisboa.tecnico.virtualthermostat.VirtualThermostat.OnVirtualThermostatChangeListener;
+
+/**
+ * 
+ * ListenerDispatcher.java
+ * 
+ * Delivers VirtualThermostat callbacks to any number of listeners. The
+ * listener array is copied on write, so dispatching reads a single volatile
+ * field and never locks.
+ *
+ * Without an executor listeners are called synchronously on the calling
+ * thread. With one, events are queued and handed to it in the order they
+ * happened. Only progress events are coalesced while a delivery is pending:
+ * a progress that follows another queued progress replaces it, so a start
+ * or stop is never reordered with the progress around it.
+ * 
+ */
+final class ListenerDispatcher {
+
+	private static final OnVirtualThermostatChangeListener[] NO_LISTENERS =
+			new OnVirtualThermostatChangeListener[0];
+
+	private static final int EVENT_START = 1;
+	private static final int EVENT_PROGRESS = 2;
+	private static final int EVENT_STOP = 3;
+
+	private final VirtualThermostat mThermostat;
+	private volatile OnVirtualThermostatChangeListener[] mListeners = NO_LISTENERS;
+	private volatile Executor mExecutor;
+
+	// Events waiting for asynchronous delivery, a ring in the order they
+	// happened with the packed progress of progress events
+	private final Object mPendingLock = new Object();
+	private int[] mPendingEvents = new int[8];
+	private long[] mPendingProgress = new long[8];
+	private int mPendingHead;
+	private int mPendingCount;
+	private boolean mDrainScheduled;
+	private final Runnable mDrain = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	ListenerDispatcher(VirtualThermostat thermostat) {
+		mThermostat = thermostat;
+	}
+
+	synchronized void add(OnVirtualThermostatChangeListener listener) {
+		if (listener == null || indexOf(listener) >= 0) {
+			return;
+		}
+		OnVirtualThermostatChangeListener[] listeners = mListeners;
+		OnVirtualThermostatChangeListener[] copy =
+				new OnVirtualThermostatChangeListener[listeners.length + 1];
+		System.arraycopy(listeners, 0, copy, 0, listeners.length);
+		copy[listeners.length] = listener;
+		mListeners = copy;
+	}
+
+	synchronized void remove(OnVirtualThermostatChangeListener listener) {
+		int index = indexOf(listener);
+		if (index < 0) {
+			return;
+		}
+		OnVirtualThermostatChangeListener[] listeners = mListeners;
+		OnVirtualThermostatChangeListener[] copy =
+				new OnVirtualThermostatChangeListener[listeners.length - 1];
+		System.arraycopy(listeners, 0, copy, 0, index);
+		System.arraycopy(listeners, index + 1, copy, index, listeners.length - index - 1);
+		mListeners = copy;
+	}
+
+	private int indexOf(OnVirtualThermostatChangeListener listener) {
+		OnVirtualThermostatChangeListener[] listeners = mListeners;
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	boolean hasListeners() {
+		return mListeners.length > 0;
+	}
+
+	/**
+	 * Sets the executor listeners are called on, or null to call them
+	 * synchronously.
+	 */
+	void setExecutor(Executor executor) {
+		mExecutor = executor;
+	}
+
+	void dispatchProgressChanged(int progress, boolean fromUser) {
+		Executor executor = mExecutor;
+		if (executor == null) {
+			deliverProgressChanged(mListeners, progress, fromUser);
+			return;
+		}
+		post(executor, EVENT_PROGRESS, packProgress(progress, fromUser));
+	}
+
+	void dispatchStartTrackingTouch() {
+		Executor executor = mExecutor;
+		if (executor == null) {
+			deliverStartTrackingTouch(mListeners);
+			return;
+		}
+		post(executor, EVENT_START, 0);
+	}
+
+	void dispatchStopTrackingTouch() {
+		Executor executor = mExecutor;
+		if (executor == null) {
+			deliverStopTrackingTouch(mListeners);
+			return;
+		}
+		post(executor, EVENT_STOP, 0);
+	}
+
+	private void post(Executor executor, int event, long progress) {
+		synchronized (mPendingLock) {
+			int mask = mPendingEvents.length - 1;
+			if (event == EVENT_PROGRESS && mPendingCount > 0) {
+				int last = (mPendingHead + mPendingCount - 1) & mask;
+				if (mPendingEvents[last] == EVENT_PROGRESS) {
+					// The drain is already scheduled for the queued progress
+					mPendingProgress[last] = progress;
+					return;
+				}
+			}
+			if (mPendingCount == mPendingEvents.length) {
+				growPending();
+				mask = mPendingEvents.length - 1;
+			}
+			int slot = (mPendingHead + mPendingCount) & mask;
+			mPendingEvents[slot] = event;
+			mPendingProgress[slot] = progress;
+			mPendingCount++;
+			if (mDrainScheduled) {
+				return;
+			}
+			mDrainScheduled = true;
+		}
+		try {
+			executor.execute(mDrain);
+		} catch (RuntimeException e) {
+			// The events stay queued, the next event schedules them again
+			synchronized (mPendingLock) {
+				mDrainScheduled = false;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Doubles the ring, only reached when the executor falls behind by
+	 * several gestures.
+	 */
+	private void growPending() {
+		int length = mPendingEvents.length;
+		int[] events = new int[length * 2];
+		long[] progress = new long[length * 2];
+		for (int i = 0; i < length; i++) {
+			int slot = (mPendingHead + i) & (length - 1);
+			events[i] = mPendingEvents[slot];
+			progress[i] = mPendingProgress[slot];
+		}
+		mPendingEvents = events;
+		mPendingProgress = progress;
+		mPendingHead = 0;
+	}
+
+	private void drain() {
+		while (true) {
+			int event;
+			long progress;
+			synchronized (mPendingLock) {
+				if (mPendingCount == 0) {
+					mDrainScheduled = false;
+					return;
+				}
+				event = mPendingEvents[mPendingHead];
+				progress = mPendingProgress[mPendingHead];
+				mPendingHead = (mPendingHead + 1) & (mPendingEvents.length - 1);
+				mPendingCount--;
+			}
+			OnVirtualThermostatChangeListener[] listeners = mListeners;
+			if (event == EVENT_START) {
+				deliverStartTrackingTouch(listeners);
+			} else if (event == EVENT_PROGRESS) {
+				deliverProgressChanged(listeners, unpackProgress(progress),
+						unpackFromUser(progress));
+			} else {
+				deliverStopTrackingTouch(listeners);
+			}
+		}
+	}
+
+	private void deliverProgressChanged(OnVirtualThermostatChangeListener[] listeners,
+			int progress, boolean fromUser) {
+		for (int i = 0; i < listeners.length; i++) {
+			listeners[i].onProgressChanged(mThermostat, progress, fromUser);
+		}
+	}
+
+	private void deliverStartTrackingTouch(OnVirtualThermostatChangeListener[] listeners) {
+		for (int i = 0; i < listeners.length; i++) {
+			listeners[i].onStartTrackingTouch(mThermostat);
+		}
+	}
+
+	private void deliverStopTrackingTouch(OnVirtualThermostatChangeListener[] listeners) {
+		for (int i = 0; i < listeners.length; i++) {
+			listeners[i].onStopTrackingTouch(mThermostat);
+		}
+	}
+
+	private static long packProgress(int progress, boolean fromUser) {
+		return ((long) progress << 1) | (fromUser ? 1 : 0);
+	}
+
+	private static int unpackProgress(long packed) {
+		return (int) (packed >> 1);
+	}
+
+	private static boolean unpackFromUser(long packed) {
+		return (packed & 1) != 0;
+	}
+}
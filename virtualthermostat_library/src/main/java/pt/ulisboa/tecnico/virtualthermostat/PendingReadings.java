@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 
+ * PendingReadings.java
+ * 
+ * Holds the latest current temperature and setpoint posted from any thread
+ * until the UI thread applies them. Each value is a single atomic slot, so
+ * a newer reading replaces an older one that was not applied yet, and
+ * neither posting nor taking locks or allocates.
+ *
+ * Each value is packed into a long with its 32 bits in the low half, so any
+ * int is a valid reading and Long.MIN_VALUE marks an empty slot.
+ *
+ * Offering a value returns true only for the first offer since the last
+ * drain, which is the one that has to schedule it.
+ * 
+ */
+final class PendingReadings {
+
+	private static final long NO_VALUE = Long.MIN_VALUE;
+	private static final long IN_TENTHS = 1L << 32;
+
+	// Tenths in the low 32 bits, IN_TENTHS set when shown with a decimal
+	private final AtomicLong mCurrentTemperature = new AtomicLong(NO_VALUE);
+	private final AtomicLong mProgress = new AtomicLong(NO_VALUE);
+	private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+	boolean offerCurrentTemperature(int tenths, boolean inTenths) {
+		mCurrentTemperature.set((tenths & 0xFFFFFFFFL) | (inTenths ? IN_TENTHS : 0));
+		return mScheduled.compareAndSet(false, true);
+	}
+
+	boolean offerProgress(int progress) {
+		mProgress.set(progress & 0xFFFFFFFFL);
+		return mScheduled.compareAndSet(false, true);
+	}
+
+	/**
+	 * Call before taking the values, so that a value offered while they are
+	 * being applied schedules another drain instead of being lost.
+	 */
+	void beginDrain() {
+		mScheduled.set(false);
+	}
+
+	/**
+	 * Takes the pending current temperature, packed as returned by
+	 * {@link #getTenths(long)} and {@link #isInTenths(long)}, or
+	 * Long.MIN_VALUE if there is none.
+	 */
+	long takeCurrentTemperature() {
+		return mCurrentTemperature.getAndSet(NO_VALUE);
+	}
+
+	/**
+	 * Takes the pending setpoint, packed as returned by
+	 * {@link #getProgress(long)}, or Long.MIN_VALUE if there is none.
+	 */
+	long takeProgress() {
+		return mProgress.getAndSet(NO_VALUE);
+	}
+
+	static boolean hasTemperature(long packed) {
+		return packed != NO_VALUE;
+	}
+
+	static boolean hasProgress(long packed) {
+		return packed != NO_VALUE;
+	}
+
+	static int getProgress(long packed) {
+		return (int) packed;
+	}
+
+	static int getTenths(long packed) {
+		return (int) packed;
+	}
+
+	static boolean isInTenths(long packed) {
+		return (packed & IN_TENTHS) != 0;
+	}
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+
+/**
+ * 
+ * PrescaledDrawable.java
+ * 
+ * A drawable rendered once into a bitmap of the exact pixel size of its
+ * bounds, so that drawing it is a 1:1 blit instead of scaling the source
+ * image on every frame. A bitmap is kept for each state the drawable has
+ * been drawn in, told apart by {@link Drawable#getCurrent()}, which is the
+ * selected child of a state list.
+ * 
+ * The bitmaps are dropped when the size changes. If a bitmap cannot be
+ * created the drawable is drawn directly.
+ * 
+ */
+final class PrescaledDrawable {
+
+	// Enough for the states of the thumb selector
+	private static final int MAX_STATES = 4;
+
+	private final Drawable mDrawable;
+	private final Drawable[] mStates = new Drawable[MAX_STATES];
+	private final Bitmap[] mBitmaps = new Bitmap[MAX_STATES];
+	private int mNextSlot;
+	private int mLeft;
+	private int mTop;
+	private int mWidth;
+	private int mHeight;
+
+	PrescaledDrawable(Drawable drawable) {
+		mDrawable = drawable;
+	}
+
+	Drawable getDrawable() {
+		return mDrawable;
+	}
+
+	void setBounds(int left, int top, int right, int bottom) {
+		mDrawable.setBounds(left, top, right, bottom);
+		mLeft = left;
+		mTop = top;
+		if (right - left != mWidth || bottom - top != mHeight) {
+			mWidth = right - left;
+			mHeight = bottom - top;
+			clear();
+		}
+	}
+
+	/**
+	 * Draws the bitmap of the current state at the bounds, creating it the
+	 * first time the state is drawn at this size.
+	 *
+	 * @param paint
+	 *            The paint to blit with, null for no filtering
+	 */
+	void draw(Canvas canvas, Paint paint) {
+		Bitmap bitmap = getBitmap();
+		if (bitmap == null) {
+			mDrawable.draw(canvas);
+		} else {
+			canvas.drawBitmap(bitmap, mLeft, mTop, paint);
+		}
+	}
+
+	/**
+	 * Drops the bitmaps, they are created again when next drawn.
+	 */
+	void clear() {
+		for (int i = 0; i < MAX_STATES; i++) {
+			mStates[i] = null;
+			mBitmaps[i] = null;
+		}
+		mNextSlot = 0;
+	}
+
+	private Bitmap getBitmap() {
+		if (mWidth <= 0 || mHeight <= 0) {
+			return null;
+		}
+		final Drawable current = mDrawable.getCurrent();
+		for (int i = 0; i < MAX_STATES; i++) {
+			if (mStates[i] == current) {
+				return mBitmaps[i];
+			}
+		}
+		Bitmap bitmap = render();
+		int slot = mNextSlot;
+		mNextSlot = (slot + 1) % MAX_STATES;
+		mStates[slot] = current;
+		mBitmaps[slot] = bitmap;
+		return bitmap;
+	}
+
+	private Bitmap render() {
+		Bitmap bitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+		if (bitmap == null) {
+			return null;
+		}
+		Canvas canvas = new Canvas(bitmap);
+		canvas.translate(-mLeft, -mTop);
+		mDrawable.draw(canvas);
+		return bitmap;
+	}
+}
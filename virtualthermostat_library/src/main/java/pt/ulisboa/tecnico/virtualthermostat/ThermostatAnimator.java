@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+/**
+ * 
+ * ThermostatAnimator.java
+ * 
+ * Animates the progress sweep, the background color and the current
+ * temperature of a VirtualThermostat from a single frame callback shared by
+ * all of them. Values are interpolated with a decelerating curve on plain
+ * fields, nothing is boxed or allocated per frame, and no frame is
+ * requested once every animation has settled.
+ * 
+ */
+final class ThermostatAnimator implements FrameScheduler.Callback {
+
+	static final long DEFAULT_DURATION_MS = 300;
+
+	private final VirtualThermostat mThermostat;
+	private final FrameScheduler mFrameScheduler = new FrameScheduler(this);
+	private long mDurationNanos = DEFAULT_DURATION_MS * 1000000L;
+
+	private final Track mSweep = new Track();
+	private final Track mBackground = new Track();
+	private final Track mCurrentTemperature = new Track();
+
+	// Background colors are interpolated per channel
+	private int mBackgroundFrom;
+	private int mBackgroundTo;
+
+	ThermostatAnimator(VirtualThermostat thermostat) {
+		mThermostat = thermostat;
+	}
+
+	void setDuration(long durationMs) {
+		mDurationNanos = Math.max(0, durationMs) * 1000000L;
+	}
+
+	long getDuration() {
+		return mDurationNanos / 1000000L;
+	}
+
+	void animateSweep(float from, float to) {
+		mSweep.start(from, to);
+		mFrameScheduler.schedule();
+	}
+
+	boolean isSweepRunning() {
+		return mSweep.mRunning;
+	}
+
+	void cancelSweep() {
+		mSweep.mRunning = false;
+	}
+
+	void animateBackground(int from, int to) {
+		if (mBackground.mRunning) {
+			from = getBackgroundColor();
+		}
+		mBackgroundFrom = from;
+		mBackgroundTo = to;
+		mBackground.start(0, 1);
+		mFrameScheduler.schedule();
+	}
+
+	void cancelBackground() {
+		mBackground.mRunning = false;
+	}
+
+	void animateCurrentTemperature(int fromTenths, int toTenths) {
+		mCurrentTemperature.start(fromTenths, toTenths);
+		mFrameScheduler.schedule();
+	}
+
+	boolean isCurrentTemperatureRunning() {
+		return mCurrentTemperature.mRunning;
+	}
+
+	int getCurrentTemperature() {
+		return Math.round(mCurrentTemperature.mValue);
+	}
+
+	void cancelCurrentTemperature() {
+		mCurrentTemperature.mRunning = false;
+	}
+
+	/**
+	 * Jumps every running animation to its end value, including those that
+	 * have not had their first frame yet.
+	 */
+	void finish() {
+		mFrameScheduler.cancel();
+		if (mSweep.mRunning) {
+			mSweep.end();
+			mThermostat.applyAnimatedSweep(mSweep.mValue, true);
+		}
+		if (mBackground.mRunning) {
+			mBackground.end();
+			mThermostat.applyAnimatedBackground(getBackgroundColor());
+		}
+		if (mCurrentTemperature.mRunning) {
+			mCurrentTemperature.end();
+			mThermostat.applyAnimatedCurrentTemperature(getCurrentTemperature());
+		}
+	}
+
+	@Override
+	public void onFrame(long frameTimeNanos) {
+		boolean running = false;
+		if (mSweep.mRunning) {
+			mSweep.update(frameTimeNanos, mDurationNanos);
+			mThermostat.applyAnimatedSweep(mSweep.mValue, !mSweep.mRunning);
+			running |= mSweep.mRunning;
+		}
+		if (mBackground.mRunning) {
+			mBackground.update(frameTimeNanos, mDurationNanos);
+			mThermostat.applyAnimatedBackground(getBackgroundColor());
+			running |= mBackground.mRunning;
+		}
+		if (mCurrentTemperature.mRunning) {
+			mCurrentTemperature.update(frameTimeNanos, mDurationNanos);
+			mThermostat.applyAnimatedCurrentTemperature(getCurrentTemperature());
+			running |= mCurrentTemperature.mRunning;
+		}
+		if (running) {
+			mFrameScheduler.schedule();
+		}
+	}
+
+	private int getBackgroundColor() {
+		float fraction = mBackground.mValue;
+		int from = mBackgroundFrom;
+		int to = mBackgroundTo;
+		int a = interpolate(from >>> 24, to >>> 24, fraction);
+		int r = interpolate((from >> 16) & 0xFF, (to >> 16) & 0xFF, fraction);
+		int g = interpolate((from >> 8) & 0xFF, (to >> 8) & 0xFF, fraction);
+		int b = interpolate(from & 0xFF, to & 0xFF, fraction);
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	private static int interpolate(int from, int to, float fraction) {
+		return from + Math.round((to - from) * fraction);
+	}
+
+	/**
+	 * One animated value. The start time is taken from the first frame so
+	 * that the time spent waiting for it does not skip part of the curve.
+	 */
+	private static final class Track {
+
+		float mFrom;
+		float mTo;
+		float mValue;
+		long mStartNanos;
+		boolean mRunning;
+
+		void start(float from, float to) {
+			mFrom = from;
+			mTo = to;
+			mValue = from;
+			mStartNanos = -1;
+			mRunning = true;
+		}
+
+		void end() {
+			mValue = mTo;
+			mRunning = false;
+		}
+
+		void update(long frameTimeNanos, long durationNanos) {
+			if (mStartNanos < 0) {
+				mStartNanos = frameTimeNanos;
+			}
+			long elapsed = frameTimeNanos - mStartNanos;
+			if (durationNanos <= 0 || elapsed >= durationNanos) {
+				end();
+				return;
+			}
+			float t = (float) elapsed / durationNanos;
+			// Decelerate, same curve as DecelerateInterpolator
+			float eased = 1 - (1 - t) * (1 - t);
+			mValue = mFrom + (mTo - mFrom) * eased;
+		}
+	}
+}
@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewParent;
+
+import pt.ulisboa.tecnico.virtualthermostat.core.ArcGeometry;
+import pt.ulisboa.tecnico.virtualthermostat.core.ThermostatZones;
+
+/**
+ * 
+ * ThermostatGridView.java
+ * 
+ * Draws many thermostat dials, one per zone of a {@link ThermostatZones},
+ * in a grid inside a single View. Every cell is drawn by one shared
+ * {@link ThermostatRenderer}, loaded with the state of the zone before it
+ * draws, so the zones look like VirtualThermostat dials of the cell size
+ * and share its paints, label caches, thumb and leaf icon. The cost per
+ * zone is three ints of state and its share of one onDraw.
+ * 
+ * Changing a zone through this view repaints only its cell, and onDraw
+ * skips the cells outside the clip. Touches are routed to the zone under
+ * the finger and change its setpoint like the VirtualThermostat arc does.
+ * 
+ */
+public class ThermostatGridView extends View {
+
+	private static final int NO_ZONE = -1;
+
+	// Arc angles of the sample VirtualThermostat, an open ring at the bottom
+	private static final int DEFAULT_START_ANGLE = 60;
+	private static final int DEFAULT_SWEEP_ANGLE = 240;
+	private static final int DEFAULT_ROTATION = 180;
+
+	private static final int DEFAULT_BACKGROUND_COLOR = 0xffF57F17;
+
+	/**
+	 * Receives setpoint changes of the zones of a ThermostatGridView.
+	 */
+	public interface OnZoneChangeListener {
+
+		/**
+		 * Notification that the setpoint of a zone has changed.
+		 *
+		 * @param grid
+		 *            The ThermostatGridView
+		 * @param zone
+		 *            The index of the zone
+		 * @param setpoint
+		 *            The new setpoint
+		 * @param fromUser
+		 *            True if the setpoint change was initiated by the user
+		 */
+		void onZoneSetpointChanged(ThermostatGridView grid, int zone, int setpoint, boolean fromUser);
+
+		void onStartTrackingTouch(ThermostatGridView grid, int zone);
+
+		void onStopTrackingTouch(ThermostatGridView grid, int zone);
+	}
+
+	private ThermostatZones mZones;
+	private int mColumns = 4;
+	private int mCellPadding;
+
+	// Draws every cell, laid out for the cell size
+	private final ThermostatRenderer mRenderer;
+
+	/**
+	 * The paints, labels and leaf icon shared with the other views of the
+	 * same Resources, held while attached, see VirtualThermostat.
+	 */
+	private ThermostatResources mSharedResources;
+
+	private int mCellSize;
+	private final Rect mClipBounds = new Rect();
+
+	private int mTouchZone = NO_ZONE;
+	private OnZoneChangeListener mOnZoneChangeListener;
+
+	public ThermostatGridView(Context context) {
+		this(context, null);
+	}
+
+	public ThermostatGridView(Context context, AttributeSet attrs) {
+		this(context, attrs, 0);
+	}
+
+	public ThermostatGridView(Context context, AttributeSet attrs, int defStyle) {
+		super(context, attrs, defStyle);
+		final Resources res = context.getResources();
+		final float density = res.getDisplayMetrics().density;
+		mCellPadding = (int) (8 * density);
+
+		if (attrs != null) {
+			mRenderer = new ThermostatRenderer(res, ThermostatStyle.resolve(context, attrs, defStyle));
+		} else {
+			mRenderer = new ThermostatRenderer(res, ThermostatStyle.getDefault(res));
+			mRenderer.setArc(DEFAULT_START_ANGLE, DEFAULT_SWEEP_ANGLE, DEFAULT_ROTATION, true);
+		}
+
+		setZones(new ThermostatZones(0, 15, 35, DEFAULT_BACKGROUND_COLOR));
+	}
+
+	/**
+	 * Sets the zones to show. Zones changed directly on the model afterwards
+	 * must be repainted with {@link #invalidateZone(int)}.
+	 */
+	public void setZones(ThermostatZones zones) {
+		if (zones == null) {
+			throw new IllegalArgumentException("zones == null");
+		}
+		boolean countChanged = mZones == null || mZones.getCount() != zones.getCount();
+		mZones = zones;
+		mTouchZone = NO_ZONE;
+		mRenderer.setRange(zones.getMin(), zones.getMax());
+		if (countChanged) {
+			requestLayout();
+		}
+		invalidate();
+	}
+
+	public ThermostatZones getZones() {
+		return mZones;
+	}
+
+	/**
+	 * Sets the number of dials per row. Defaults to 4.
+	 */
+	public void setColumnCount(int columns) {
+		if (columns < 1) {
+			throw new IllegalArgumentException("columns < 1: " + columns);
+		}
+		if (mColumns != columns) {
+			mColumns = columns;
+			// Hit-testing uses the new cells before the next layout
+			updateCellSize(getWidth());
+			requestLayout();
+			invalidate();
+		}
+	}
+
+	public int getColumnCount() {
+		return mColumns;
+	}
+
+	/**
+	 * Sets the arc of every dial, with the same meaning as the
+	 * VirtualThermostat startAngle, sweepAngle and rotation attributes.
+	 */
+	public void setArcAngles(int startAngle, int sweepAngle, int rotation) {
+		mRenderer.setArc(startAngle, sweepAngle, rotation, mRenderer.isClockwise());
+		invalidate();
+	}
+
+	/**
+	 * Sets the setpoints of every zone where the leaf icon is shown, like
+	 * {@link VirtualThermostat#setLeafLimit(int, int)}.
+	 */
+	public void setLeafLimit(int downLimit, int upperLimit) {
+		mRenderer.setLeafRange(downLimit, upperLimit);
+		invalidate();
+	}
+
+	public void setOnZoneChangeListener(OnZoneChangeListener listener) {
+		mOnZoneChangeListener = listener;
+	}
+
+	public void setZoneSetpoint(int zone, int setpoint) {
+		if (mZones.setSetpoint(zone, setpoint)) {
+			invalidateZone(zone);
+			if (mOnZoneChangeListener != null) {
+				mOnZoneChangeListener.onZoneSetpointChanged(this, zone, mZones.getSetpoint(zone), false);
+			}
+		}
+	}
+
+	public int getZoneSetpoint(int zone) {
+		return mZones.getSetpoint(zone);
+	}
+
+	public void setZoneCurrentTemperatureTenths(int zone, int tenths) {
+		if (mZones.setCurrentTemperatureTenths(zone, tenths)) {
+			invalidateZone(zone);
+		}
+	}
+
+	public void setZoneBackgroundColor(int zone, int color) {
+		if (mZones.setBackgroundColor(zone, color)) {
+			invalidateZone(zone);
+		}
+	}
+
+	/**
+	 * Repaints the cell of one zone.
+	 */
+	public void invalidateZone(int zone) {
+		if (mCellSize == 0) {
+			return;
+		}
+		int left = getCellLeft(zone);
+		int top = getCellTop(zone);
+		invalidate(left, top, left + mCellSize, top + mCellSize);
+	}
+
+	/**
+	 * Returns the zone whose cell contains a point, or -1 if there is none.
+	 */
+	public int getZoneAt(float x, float y) {
+		if (mCellSize == 0) {
+			return NO_ZONE;
+		}
+		float cellX = x - getPaddingLeft();
+		float cellY = y - getPaddingTop();
+		if (cellX < 0 || cellY < 0) {
+			return NO_ZONE;
+		}
+		int column = (int) (cellX / mCellSize);
+		if (column >= mColumns) {
+			return NO_ZONE;
+		}
+		int zone = (int) (cellY / mCellSize) * mColumns + column;
+		return (zone < mZones.getCount()) ? zone : NO_ZONE;
+	}
+
+	@Override
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+		final int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
+		final int cellSize = (width - getPaddingLeft() - getPaddingRight()) / mColumns;
+		final int rows = (mZones.getCount() + mColumns - 1) / mColumns;
+		final int height = rows * cellSize + getPaddingTop() + getPaddingBottom();
+		setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+	}
+
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		updateCellSize(w);
+	}
+
+	private void updateCellSize(int width) {
+		mCellSize = Math.max(0, (width - getPaddingLeft() - getPaddingRight()) / mColumns);
+		// The arc leaves the cell padding out on both sides
+		mRenderer.setSize(mCellSize, mCellSize, 2 * mCellPadding);
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if (mSharedResources == null) {
+			mSharedResources = ThermostatResources.acquire(getContext().getResources());
+			mRenderer.setSharedResources(mSharedResources);
+		}
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		mRenderer.clearBitmaps();
+		if (mSharedResources != null) {
+			mRenderer.setSharedResources(null);
+			mSharedResources.release();
+			mSharedResources = null;
+		}
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		if (mCellSize == 0 || mZones.getCount() == 0) {
+			return;
+		}
+		if (!canvas.getClipBounds(mClipBounds)) {
+			return;
+		}
+		final int left = getPaddingLeft();
+		final int top = getPaddingTop();
+		final int firstColumn = Math.max(0, (mClipBounds.left - left) / mCellSize);
+		final int lastColumn = Math.min(mColumns - 1, (mClipBounds.right - 1 - left) / mCellSize);
+		final int firstRow = Math.max(0, (mClipBounds.top - top) / mCellSize);
+		final int lastRow = (mClipBounds.bottom - 1 - top) / mCellSize;
+		final int count = mZones.getCount();
+
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				int zone = row * mColumns + column;
+				if (zone >= count) {
+					return;
+				}
+				drawZone(canvas, zone, left + column * mCellSize, top + row * mCellSize);
+			}
+		}
+	}
+
+	private void drawZone(Canvas canvas, int zone, int cellLeft, int cellTop) {
+		final ThermostatRenderer renderer = mRenderer;
+		renderer.setStep(mZones.getStep(zone));
+		renderer.setCurrentTemperatureTenths(mZones.getCurrentTemperatureTenths(zone), true);
+		renderer.setBackgroundColor(mZones.getBackgroundColor(zone));
+
+		final int saveCount = canvas.save();
+		canvas.translate(cellLeft, cellTop);
+		renderer.draw(canvas);
+		canvas.restoreToCount(saveCount);
+	}
+
+	@Override
+	public boolean onTouchEvent(MotionEvent event) {
+		switch (event.getAction()) {
+		case MotionEvent.ACTION_DOWN:
+			int zone = getZoneAt(event.getX(), event.getY());
+			if (zone == NO_ZONE || mRenderer.isTouchIgnored(event.getX() - getCellLeft(zone),
+					event.getY() - getCellTop(zone))) {
+				return false;
+			}
+			mTouchZone = zone;
+			ViewParent parent = getParent();
+			if (parent != null) {
+				parent.requestDisallowInterceptTouchEvent(true);
+			}
+			if (mOnZoneChangeListener != null) {
+				mOnZoneChangeListener.onStartTrackingTouch(this, zone);
+			}
+			updateOnTouch(event.getX(), event.getY());
+			return true;
+		case MotionEvent.ACTION_MOVE:
+			updateOnTouch(event.getX(), event.getY());
+			return true;
+		case MotionEvent.ACTION_UP:
+			updateOnTouch(event.getX(), event.getY());
+			stopTracking();
+			return true;
+		case MotionEvent.ACTION_CANCEL:
+			stopTracking();
+			return true;
+		}
+		return false;
+	}
+
+	private void stopTracking() {
+		int zone = mTouchZone;
+		mTouchZone = NO_ZONE;
+		if (zone != NO_ZONE && mOnZoneChangeListener != null) {
+			mOnZoneChangeListener.onStopTrackingTouch(this, zone);
+		}
+	}
+
+	/**
+	 * Moves the setpoint of the touched zone to the point of the arc under
+	 * the finger, the touch stays with its zone even outside the cell.
+	 */
+	private void updateOnTouch(float x, float y) {
+		final int zone = mTouchZone;
+		if (zone == NO_ZONE) {
+			return;
+		}
+		int step = mRenderer.getStepForTouch(x - getCellLeft(zone), y - getCellTop(zone));
+		if (step != ArcGeometry.INVALID_STEP && mZones.setStep(zone, step)) {
+			invalidateZone(zone);
+			if (mOnZoneChangeListener != null) {
+				mOnZoneChangeListener.onZoneSetpointChanged(this, zone, mZones.getSetpoint(zone), true);
+			}
+		}
+	}
+
+	private int getCellLeft(int zone) {
+		return getPaddingLeft() + (zone % mColumns) * mCellSize;
+	}
+
+	private int getCellTop(int zone) {
+		return getPaddingTop() + (zone / mColumns) * mCellSize;
+	}
+}
@@ -0,0 +1,1020 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.text.TextPaint;
+
+import pt.ulisboa.tecnico.virtualthermostat.core.ArcGeometry;
+import pt.ulisboa.tecnico.virtualthermostat.core.ProgressColors;
+import pt.ulisboa.tecnico.virtualthermostat.core.ThermostatModel;
+import pt.ulisboa.tecnico.virtualthermostat.core.ThermostatZones;
+
+/**
+ * 
+ * ThermostatRenderer.java
+ * 
+ * Draws the VirtualThermostat dial, the background circle, the track and
+ * progress arcs, the setpoint and current temperature labels, the leaf
+ * icon and the thumb, on any Canvas. It is the only code that lays out and
+ * draws a dial: VirtualThermostat, ThermostatTextureView,
+ * ThermostatGridView and ThermostatSnapshotRenderer all draw through it,
+ * with the sizes, colors and drawables of a {@link ThermostatStyle}.
+ * 
+ * Views draw the regions they invalidate, so the renderer also returns the
+ * bounds of each element on the canvas, mirrored like the drawing when the
+ * dial is counter-clockwise.
+ * 
+ * Every paint, label cache and drawable is owned by the renderer unless it
+ * is given shared resources with {@link #setSharedResources}, which only
+ * views on the main thread do. Otherwise a renderer can be created on one
+ * thread and then used on another one, such as a render thread. Not thread
+ * safe, it must be used from one thread at a time,
+ * {@link ThermostatSnapshotRenderer} keeps one per thread.
+ * 
+ */
+final class ThermostatRenderer {
+
+	// The initial rotational offset -90 means we start at 12 o'clock
+	private static final int ANGLE_OFFSET = -90;
+
+	// Colors the progress arc is interpolated between, from the minimum to
+	// the maximum, unless a progress color is set
+	private static final int PROGRESS_COLOR_START = 0xff33b5e5;
+	private static final int PROGRESS_COLOR_END = 0xffe2231a;
+	private static final int DEFAULT_BACKGROUND_COLOR = 0xffF57F17;
+
+	private static final int[] STATE_DISABLED = {};
+	private static final int[] STATE_ENABLED = { android.R.attr.state_enabled };
+	private static final int[] STATE_PRESSED = { android.R.attr.state_enabled,
+			android.R.attr.state_pressed };
+
+	/**
+	 * Draws what a view adds to the dial, over the labels and under the
+	 * leaf and thumb, in the coordinates of the dial.
+	 */
+	interface Decoration {
+		void draw(Canvas canvas);
+	}
+
+	private final Resources mResources;
+	private final ThermostatStyle mStyle;
+	private final float mDensity;
+	private final ThermostatModel mModel = new ThermostatModel();
+	private final ArcGeometry mGeometry = new ArcGeometry();
+	private final ProgressColors mProgressColors = new ProgressColors(PROGRESS_COLOR_START,
+			PROGRESS_COLOR_END);
+	private boolean mProgressGradient;
+
+	private final Paint mBackgroundPaint;
+	private final Paint mArcPaint;
+	private final Paint mProgressPaint;
+	/**
+	 * The thumb, loaded the first time it is drawn. Until then the state set
+	 * is kept to be applied to it.
+	 */
+	private Drawable mThumb;
+	private PrescaledDrawable mThumbImage;
+	private int[] mThumbState = STATE_ENABLED;
+	private final Paint mThumbPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	private boolean mEnabled = true;
+	private boolean mPressed;
+
+	/**
+	 * The leaf icon, loaded the first time it is shown. The default one
+	 * comes from the shared resources when there are any.
+	 */
+	private final boolean mDefaultLeaf;
+	private PrescaledDrawable mLeafImage;
+	private boolean mLeafShared;
+
+	/**
+	 * The text paints drawn with, either those of the renderer or those of
+	 * the shared resources
+	 */
+	private final Paint mOwnSetpointPaint;
+	private final TextPaint mOwnCurrentPaint;
+	private final TextPaint mOwnLabelPaint;
+	private Paint mSetpointPaint;
+	private TextPaint mCurrentPaint;
+	private TextPaint mLabelPaint;
+	private ThermostatResources mSharedResources;
+	private ThermostatResources.Sized mSizedResources;
+
+	private LabelCache mSetpointLabels;
+	private LabelCache mCurrentLabels;
+	private LabelCache mCurrentTenthsLabels;
+	private int mCurrentRangeMin = ThermostatResources.Sized.CURRENT_RANGE_MIN;
+	private int mCurrentRangeMax = ThermostatResources.Sized.CURRENT_RANGE_MAX;
+
+	private int mStartAngle;
+	private int mSweepAngle;
+	private int mRotation;
+	private boolean mClockwise;
+	private boolean mTouchInside;
+
+	// Layout, computed in setSize so draw does not allocate
+	private int mWidth;
+	private int mHeight;
+	private int mPadding;
+	private int mSmallest;
+	private int mArcRadius;
+	private int mTranslateX;
+	private int mTranslateY;
+	private final RectF mArcRect = new RectF();
+	private float mCenterX;
+	private float mCenterY;
+	private float mCurrentTextY;
+	private float mCurrentLabelY;
+	private int mLeafTop;
+	private int mThumbRadius;
+	private float mTouchIgnoreRadius;
+
+	/**
+	 * The arc, thumb and label as drawn, which are those of the setpoint
+	 * unless they are moved to a sweep between steps by an animation
+	 */
+	private float mProgressSweep;
+	private int mLabelStep;
+	private int mThumbX;
+	private int mThumbY;
+	private int mLabelX;
+	private int mLabelY;
+	private final int[] mSweepPositions = new int[4];
+
+	private String mCurrentText = "0";
+	private float mCurrentTextWidth;
+	private int mCurrentTemperatureTenths;
+	private boolean mCurrentInTenths;
+	private final String mCurrentLabel = "Current";
+
+	ThermostatRenderer(Resources res) {
+		this(res, ThermostatStyle.getDefault(res));
+	}
+
+	ThermostatRenderer(Resources res, ThermostatStyle style) {
+		mResources = res;
+		mStyle = style;
+		mDensity = res.getDisplayMetrics().density;
+
+		mModel.setMin(style.getMin());
+		mModel.setMax(style.getMax());
+		mModel.setStep(style.getProgress());
+		mStartAngle = clampStartAngle(style.getStartAngle());
+		mSweepAngle = clampSweepAngle(style.getSweepAngle());
+		mRotation = style.getRotation();
+		mClockwise = style.isClockwise();
+		mTouchInside = style.isTouchInside();
+		mProgressGradient = !style.hasProgressColor();
+
+		mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		mBackgroundPaint.setColor(DEFAULT_BACKGROUND_COLOR);
+		mBackgroundPaint.setStyle(Paint.Style.FILL);
+
+		mArcPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		mArcPaint.setColor(style.getArcColor());
+		mArcPaint.setStyle(Paint.Style.STROKE);
+		mArcPaint.setStrokeWidth(style.getArcWidth());
+
+		mProgressPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		mProgressPaint.setColor(style.getProgressColor());
+		mProgressPaint.setStyle(Paint.Style.STROKE);
+		mProgressPaint.setStrokeWidth(style.getProgressWidth());
+		if (style.isRoundedEdges()) {
+			setRoundedEdges(true);
+		}
+
+		mOwnSetpointPaint = ThermostatResources.newSetpointPaint(mDensity);
+		mOwnCurrentPaint = ThermostatResources.newCurrentPaint();
+		mOwnLabelPaint = ThermostatResources.newLabelPaint(res);
+		mSetpointPaint = mOwnSetpointPaint;
+		mCurrentPaint = mOwnCurrentPaint;
+		mLabelPaint = mOwnLabelPaint;
+
+		mDefaultLeaf = !style.hasIcon();
+		updateThumbState();
+
+		buildSetpointLabels();
+		updateGeometry();
+	}
+
+	/**
+	 * Draws with the paints, labels and default leaf icon shared by the
+	 * views of the same Resources instead of those of the renderer, main
+	 * thread only. The size entry is acquired and released by the renderer.
+	 *
+	 * @param resources
+	 *            The acquired pool entry, or null to go back to the objects
+	 *            of the renderer before the entry is released
+	 */
+	void setSharedResources(ThermostatResources resources) {
+		if (resources == mSharedResources) {
+			return;
+		}
+		releaseSizedResources();
+		mSharedResources = resources;
+		if (resources != null && mWidth > 0 && mHeight > 0) {
+			acquireSizedResources();
+		}
+		if (resources != null) {
+			mSetpointPaint = resources.getSetpointPaint();
+			buildSetpointLabels();
+		} else {
+			// The shared setpoint labels stay usable, they are never changed
+			mSetpointPaint = mOwnSetpointPaint;
+		}
+		updatePaints();
+		layoutText();
+	}
+
+	/**
+	 * Lays the dial out for a size.
+	 *
+	 * @param padding
+	 *            The left padding, which the diameter of the arc leaves out
+	 * @return true if the layout changed
+	 */
+	boolean setSize(int width, int height, int padding) {
+		if (width == mWidth && height == mHeight && padding == mPadding) {
+			return false;
+		}
+		final boolean resized = width != mWidth || height != mHeight;
+		mWidth = width;
+		mHeight = height;
+		mPadding = padding;
+		mSmallest = Math.min(width, height);
+		mTranslateX = (int) (width * 0.5f);
+		mTranslateY = (int) (height * 0.5f);
+		mCenterX = width * 0.5f;
+		mCenterY = height * 0.5f;
+
+		int arcDiameter = mSmallest - padding;
+		mArcRadius = arcDiameter / 2;
+		float top = height / 2 - (arcDiameter / 2);
+		float left = width / 2 - (arcDiameter / 2);
+		mArcRect.set(left, top, left + arcDiameter, top + arcDiameter);
+
+		if (mThumb != null) {
+			layoutThumb();
+		}
+
+		if (resized) {
+			if (mSharedResources != null) {
+				boolean leafLoaded = mLeafImage != null;
+				releaseSizedResources();
+				if (width > 0 && height > 0) {
+					acquireSizedResources();
+					if (leafLoaded) {
+						ensureLeaf();
+					}
+				}
+			}
+			updatePaints();
+		}
+		layoutText();
+		updateGeometry();
+		updateTouchIgnoreRadius();
+		return true;
+	}
+
+	int getWidth() {
+		return mWidth;
+	}
+
+	int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * Sets the arc, with the same meaning as the VirtualThermostat
+	 * startAngle, sweepAngle, rotation and clockwise attributes.
+	 */
+	void setArc(int startAngle, int sweepAngle, int rotation, boolean clockwise) {
+		mStartAngle = clampStartAngle(startAngle);
+		mSweepAngle = clampSweepAngle(sweepAngle);
+		mRotation = rotation;
+		mClockwise = clockwise;
+		updateGeometry();
+	}
+
+	int getStartAngle() {
+		return mStartAngle;
+	}
+
+	int getSweepAngle() {
+		return mSweepAngle;
+	}
+
+	int getRotation() {
+		return mRotation;
+	}
+
+	boolean isClockwise() {
+		return mClockwise;
+	}
+
+	void setRange(int min, int max) {
+		if (min == mModel.getMin() && max == mModel.getMax()) {
+			return;
+		}
+		mModel.setMin(min);
+		mModel.setMax(max);
+		buildSetpointLabels();
+		updateGeometry();
+	}
+
+	void setLeafRange(int downLimit, int upperLimit) {
+		mModel.setLeafRange(downLimit, upperLimit);
+	}
+
+	void setTouchInside(boolean touchInside) {
+		mTouchInside = touchInside;
+		updateTouchIgnoreRadius();
+	}
+
+	boolean isTouchInside() {
+		return mTouchInside;
+	}
+
+	void setBackgroundColor(int color) {
+		mBackgroundPaint.setColor(color);
+	}
+
+	void setArcColor(int color) {
+		mArcPaint.setColor(color);
+	}
+
+	int getArcColor() {
+		return mArcPaint.getColor();
+	}
+
+	/**
+	 * Draws the progress arc in one color instead of the default gradient.
+	 */
+	void setProgressColor(int color) {
+		mProgressGradient = false;
+		mProgressPaint.setColor(color);
+	}
+
+	int getProgressColor() {
+		return mProgressPaint.getColor();
+	}
+
+	void setArcWidth(int width) {
+		mArcPaint.setStrokeWidth(width);
+	}
+
+	int getArcWidth() {
+		return (int) mArcPaint.getStrokeWidth();
+	}
+
+	void setProgressWidth(int width) {
+		mProgressPaint.setStrokeWidth(width);
+	}
+
+	int getProgressWidth() {
+		return (int) mProgressPaint.getStrokeWidth();
+	}
+
+	void setRoundedEdges(boolean roundedEdges) {
+		Paint.Cap cap = roundedEdges ? Paint.Cap.ROUND : Paint.Cap.SQUARE;
+		mArcPaint.setStrokeCap(cap);
+		mProgressPaint.setStrokeCap(cap);
+	}
+
+	void setEnabled(boolean enabled) {
+		mEnabled = enabled;
+		updateThumbState();
+	}
+
+	/**
+	 * Draws the thumb in its pressed state, while the user is dragging it.
+	 */
+	void setPressed(boolean pressed) {
+		mPressed = pressed;
+		updateThumbState();
+	}
+
+	/**
+	 * Returns whether the state changes how the thumb looks, true until it
+	 * is loaded so the state is kept for it.
+	 */
+	boolean isThumbStateful() {
+		return mThumb == null || mThumb.isStateful();
+	}
+
+	/**
+	 * Sets the drawable state of the thumb, such as the drawable state of
+	 * the view drawing it.
+	 */
+	void setThumbState(int[] state) {
+		mThumbState = state;
+		if (mThumb == null) {
+			return;
+		}
+		if (mThumb.setState(state) && mThumb.getCurrent() == mThumb) {
+			// Not a state list, the bitmap of the old state is stale
+			mThumbImage.clear();
+		}
+	}
+
+	/**
+	 * Drops the pre-scaled bitmaps of the thumb and of a leaf icon of the
+	 * renderer, they are created again when next drawn.
+	 */
+	void clearBitmaps() {
+		if (mThumbImage != null) {
+			mThumbImage.clear();
+		}
+		if (mLeafImage != null && !mLeafShared) {
+			mLeafImage.clear();
+		}
+	}
+
+	/**
+	 * Returns the range, setpoint and eco range. Call the setters of the
+	 * renderer to change the range, setting the step directly moves the
+	 * setpoint without moving what is drawn, for animations.
+	 */
+	ThermostatModel getModel() {
+		return mModel;
+	}
+
+	ArcGeometry getGeometry() {
+		return mGeometry;
+	}
+
+	int getMin() {
+		return mModel.getMin();
+	}
+
+	int getMax() {
+		return mModel.getMax();
+	}
+
+	int getStep() {
+		return mModel.getStep();
+	}
+
+	int getProgress() {
+		return mModel.getProgress();
+	}
+
+	/**
+	 * Sets the setpoint as a step, clamped to the range, and draws the arc,
+	 * thumb and label at it.
+	 *
+	 * @return true if the setpoint or what is drawn changed
+	 */
+	boolean setStep(int step) {
+		step = mModel.clampStep(step);
+		float sweep = mGeometry.getSweep(step);
+		if (step == mModel.getStep() && sweep == mProgressSweep && step == mLabelStep) {
+			return false;
+		}
+		mModel.setStep(step);
+		showStep();
+		return true;
+	}
+
+	/**
+	 * Sets the setpoint, clamped to the range.
+	 *
+	 * @return true if the setpoint or what is drawn changed
+	 */
+	boolean setProgress(int progress) {
+		return setStep(mModel.clampStep(progress - mModel.getMin()));
+	}
+
+	/**
+	 * Draws the arc, thumb and label at the setpoint, after they were moved
+	 * by {@link #setSweep}.
+	 */
+	void showStep() {
+		final int step = mModel.getStep();
+		mProgressSweep = mGeometry.getSweep(step);
+		mLabelStep = step;
+		mThumbX = mGeometry.getThumbX(step);
+		mThumbY = mGeometry.getThumbY(step);
+		mLabelX = mGeometry.getLabelX(step);
+		mLabelY = mGeometry.getLabelY(step);
+	}
+
+	/**
+	 * Draws the arc and thumb at a sweep between steps, with the label of a
+	 * step, without changing the setpoint.
+	 */
+	void setSweep(float sweep, int labelStep) {
+		final int[] positions = mSweepPositions;
+		mGeometry.getPositionsForSweep(sweep, positions);
+		mProgressSweep = sweep;
+		mLabelStep = mModel.clampStep(labelStep);
+		mThumbX = positions[0];
+		mThumbY = positions[1];
+		mLabelX = positions[2];
+		mLabelY = positions[3];
+	}
+
+	float getProgressSweep() {
+		return mProgressSweep;
+	}
+
+	int getLabelStep() {
+		return mLabelStep;
+	}
+
+	/**
+	 * Shows a current temperature, with one decimal place or rounded to
+	 * whole degrees. ThermostatZones.NO_TEMPERATURE hides it.
+	 */
+	void setCurrentTemperatureTenths(int tenths, boolean inTenths) {
+		mCurrentTemperatureTenths = tenths;
+		mCurrentInTenths = inTenths;
+		if (tenths == ThermostatZones.NO_TEMPERATURE) {
+			mCurrentText = null;
+			mCurrentTextWidth = 0;
+		} else if (inTenths) {
+			if (mCurrentTenthsLabels == null) {
+				mCurrentTenthsLabels = createCurrentLabels(true);
+			}
+			mCurrentText = mCurrentTenthsLabels.get(tenths);
+			mCurrentTextWidth = mCurrentTenthsLabels.getWidth(tenths);
+		} else {
+			if (mCurrentLabels == null) {
+				mCurrentLabels = createCurrentLabels(false);
+			}
+			int degrees = Math.round(tenths / 10f);
+			mCurrentText = mCurrentLabels.get(degrees);
+			mCurrentTextWidth = mCurrentLabels.getWidth(degrees);
+		}
+	}
+
+	/**
+	 * Shows a current temperature as free text.
+	 */
+	void setCurrentText(String text) {
+		mCurrentTemperatureTenths = ThermostatZones.NO_TEMPERATURE;
+		mCurrentText = text;
+		mCurrentTextWidth = (text != null) ? mCurrentPaint.measureText(text) : 0;
+	}
+
+	int getCurrentTemperatureTenths() {
+		return mCurrentTemperatureTenths;
+	}
+
+	boolean isCurrentInTenths() {
+		return mCurrentInTenths;
+	}
+
+	/**
+	 * Sets the range of current temperatures, in degrees, whose labels are
+	 * cached.
+	 */
+	void setCurrentTemperatureRange(int min, int max) {
+		mCurrentRangeMin = min;
+		mCurrentRangeMax = max;
+		mCurrentLabels = null;
+		mCurrentTenthsLabels = null;
+	}
+
+	TextPaint getLabelPaint() {
+		return mLabelPaint;
+	}
+
+	float getCenterX() {
+		return mCenterX;
+	}
+
+	float getCenterY() {
+		return mCenterY;
+	}
+
+	/**
+	 * Returns the baseline of the "Current" label above the current
+	 * temperature.
+	 */
+	float getCurrentLabelY() {
+		return mCurrentLabelY;
+	}
+
+	/**
+	 * Returns the bottom of the leaf icon, loading and laying it out if it
+	 * was not yet.
+	 */
+	int getLeafBottom() {
+		ensureLeaf();
+		return mLeafImage.getDrawable().getBounds().bottom;
+	}
+
+	/**
+	 * Returns the step of the arc under a touch, or ArcGeometry.INVALID_STEP
+	 * if the touch is inside the ignored radius or outside the arc.
+	 */
+	int getStepForTouch(float x, float y) {
+		if (isTouchIgnored(x, y)) {
+			return ArcGeometry.INVALID_STEP;
+		}
+		return mGeometry.getStepForAngle(getTouchDegrees(x, y));
+	}
+
+	/**
+	 * Returns whether a touch is inside the radius that does not move the
+	 * thumb.
+	 */
+	boolean isTouchIgnored(float x, float y) {
+		if (!mTouchInside) {
+			// The radius is the thumb's outside the arc
+			ensureThumb();
+		}
+		float dx = x - mTranslateX;
+		float dy = y - mTranslateY;
+		return (float) Math.sqrt(dx * dx + dy * dy) < mTouchIgnoreRadius;
+	}
+
+	/**
+	 * Returns the angle of a touch along the arc, see
+	 * {@link ArcGeometry#getTouchDegrees}.
+	 */
+	double getTouchDegrees(float x, float y) {
+		return mGeometry.getTouchDegrees(x - mTranslateX, y - mTranslateY, mClockwise);
+	}
+
+	/**
+	 * Draws the dial, leaving the canvas as it was.
+	 */
+	void draw(Canvas canvas) {
+		draw(canvas, true, null);
+	}
+
+	/**
+	 * Draws the dial, leaving the canvas as it was.
+	 *
+	 * @param staticLayer
+	 *            Whether to draw the background circle and the track arc,
+	 *            false when they were drawn from a cache
+	 * @param decoration
+	 *            Drawn over the labels, or null
+	 */
+	void draw(Canvas canvas, boolean staticLayer, Decoration decoration) {
+		final int saveCount = canvas.save();
+		if (!mClockwise) {
+			canvas.scale(-1, 1, mArcRect.centerX(), mArcRect.centerY());
+		}
+		if (staticLayer) {
+			drawStatic(canvas);
+		}
+
+		// The sweep shown, which leads or trails the setpoint while animating
+		if (mProgressSweep != 0) {
+			if (mProgressGradient) {
+				mProgressPaint.setColor(mProgressColors.getColor(
+						mProgressSweep / (float) (mSweepAngle - 1)));
+			}
+			canvas.drawArc(mArcRect, getArcStart(), mProgressSweep, false, mProgressPaint);
+		}
+
+		canvas.drawText(mSetpointLabels.get(mLabelStep + mModel.getMin()),
+				mTranslateX - mLabelX, mTranslateY - mLabelY, mSetpointPaint);
+		if (mCurrentText != null) {
+			canvas.drawText(mCurrentText, mCenterX, mCurrentTextY, mCurrentPaint);
+		}
+		canvas.drawText(mCurrentLabel, mCenterX, mCurrentLabelY, mLabelPaint);
+		if (decoration != null) {
+			decoration.draw(canvas);
+		}
+		if (mModel.isInLeafRange()) {
+			ensureLeaf();
+			mLeafImage.draw(canvas, null);
+		}
+
+		canvas.translate(mTranslateX - mThumbX, mTranslateY - mThumbY);
+		canvas.rotate(mProgressSweep + mStartAngle);
+		ensureThumb();
+		mThumbImage.draw(canvas, mThumbPaint);
+		canvas.restoreToCount(saveCount);
+	}
+
+	/**
+	 * Draws the parts of the dial that do not change while dragging, the
+	 * background circle and the track arc, mirrored like {@link #draw} so
+	 * they can be cached in a layer.
+	 */
+	void drawStaticLayer(Canvas canvas) {
+		final int saveCount = canvas.save();
+		if (!mClockwise) {
+			canvas.scale(-1, 1, mArcRect.centerX(), mArcRect.centerY());
+		}
+		drawStatic(canvas);
+		canvas.restoreToCount(saveCount);
+	}
+
+	/**
+	 * Sets the bounds of the progress arc, stroke included, on the canvas.
+	 */
+	void getArcBounds(Rect out) {
+		int halfStroke = (int) Math.ceil(mProgressPaint.getStrokeWidth() / 2);
+		out.set((int) mArcRect.left, (int) mArcRect.top, (int) Math.ceil(mArcRect.right),
+				(int) Math.ceil(mArcRect.bottom));
+		out.inset(-halfStroke, -halfStroke);
+		mirror(out);
+	}
+
+	/**
+	 * Sets the bounds of the thumb, in any rotation, on the canvas.
+	 */
+	void getThumbBounds(Rect out) {
+		int x = mTranslateX - mThumbX;
+		int y = mTranslateY - mThumbY;
+		out.set(x - mThumbRadius, y - mThumbRadius, x + mThumbRadius, y + mThumbRadius);
+		mirror(out);
+	}
+
+	/**
+	 * Sets the bounds of the setpoint label on the canvas.
+	 */
+	void getSetpointBounds(Rect out) {
+		int x = mTranslateX - mLabelX;
+		int y = mTranslateY - mLabelY;
+		float width = mSetpointLabels.getWidth(mLabelStep + mModel.getMin());
+		out.set(x, (int) (y + mSetpointPaint.ascent()), (int) Math.ceil(x + width),
+				(int) Math.ceil(y + mSetpointPaint.descent()));
+		mirror(out);
+	}
+
+	/**
+	 * Sets the bounds of the current temperature on the canvas, empty when
+	 * it is hidden.
+	 */
+	void getCurrentTextBounds(Rect out) {
+		if (mCurrentText == null) {
+			out.setEmpty();
+			return;
+		}
+		float halfWidth = mCurrentTextWidth / 2;
+		out.set((int) (mCenterX - halfWidth), (int) (mCurrentTextY + mCurrentPaint.ascent()),
+				(int) Math.ceil(mCenterX + halfWidth),
+				(int) Math.ceil(mCurrentTextY + mCurrentPaint.descent()));
+		mirror(out);
+	}
+
+	/**
+	 * Sets the bounds of the leaf icon on the canvas, empty when it was
+	 * never loaded and so never drawn. It is loaded if the setpoint is in
+	 * the eco range.
+	 */
+	void getLeafBounds(Rect out) {
+		if (mModel.isInLeafRange()) {
+			ensureLeaf();
+		}
+		if (mLeafImage == null) {
+			out.setEmpty();
+			return;
+		}
+		out.set(mLeafImage.getDrawable().getBounds());
+		mirror(out);
+	}
+
+	/**
+	 * Mirrors bounds on the dial to the canvas when the dial is drawn
+	 * counter-clockwise, {@link #draw} mirrors the canvas around the center
+	 * of the arc.
+	 */
+	void mirror(Rect rect) {
+		if (mClockwise) {
+			return;
+		}
+		int doubleCenter = (int) (mArcRect.centerX() * 2);
+		int left = rect.left;
+		rect.left = doubleCenter - rect.right;
+		rect.right = doubleCenter - left;
+	}
+
+	private void drawStatic(Canvas canvas) {
+		canvas.drawArc(mArcRect, 0, 360, false, mBackgroundPaint);
+		canvas.drawArc(mArcRect, getArcStart(), mSweepAngle, false, mArcPaint);
+	}
+
+	private int getArcStart() {
+		return mStartAngle + ANGLE_OFFSET + mRotation;
+	}
+
+	private int getScaledSize(int value) {
+		return (int) (mDensity * value * ((mSmallest / mDensity) / 500));
+	}
+
+	private void acquireSizedResources() {
+		mSizedResources = mSharedResources.acquire(mWidth, mHeight);
+		if (mDefaultLeaf && mLeafImage != null && !mLeafShared) {
+			mLeafImage = mSizedResources.getLeaf();
+			mLeafShared = true;
+		}
+	}
+
+	private void releaseSizedResources() {
+		if (mSizedResources == null) {
+			return;
+		}
+		mSharedResources.release(mSizedResources);
+		mSizedResources = null;
+		if (mLeafShared) {
+			// Laid out by the other views of the size, loaded again if shown
+			mLeafImage = null;
+			mLeafShared = false;
+		}
+	}
+
+	/**
+	 * Switches to the current temperature and label paints of the shared
+	 * size entry, or sizes those of the renderer. The text sizes of the
+	 * shared paints are already set for the size.
+	 */
+	private void updatePaints() {
+		if (mSizedResources != null) {
+			mCurrentPaint = mSizedResources.getCurrentPaint();
+			mLabelPaint = mSizedResources.getLabelPaint();
+		} else {
+			mCurrentPaint = mOwnCurrentPaint;
+			mLabelPaint = mOwnLabelPaint;
+			mCurrentPaint.setTextSize(getScaledSize(110));
+			mLabelPaint.setTextSize(getScaledSize(25));
+		}
+		// The label caches are measured with the paint of the old size
+		mCurrentLabels = null;
+		mCurrentTenthsLabels = null;
+		if (mCurrentText != null) {
+			mCurrentTextWidth = mCurrentPaint.measureText(mCurrentText);
+		}
+	}
+
+	private void layoutText() {
+		float textHeight = mCurrentPaint.descent() - mCurrentPaint.ascent();
+		mCurrentTextY = mCenterY + (textHeight / 2) - mCurrentPaint.descent();
+		float textHeightLabel = mLabelPaint.descent() - mLabelPaint.ascent();
+		mCurrentLabelY = mCenterY - textHeightLabel - getScaledSize(50);
+		mLeafTop = (int) (mCurrentTextY + getScaledSize(50));
+		if (mLeafImage != null) {
+			layoutLeaf();
+		}
+	}
+
+	/**
+	 * Loads the leaf icon the first time it is needed, the default one from
+	 * the shared resources, and lays it out.
+	 */
+	private void ensureLeaf() {
+		if (mLeafImage != null) {
+			return;
+		}
+		if (!mDefaultLeaf) {
+			mLeafImage = new PrescaledDrawable(mStyle.newIcon(mResources).mutate());
+		} else if (mSizedResources != null) {
+			mLeafImage = mSizedResources.getLeaf();
+			mLeafShared = true;
+		} else {
+			mLeafImage = new PrescaledDrawable(
+					mResources.getDrawable(R.drawable.icon_leaf).mutate());
+		}
+		layoutLeaf();
+	}
+
+	/**
+	 * Loads the thumb the first time it is drawn, in the state last set, and
+	 * lays it out. Mutated so its state is not shared with views or other
+	 * threads.
+	 */
+	private void ensureThumb() {
+		if (mThumb != null) {
+			return;
+		}
+		Drawable thumb = mStyle.newThumb(mResources);
+		if (thumb == null) {
+			thumb = mResources.getDrawable(R.drawable.seek_arc_control_selector);
+		}
+		mThumb = thumb.mutate();
+		mThumbImage = new PrescaledDrawable(mThumb);
+		mThumb.setState(mThumbState);
+		layoutThumb();
+		updateTouchIgnoreRadius();
+	}
+
+	/**
+	 * Sizes the thumb to the dial. Until the thumb is loaded its radius is 0,
+	 * nothing of it has been drawn to invalidate.
+	 */
+	private void layoutThumb() {
+		final float scale = (mSmallest / mDensity) / 500;
+		int thumbHalfHeight = (int) ((mThumb.getIntrinsicHeight() / 2) * scale);
+		int thumbHalfWidth = (int) ((mThumb.getIntrinsicWidth() / 2) * scale);
+		mThumbImage.setBounds(-thumbHalfWidth, -thumbHalfHeight, thumbHalfWidth, thumbHalfHeight);
+		// The thumb is drawn rotated, so it fits in the circle around its bounds
+		mThumbRadius = (int) Math.ceil(Math.sqrt(thumbHalfWidth * thumbHalfWidth
+				+ thumbHalfHeight * thumbHalfHeight));
+	}
+
+	/**
+	 * Places the leaf icon below the current temperature.
+	 */
+	private void layoutLeaf() {
+		if (mSmallest == 0) {
+			return;
+		}
+		final Drawable leaf = mLeafImage.getDrawable();
+		final float scale = (mSmallest / mDensity) / 500;
+		int halfHeight = (int) (leaf.getIntrinsicHeight() / 2 * scale);
+		int halfWidth = (int) (leaf.getIntrinsicWidth() / 2 * scale);
+		mLeafImage.setBounds((int) (mCenterX - halfWidth), mLeafTop,
+				(int) (mCenterX + halfWidth), mLeafTop + halfHeight * 2);
+	}
+
+	/**
+	 * Returns the shared current temperature labels for the size when the
+	 * range is the default one, or labels of the renderer otherwise.
+	 */
+	private LabelCache createCurrentLabels(boolean tenths) {
+		if (mSizedResources != null
+				&& mCurrentRangeMin == ThermostatResources.Sized.CURRENT_RANGE_MIN
+				&& mCurrentRangeMax == ThermostatResources.Sized.CURRENT_RANGE_MAX) {
+			return mSizedResources.getCurrentLabels(tenths);
+		}
+		int scale = tenths ? 10 : 1;
+		LabelCache labels = new LabelCache(mCurrentRangeMin * scale, mCurrentRangeMax * scale,
+				tenths);
+		labels.setPaint(mCurrentPaint);
+		return labels;
+	}
+
+	/**
+	 * Formats the setpoint label of every progress value up front, so that
+	 * neither draw nor a setpoint change need to build Strings.
+	 */
+	private void buildSetpointLabels() {
+		if (mSharedResources != null) {
+			mSetpointLabels = mSharedResources.getSetpointLabels(mModel.getMin(), mModel.getMax());
+		} else {
+			mSetpointLabels = new LabelCache(mModel.getMin(), mModel.getMax(), false);
+			mSetpointLabels.setPaint(mSetpointPaint);
+			mSetpointLabels.fill();
+		}
+		mLabelStep = mModel.clampStep(mLabelStep);
+	}
+
+	/**
+	 * Rebuilds the thumb and label position table, call when the size, the
+	 * range or the arc angles change.
+	 */
+	private void updateGeometry() {
+		mGeometry.update(mModel.getSteps(), mArcRadius, mStartAngle, mSweepAngle, mRotation);
+		showStep();
+	}
+
+	private void updateTouchIgnoreRadius() {
+		if (mTouchInside) {
+			mTouchIgnoreRadius = (float) mArcRadius / 4;
+		} else if (mThumb == null) {
+			// Set when the thumb is loaded, on the first draw or touch
+			mTouchIgnoreRadius = 0;
+		} else {
+			// Don't use the exact radius makes interaction too tricky
+			mTouchIgnoreRadius = mArcRadius
+					- Math.min(mThumb.getIntrinsicWidth() / 2, mThumb.getIntrinsicHeight() / 2);
+		}
+	}
+
+	private void updateThumbState() {
+		setThumbState(!mEnabled ? STATE_DISABLED : mPressed ? STATE_PRESSED : STATE_ENABLED);
+	}
+
+	private static int clampStartAngle(int startAngle) {
+		return (startAngle > 360 || startAngle < 0) ? 0 : startAngle;
+	}
+
+	private static int clampSweepAngle(int sweepAngle) {
+		return Math.max(0, Math.min(360, sweepAngle));
+	}
+}
@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.content.res.Resources;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 
+ * ThermostatResources.java
+ * 
+ * Paints, label caches and drawables shared by every VirtualThermostat
+ * inflated from the same Resources. What only depends on the display
+ * density (the setpoint paint and labels) is held here, what also depends
+ * on the size of the view (the current temperature paints and labels and
+ * the pre-scaled leaf icon) is held by a {@link Sized} entry per width and height.
+ * 
+ * Shared objects are configured once when they are created and must not
+ * be changed by the views using them. Entries are reference counted and
+ * leave the pool when the last view using them releases them, views keep
+ * drawing with the objects they hold until they acquire new ones.
+ * 
+ * Setpoint labels are kept for the last few ranges only, the views hold
+ * on to the labels of their range.
+ * 
+ * Main thread only, apart from the static paint factories.
+ * 
+ */
+final class ThermostatResources {
+
+	private static final HashMap<Resources, ThermostatResources> sPool =
+			new HashMap<Resources, ThermostatResources>();
+
+	// Setpoint label ranges kept, the least recently used is dropped first
+	static final int MAX_SETPOINT_RANGES = 4;
+
+	// Also read by renderers on other threads
+	private static volatile Typeface sSetpointTypeface;
+
+	private final Resources mResources;
+	private final float mDensity;
+	private final Paint mSetpointPaint;
+	private final TextPaint mCurrentPaint;
+	private final TextPaint mLabelPaint;
+	private final LinkedHashMap<Long, LabelCache> mSetpointLabels =
+			new LinkedHashMap<Long, LabelCache>(MAX_SETPOINT_RANGES + 1, 1f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, LabelCache> eldest) {
+					return size() > MAX_SETPOINT_RANGES;
+				}
+			};
+	private final HashMap<Long, Sized> mSized = new HashMap<Long, Sized>();
+	private int mRefCount;
+
+	/**
+	 * Returns the pool entry for some Resources, creating it if needed. Call
+	 * {@link #release()} once for every call.
+	 */
+	static ThermostatResources acquire(Resources res) {
+		ThermostatResources resources = sPool.get(res);
+		if (resources == null) {
+			resources = new ThermostatResources(res);
+			sPool.put(res, resources);
+		}
+		resources.mRefCount++;
+		return resources;
+	}
+
+	private ThermostatResources(Resources res) {
+		mResources = res;
+		mDensity = res.getDisplayMetrics().density;
+
+		mSetpointPaint = newSetpointPaint(mDensity);
+
+		// Unsized paints, used until a view has been laid out
+		mCurrentPaint = newCurrentPaint();
+		mLabelPaint = newLabelPaint(res);
+	}
+
+	/**
+	 * Returns whether some Resources have a pool entry, for tests.
+	 */
+	static boolean isPooled(Resources res) {
+		return sPool.containsKey(res);
+	}
+
+	void release() {
+		if (--mRefCount == 0) {
+			sPool.remove(mResources);
+		}
+	}
+
+	float getDensity() {
+		return mDensity;
+	}
+
+	Paint getSetpointPaint() {
+		return mSetpointPaint;
+	}
+
+	TextPaint getCurrentPaint() {
+		return mCurrentPaint;
+	}
+
+	TextPaint getLabelPaint() {
+		return mLabelPaint;
+	}
+
+	/**
+	 * Returns the filled setpoint labels of a range, measured with the
+	 * setpoint paint.
+	 */
+	LabelCache getSetpointLabels(int min, int max) {
+		Long key = pack(min, max);
+		LabelCache labels = mSetpointLabels.get(key);
+		if (labels == null) {
+			labels = new LabelCache(min, max, false);
+			labels.setPaint(mSetpointPaint);
+			labels.fill();
+			mSetpointLabels.put(key, labels);
+		}
+		return labels;
+	}
+
+	/**
+	 * Returns the entry for a view size, creating it if needed. Call
+	 * {@link #release(Sized)} once for every call.
+	 */
+	Sized acquire(int width, int height) {
+		Long key = pack(width, height);
+		Sized sized = mSized.get(key);
+		if (sized == null) {
+			sized = new Sized(this, width, height);
+			mSized.put(key, sized);
+		}
+		sized.mRefCount++;
+		mRefCount++;
+		return sized;
+	}
+
+	void release(Sized sized) {
+		if (--sized.mRefCount == 0) {
+			mSized.remove(pack(sized.mWidth, sized.mHeight));
+		}
+		release();
+	}
+
+	/**
+	 * Returns a new setpoint paint for a display density.
+	 */
+	static Paint newSetpointPaint(float density) {
+		Typeface typeface = sSetpointTypeface;
+		if (typeface == null) {
+			typeface = Typeface.create(Typeface.DEFAULT, Typeface.BOLD);
+			sSetpointTypeface = typeface;
+		}
+		Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		// text color - #3D3D3D
+		paint.setColor(0xFF383838);
+		paint.setTextSize((int) (22 * density));
+		paint.setTypeface(typeface);
+		paint.setShadowLayer(1f, 0f, 1f, Color.WHITE);
+		return paint;
+	}
+
+	static TextPaint newCurrentPaint() {
+		TextPaint paint = new TextPaint();
+		paint.setColor(Color.WHITE);
+		paint.setTextAlign(Paint.Align.CENTER);
+		return paint;
+	}
+
+	static TextPaint newLabelPaint(Resources res) {
+		TextPaint paint = new TextPaint();
+		paint.setColor(res.getColor(R.color.grey));
+		paint.setTextAlign(Paint.Align.CENTER);
+		return paint;
+	}
+
+	private static Long pack(int high, int low) {
+		return Long.valueOf(((long) high << 32) | (low & 0xFFFFFFFFL));
+	}
+
+	/**
+	 * The paints, labels and leaf icon of one view size. Sizes are scaled
+	 * from a 500dp dial like the rest of the VirtualThermostat layout.
+	 */
+	static final class Sized {
+
+		/**
+		 * The range of current temperatures, in degrees, of the shared labels
+		 */
+		static final int CURRENT_RANGE_MIN = -50;
+		static final int CURRENT_RANGE_MAX = 100;
+
+		private final ThermostatResources mParent;
+		private final int mWidth;
+		private final int mHeight;
+		private final TextPaint mCurrentPaint;
+		private final TextPaint mLabelPaint;
+		private LabelCache mCurrentLabels;
+		private LabelCache mCurrentTenthsLabels;
+		private PrescaledDrawable mLeaf;
+		private int mRefCount;
+
+		private Sized(ThermostatResources parent, int width, int height) {
+			mParent = parent;
+			mWidth = width;
+			mHeight = height;
+			mCurrentPaint = newCurrentPaint();
+			mCurrentPaint.setTextSize(getScaledSize(110));
+			mLabelPaint = newLabelPaint(parent.mResources);
+			mLabelPaint.setTextSize(getScaledSize(25));
+		}
+
+		int getScaledSize(int value) {
+			int smallest = Math.min(mWidth, mHeight);
+			float density = mParent.mDensity;
+			return (int) (density * value * ((smallest / density) / 500));
+		}
+
+		TextPaint getCurrentPaint() {
+			return mCurrentPaint;
+		}
+
+		TextPaint getLabelPaint() {
+			return mLabelPaint;
+		}
+
+		/**
+		 * Returns the current temperature labels of the shared range, in
+		 * whole degrees or in tenths.
+		 */
+		LabelCache getCurrentLabels(boolean tenths) {
+			if (tenths) {
+				if (mCurrentTenthsLabels == null) {
+					mCurrentTenthsLabels = new LabelCache(CURRENT_RANGE_MIN * 10,
+							CURRENT_RANGE_MAX * 10, true);
+					mCurrentTenthsLabels.setPaint(mCurrentPaint);
+				}
+				return mCurrentTenthsLabels;
+			}
+			if (mCurrentLabels == null) {
+				mCurrentLabels = new LabelCache(CURRENT_RANGE_MIN, CURRENT_RANGE_MAX, false);
+				mCurrentLabels.setPaint(mCurrentPaint);
+			}
+			return mCurrentLabels;
+		}
+
+		/**
+		 * Returns the default leaf icon for this size, pre-scaled once for
+		 * every view of this size. Its bounds are set by the views laying it
+		 * out and are the same for all of them.
+		 */
+		PrescaledDrawable getLeaf() {
+			if (mLeaf == null) {
+				mLeaf = new PrescaledDrawable(mParent.mResources.getDrawable(R.drawable.icon_leaf));
+			}
+			return mLeaf;
+		}
+	}
+}
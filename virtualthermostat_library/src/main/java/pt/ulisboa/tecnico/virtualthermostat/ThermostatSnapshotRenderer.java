@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import pt.ulisboa.tecnico.virtualthermostat.core.ThermostatModel;
+import pt.ulisboa.tecnico.virtualthermostat.core.ThermostatZones;
+
+/**
+ * 
+ * ThermostatSnapshotRenderer.java
+ * 
+ * Draws thermostat dials of one size into bitmaps or any Canvas without a
+ * View, for app widgets, notifications and reports. A dial looks like a
+ * VirtualThermostat of the same size, it is drawn by the renderer of
+ * {@link ThermostatTextureView}, and current temperatures are shown in
+ * tenths of a degree.
+ * 
+ * Thread safe. Every thread that draws gets a renderer of its own on its
+ * first snapshot, and bitmaps come from a pool shared by the threads, so
+ * drawing thousands of dials on a worker pool costs a renderer per thread
+ * and a bitmap per snapshot being drawn at the same time.
+ * {@link #renderAll} splits the zones of a ThermostatZones across an
+ * Executor:
+ * 
+ * <pre>
+ * renderer.renderAll(executor, zones, new OnSnapshotListener() {
+ *     public void onSnapshot(int zone, Bitmap bitmap) {
+ *         bitmap.compress(Bitmap.CompressFormat.PNG, 100, streamFor(zone));
+ *     }
+ * });
+ * </pre>
+ * 
+ */
+public final class ThermostatSnapshotRenderer {
+
+	// Zones per task, large enough to amortize the task overhead
+	private static final int RENDER_GRAIN = 16;
+
+	/**
+	 * Receives the snapshots drawn by
+	 * {@link ThermostatSnapshotRenderer#renderAll}.
+	 */
+	public interface OnSnapshotListener {
+
+		/**
+		 * Called on the thread that drew the snapshot, with calls for
+		 * different zones running at the same time. The bitmap is reused
+		 * once the call returns, so copy, compress or upload it here.
+		 *
+		 * @param zone
+		 *            The index of the zone
+		 * @param bitmap
+		 *            The dial of the zone
+		 */
+		void onSnapshot(int zone, Bitmap bitmap);
+	}
+
+	private final Resources mResources;
+	private final int mWidth;
+	private final int mHeight;
+	private final BitmapPool mBitmaps;
+
+	/**
+	 * The arc, eco range and padding, replaced as a whole by the setters and
+	 * applied to the renderer of a thread before its next snapshot
+	 */
+	private volatile Config mConfig = new Config(0, 360, 0, true, 0, 0, 0);
+
+	private final ThreadLocal<ThreadRenderer> mRenderers = new ThreadLocal<ThreadRenderer>() {
+		@Override
+		protected ThreadRenderer initialValue() {
+			return new ThreadRenderer(new ThermostatRenderer(mResources));
+		}
+	};
+
+	/**
+	 * @param res
+	 *            The resources the dial drawables and colors are loaded from
+	 * @param width
+	 *            The width of the snapshots, in pixels
+	 * @param height
+	 *            The height of the snapshots, in pixels
+	 */
+	public ThermostatSnapshotRenderer(Resources res, int width, int height) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("empty size: " + width + "x" + height);
+		}
+		mResources = res;
+		mWidth = width;
+		mHeight = height;
+		mBitmaps = new BitmapPool(width, height, 2 * Runtime.getRuntime().availableProcessors());
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * Sets the arc, with the same meaning as the VirtualThermostat
+	 * startAngle, sweepAngle, rotation and clockwise attributes. Defaults to
+	 * a full clockwise circle starting at twelve o'clock.
+	 */
+	public synchronized void setArc(int startAngle, int sweepAngle, int rotation, boolean clockwise) {
+		Config c = mConfig;
+		mConfig = new Config(startAngle, sweepAngle, rotation, clockwise, c.mLeafDownRange,
+				c.mLeafUpperRange, c.mPadding);
+	}
+
+	/**
+	 * Sets the setpoints that show the leaf icon in zone snapshots, both
+	 * limits included.
+	 */
+	public synchronized void setLeafRange(int downLimit, int upperLimit) {
+		Config c = mConfig;
+		mConfig = new Config(c.mStartAngle, c.mSweepAngle, c.mRotation, c.mClockwise, downLimit,
+				upperLimit, c.mPadding);
+	}
+
+	/**
+	 * Sets the padding the diameter of the arc leaves out, like the left
+	 * padding of a VirtualThermostat.
+	 */
+	public synchronized void setPadding(int padding) {
+		Config c = mConfig;
+		mConfig = new Config(c.mStartAngle, c.mSweepAngle, c.mRotation, c.mClockwise,
+				c.mLeafDownRange, c.mLeafUpperRange, padding);
+	}
+
+	/**
+	 * Draws the dial of a zone into a canvas of the snapshot size.
+	 */
+	public void draw(Canvas canvas, ThermostatZones zones, int zone) {
+		ThermostatRenderer renderer = getRenderer().mRenderer;
+		Config config = mConfig;
+		renderer.setRange(zones.getMin(), zones.getMax());
+		renderer.setLeafRange(config.mLeafDownRange, config.mLeafUpperRange);
+		renderer.setStep(zones.getStep(zone));
+		renderer.setCurrentTemperatureTenths(zones.getCurrentTemperatureTenths(zone), true);
+		renderer.setBackgroundColor(zones.getBackgroundColor(zone));
+		renderer.draw(canvas);
+	}
+
+	/**
+	 * Draws the dial of a thermostat into a canvas of the snapshot size.
+	 *
+	 * @param model
+	 *            The range, setpoint and eco range
+	 * @param currentTenths
+	 *            The current temperature in tenths of a degree, or
+	 *            ThermostatZones.NO_TEMPERATURE to leave it out
+	 * @param backgroundColor
+	 *            The color of the dial
+	 */
+	public void draw(Canvas canvas, ThermostatModel model, int currentTenths, int backgroundColor) {
+		ThermostatRenderer renderer = getRenderer().mRenderer;
+		renderer.setRange(model.getMin(), model.getMax());
+		renderer.setLeafRange(model.getLeafDownRange(), model.getLeafUpperRange());
+		renderer.setStep(model.getStep());
+		renderer.setCurrentTemperatureTenths(currentTenths, true);
+		renderer.setBackgroundColor(backgroundColor);
+		renderer.draw(canvas);
+	}
+
+	/**
+	 * Draws the dial of a zone into a bitmap from the pool. Give the bitmap
+	 * back with {@link #release(Bitmap)} once it is no longer needed.
+	 */
+	public Bitmap render(ThermostatZones zones, int zone) {
+		ThreadRenderer renderer = getRenderer();
+		Bitmap bitmap = mBitmaps.acquire();
+		renderer.mCanvas.setBitmap(bitmap);
+		draw(renderer.mCanvas, zones, zone);
+		return bitmap;
+	}
+
+	/**
+	 * Puts a bitmap returned by {@link #render} back in the pool, it must
+	 * not be used afterwards.
+	 */
+	public void release(Bitmap bitmap) {
+		mBitmaps.release(bitmap);
+	}
+
+	/**
+	 * Draws the dial of every zone, split in tasks of a few zones run by an
+	 * executor, and hands each one to a listener. Returns once every zone
+	 * was drawn and handed over.
+	 *
+	 * @throws RuntimeException
+	 *             The first exception thrown by the listener, once the
+	 *             other tasks are done
+	 */
+	public void renderAll(Executor executor, final ThermostatZones zones,
+			final OnSnapshotListener listener) {
+		final int count = zones.getCount();
+		final int tasks = (count + RENDER_GRAIN - 1) / RENDER_GRAIN;
+		final CountDownLatch done = new CountDownLatch(tasks);
+		final AtomicReference<RuntimeException> error = new AtomicReference<RuntimeException>();
+		for (int i = 0; i < tasks; i++) {
+			final int from = i * RENDER_GRAIN;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						renderRange(zones, listener, from, Math.min(count, from + RENDER_GRAIN));
+					} catch (RuntimeException e) {
+						error.compareAndSet(null, e);
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+		}
+		boolean interrupted = false;
+		while (done.getCount() > 0) {
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (error.get() != null) {
+			throw error.get();
+		}
+	}
+
+	/**
+	 * Recycles the pooled bitmaps. The renderers of the threads that drew
+	 * snapshots are kept until the threads end.
+	 */
+	public void clearBitmaps() {
+		mBitmaps.clear();
+	}
+
+	private ThreadRenderer getRenderer() {
+		ThreadRenderer renderer = mRenderers.get();
+		Config config = mConfig;
+		if (renderer.mConfig != config) {
+			renderer.mRenderer.setArc(config.mStartAngle, config.mSweepAngle, config.mRotation,
+					config.mClockwise);
+			renderer.mRenderer.setSize(mWidth, mHeight, config.mPadding);
+			renderer.mConfig = config;
+		}
+		return renderer;
+	}
+
+	private void renderRange(ThermostatZones zones, OnSnapshotListener listener, int from, int to) {
+		for (int zone = from; zone < to; zone++) {
+			Bitmap bitmap = render(zones, zone);
+			try {
+				listener.onSnapshot(zone, bitmap);
+			} finally {
+				release(bitmap);
+			}
+		}
+	}
+
+	private static final class Config {
+
+		final int mStartAngle;
+		final int mSweepAngle;
+		final int mRotation;
+		final boolean mClockwise;
+		final int mLeafDownRange;
+		final int mLeafUpperRange;
+		final int mPadding;
+
+		Config(int startAngle, int sweepAngle, int rotation, boolean clockwise, int leafDownRange,
+				int leafUpperRange, int padding) {
+			mStartAngle = startAngle;
+			mSweepAngle = sweepAngle;
+			mRotation = rotation;
+			mClockwise = clockwise;
+			mLeafDownRange = leafDownRange;
+			mLeafUpperRange = leafUpperRange;
+			mPadding = padding;
+		}
+	}
+
+	/**
+	 * The renderer of one thread, the canvas it draws pool bitmaps with and
+	 * the configuration it was last set up for.
+	 */
+	private static final class ThreadRenderer {
+
+		final ThermostatRenderer mRenderer;
+		final Canvas mCanvas = new Canvas();
+		Config mConfig;
+
+		ThreadRenderer(ThermostatRenderer renderer) {
+			mRenderer = renderer;
+		}
+	}
+}
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+
+import java.util.WeakHashMap;
+
+/**
+ * 
+ * ThermostatStyle.java
+ * 
+ * The VirtualThermostat attributes, resolved once and applied to any number
+ * of dials. Inflating a dial from XML reads its attributes again for every
+ * instance, while a dial built with a ThermostatStyle only copies the
+ * resolved values:
+ * 
+ * <pre>
+ * ThermostatStyle style = ThermostatStyle.obtain(context);
+ * for (int i = 0; i &lt; zones; i++) {
+ *     grid.addView(new VirtualThermostat(context, style));
+ * }
+ * </pre>
+ * 
+ * Immutable. The thumb and icon are kept as resource ids, each dial loads
+ * drawables of its own when it first draws them. Only a color given inline
+ * is kept as a template and copied from its constant state.
+ * 
+ */
+public final class ThermostatStyle {
+
+	// Guarded by itself, renderers on other threads read the defaults
+	private static final WeakHashMap<Resources, ThermostatStyle> sDefaults =
+			new WeakHashMap<Resources, ThermostatStyle>();
+	// Main thread only
+	private static final WeakHashMap<Resources.Theme, ThermostatStyle> sThemeStyles =
+			new WeakHashMap<Resources.Theme, ThermostatStyle>();
+
+	// Null for the default thumb and leaf icon of the library
+	private final Drawable mThumb;
+	private final Drawable mIcon;
+	private final int mThumbId;
+	private final int mIconId;
+	private final int mMin;
+	private final int mMax;
+	private final int mProgress;
+	private final int mProgressWidth;
+	private final int mArcWidth;
+	private final int mStartAngle;
+	private final int mSweepAngle;
+	private final int mRotation;
+	private final boolean mRoundedEdges;
+	private final boolean mTouchInside;
+	private final boolean mClockwise;
+	private final int mArcColor;
+	private final int mProgressColor;
+	// Without one the progress arc is drawn in a gradient
+	private final boolean mHasProgressColor;
+
+	private ThermostatStyle(Resources res, TypedArray a) {
+		float density = res.getDisplayMetrics().density;
+		int arcColor = res.getColor(R.color.progress_gray);
+		int progressColor = res.getColor(R.color.default_blue_light);
+		if (a == null) {
+			mThumb = null;
+			mIcon = null;
+			mThumbId = 0;
+			mIconId = 0;
+			mMin = 0;
+			mMax = 100;
+			mProgress = 0;
+			mProgressWidth = (int) (4 * density);
+			mArcWidth = 2;
+			mStartAngle = 0;
+			mSweepAngle = 360;
+			mRotation = 0;
+			mRoundedEdges = false;
+			mTouchInside = true;
+			mClockwise = true;
+			mArcColor = arcColor;
+			mProgressColor = progressColor;
+			mHasProgressColor = false;
+			return;
+		}
+		// Drawables given as resources are only loaded by the dials that draw
+		// them, only an inline color is resolved here
+		mThumbId = a.getResourceId(R.styleable.VirtualThermostat_thumb, 0);
+		mIconId = a.getResourceId(R.styleable.VirtualThermostat_icon, 0);
+		mThumb = (mThumbId == 0) ? a.getDrawable(R.styleable.VirtualThermostat_thumb) : null;
+		mIcon = (mIconId == 0) ? a.getDrawable(R.styleable.VirtualThermostat_icon) : null;
+		mMin = a.getInteger(R.styleable.VirtualThermostat_min, 0);
+		mMax = a.getInteger(R.styleable.VirtualThermostat_max, 100);
+		mProgress = a.getInteger(R.styleable.VirtualThermostat_progress, 0);
+		mProgressWidth = (int) a.getDimension(R.styleable.VirtualThermostat_progressWidth,
+				(int) (4 * density));
+		mArcWidth = (int) a.getDimension(R.styleable.VirtualThermostat_arcWidth, 2);
+		mStartAngle = a.getInt(R.styleable.VirtualThermostat_startAngle, 0);
+		mSweepAngle = a.getInt(R.styleable.VirtualThermostat_sweepAngle, 360);
+		mRotation = a.getInt(R.styleable.VirtualThermostat_rotation, 0);
+		mRoundedEdges = a.getBoolean(R.styleable.VirtualThermostat_roundEdges, false);
+		mTouchInside = a.getBoolean(R.styleable.VirtualThermostat_touchInside, true);
+		mClockwise = a.getBoolean(R.styleable.VirtualThermostat_clockwise, true);
+		mArcColor = a.getColor(R.styleable.VirtualThermostat_arcColor, arcColor);
+		mProgressColor = a.getColor(R.styleable.VirtualThermostat_progressColor, progressColor);
+		mHasProgressColor = a.hasValue(R.styleable.VirtualThermostat_progressColor);
+	}
+
+	/**
+	 * Returns the style the theme of a context gives dials through its
+	 * virtualThermostatStyle attribute, resolved on the first call for each
+	 * theme. Main thread only.
+	 */
+	public static ThermostatStyle obtain(Context context) {
+		Resources.Theme theme = context.getTheme();
+		ThermostatStyle style = sThemeStyles.get(theme);
+		if (style == null) {
+			style = resolve(context, null, R.attr.virtualThermostatStyle);
+			sThemeStyles.put(theme, style);
+		}
+		return style;
+	}
+
+	/**
+	 * Resolves the attributes of an XML element, falling back to a default
+	 * style attribute of the theme, like a View constructor does.
+	 *
+	 * @param attrs
+	 *            The attributes, or null for the theme style alone
+	 * @param defStyle
+	 *            The theme attribute that references the default style, or 0
+	 */
+	public static ThermostatStyle resolve(Context context, AttributeSet attrs, int defStyle) {
+		final TypedArray a = context.obtainStyledAttributes(attrs,
+				R.styleable.VirtualThermostat, defStyle, 0);
+		try {
+			return new ThermostatStyle(context.getResources(), a);
+		} finally {
+			a.recycle();
+		}
+	}
+
+	/**
+	 * Returns the library defaults, without reading any attributes.
+	 */
+	static ThermostatStyle getDefault(Resources res) {
+		synchronized (sDefaults) {
+			ThermostatStyle style = sDefaults.get(res);
+			if (style == null) {
+				style = new ThermostatStyle(res, null);
+				sDefaults.put(res, style);
+			}
+			return style;
+		}
+	}
+
+	/**
+	 * Returns a new thumb drawable for one dial, or null for the default one.
+	 */
+	Drawable newThumb(Resources res) {
+		return newDrawable(mThumb, mThumbId, res);
+	}
+
+	/**
+	 * Returns whether the dials draw an icon of their own instead of the
+	 * default leaf.
+	 */
+	boolean hasIcon() {
+		return mIconId != 0 || mIcon != null;
+	}
+
+	/**
+	 * Returns a new leaf icon for one dial, or null for the default one.
+	 */
+	Drawable newIcon(Resources res) {
+		return newDrawable(mIcon, mIconId, res);
+	}
+
+	private static Drawable newDrawable(Drawable template, int id, Resources res) {
+		if (id != 0) {
+			return res.getDrawable(id);
+		}
+		if (template == null) {
+			return null;
+		}
+		// Only a color given inline has no resource, and its ColorDrawable
+		// always has a constant state
+		Drawable.ConstantState state = template.getConstantState();
+		return (state != null) ? state.newDrawable(res) : template;
+	}
+
+	public int getMin() {
+		return mMin;
+	}
+
+	public int getMax() {
+		return mMax;
+	}
+
+	public int getProgress() {
+		return mProgress;
+	}
+
+	/**
+	 * Returns the width of the progress arc, in pixels.
+	 */
+	public int getProgressWidth() {
+		return mProgressWidth;
+	}
+
+	/**
+	 * Returns the width of the background arc, in pixels.
+	 */
+	public int getArcWidth() {
+		return mArcWidth;
+	}
+
+	public int getStartAngle() {
+		return mStartAngle;
+	}
+
+	public int getSweepAngle() {
+		return mSweepAngle;
+	}
+
+	public int getRotation() {
+		return mRotation;
+	}
+
+	public boolean isRoundedEdges() {
+		return mRoundedEdges;
+	}
+
+	public boolean isTouchInside() {
+		return mTouchInside;
+	}
+
+	public boolean isClockwise() {
+		return mClockwise;
+	}
+
+	public int getArcColor() {
+		return mArcColor;
+	}
+
+	public int getProgressColor() {
+		return mProgressColor;
+	}
+
+	/**
+	 * Returns whether a progress color was set, the progress arc is drawn in
+	 * a gradient from blue to red otherwise.
+	 */
+	public boolean hasProgressColor() {
+		return mHasProgressColor;
+	}
+}
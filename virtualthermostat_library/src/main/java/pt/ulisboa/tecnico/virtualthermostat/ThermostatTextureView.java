@@ -0,0 +1,609 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.TextureView;
+import android.view.ViewParent;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import pt.ulisboa.tecnico.virtualthermostat.core.ArcGeometry;
+
+/**
+ * 
+ * ThermostatTextureView.java
+ * 
+ * The VirtualThermostat dial drawn on a render thread of its own instead
+ * of in onDraw, so drawing a frame takes no time from the UI thread. The
+ * dial is drawn by a {@link ThermostatRenderer} into the surface of a
+ * TextureView, on frames paced by the Choreographer of the render thread,
+ * and only when something changed.
+ * 
+ * This does not make the dial independent of the UI thread. A TextureView
+ * is composited into the window by the UI thread through its hardware
+ * layer, and touches reach onTouchEvent on the UI thread, so while the UI
+ * thread is blocked the frames drawn are not shown and the dial does not
+ * follow the finger. What it saves is the time of the dial's own drawing
+ * on a busy UI thread. A dial that must keep updating through stalls of
+ * the UI thread needs a SurfaceView, whose surface is composited by the
+ * system.
+ * 
+ * onTouchEvent only copies the touch samples into a lock-free queue that
+ * the render thread drains at the start of every frame. Setpoints and
+ * current temperatures can be set from any thread, the latest one is
+ * applied on the next frame. The arc, range and colors are set on the UI
+ * thread. Listener callbacks are delivered on the UI thread.
+ * 
+ * The layout and the attributes are those of VirtualThermostat, without
+ * the schedule, the temperature history and the animations.
+ * 
+ */
+public class ThermostatTextureView extends TextureView implements TextureView.SurfaceTextureListener {
+
+	private static final int TOUCH_QUEUE_CAPACITY = 256;
+	private static final long NO_PROGRESS = Long.MIN_VALUE;
+	private static final long FROM_USER = 1L << 32;
+
+	/**
+	 * Receives setpoint changes and touch gestures of a
+	 * ThermostatTextureView, on the UI thread.
+	 */
+	public interface OnThermostatChangeListener {
+
+		/**
+		 * Notification that the setpoint has changed. Changes made while the
+		 * UI thread was busy are folded into the latest one.
+		 *
+		 * @param view
+		 *            The ThermostatTextureView whose setpoint has changed
+		 * @param progress
+		 *            The new setpoint
+		 * @param fromUser
+		 *            True if the change was initiated by the user
+		 */
+		void onProgressChanged(ThermostatTextureView view, int progress, boolean fromUser);
+
+		void onStartTrackingTouch(ThermostatTextureView view);
+
+		void onStopTrackingTouch(ThermostatTextureView view);
+	}
+
+	/**
+	 * Render thread state, the renderer is only used by the render thread
+	 * once it is running
+	 */
+	private final ThermostatRenderer mRenderer;
+	private HandlerThread mRenderThread;
+	private volatile Handler mRenderHandler;
+	private FrameScheduler mFrameScheduler;
+	private boolean mTracking;
+
+	/**
+	 * Touch samples and readings on their way to the render thread, and
+	 * whether a frame was requested since the last one started
+	 */
+	private final TouchQueue mTouches = new TouchQueue(TOUCH_QUEUE_CAPACITY);
+	private final PendingReadings mPendingReadings = new PendingReadings();
+	private final AtomicBoolean mRenderRequested = new AtomicBoolean();
+
+	/**
+	 * The layout and attributes set on the UI thread, copied into the
+	 * renderer at the start of the next frame
+	 */
+	private final Object mConfigLock = new Object();
+	private boolean mConfigChanged;
+	private int mWidth;
+	private int mHeight;
+	private int mPadding;
+	private int mMin;
+	private int mMax;
+	private int mLeafDownRange;
+	private int mLeafUpperRange;
+	private int mStartAngle = 0;
+	private int mSweepAngle = 360;
+	private int mRotation = 0;
+	private boolean mClockwise = true;
+	private boolean mTouchInside = true;
+	private int mBackgroundColor = Color.parseColor("#F57F17");
+	private volatile boolean mEnabled = true;
+
+	/**
+	 * The setpoint as of the last frame, and the latest change not
+	 * delivered to the listener yet, packed with FROM_USER
+	 */
+	private volatile int mProgress;
+	private final AtomicLong mChangedProgress = new AtomicLong(NO_PROGRESS);
+	private final AtomicBoolean mProgressPosted = new AtomicBoolean();
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	private volatile OnThermostatChangeListener mOnThermostatChangeListener;
+
+	private final FrameScheduler.Callback mFrameCallback = new FrameScheduler.Callback() {
+		@Override
+		public void onFrame(long frameTimeNanos) {
+			onRenderFrame();
+		}
+	};
+	private final Runnable mScheduleFrame = new Runnable() {
+		@Override
+		public void run() {
+			mFrameScheduler.schedule();
+		}
+	};
+	private final Runnable mStopRendering = new Runnable() {
+		@Override
+		public void run() {
+			stopTracking();
+			mFrameScheduler.cancel();
+			Looper.myLooper().quit();
+		}
+	};
+	private final Runnable mDispatchProgress = new Runnable() {
+		@Override
+		public void run() {
+			mProgressPosted.set(false);
+			long changed = mChangedProgress.getAndSet(NO_PROGRESS);
+			OnThermostatChangeListener listener = mOnThermostatChangeListener;
+			if (changed != NO_PROGRESS && listener != null) {
+				listener.onProgressChanged(ThermostatTextureView.this, (int) changed,
+						(changed & FROM_USER) != 0);
+			}
+		}
+	};
+	private final Runnable mDispatchStart = new Runnable() {
+		@Override
+		public void run() {
+			OnThermostatChangeListener listener = mOnThermostatChangeListener;
+			if (listener != null) {
+				listener.onStartTrackingTouch(ThermostatTextureView.this);
+			}
+		}
+	};
+	private final Runnable mDispatchStop = new Runnable() {
+		@Override
+		public void run() {
+			OnThermostatChangeListener listener = mOnThermostatChangeListener;
+			if (listener != null) {
+				listener.onStopTrackingTouch(ThermostatTextureView.this);
+			}
+		}
+	};
+
+	public ThermostatTextureView(Context context) {
+		this(context, null);
+	}
+
+	public ThermostatTextureView(Context context, AttributeSet attrs) {
+		this(context, attrs, R.attr.virtualThermostatStyle);
+	}
+
+	public ThermostatTextureView(Context context, AttributeSet attrs, int defStyle) {
+		super(context, attrs, defStyle);
+		final ThermostatStyle style = (attrs != null)
+				? ThermostatStyle.resolve(context, attrs, defStyle)
+				: ThermostatStyle.getDefault(context.getResources());
+		// The widths, colors, edges and drawables are only read from the
+		// style, the render thread never changes them
+		mRenderer = new ThermostatRenderer(context.getResources(), style);
+		mMin = style.getMin();
+		mMax = style.getMax();
+		int progress = mMin + style.getProgress();
+		mStartAngle = style.getStartAngle();
+		mSweepAngle = style.getSweepAngle();
+		mRotation = style.getRotation();
+		mTouchInside = style.isTouchInside();
+		mClockwise = style.isClockwise();
+
+		// The render thread is not running yet
+		applyConfig(true);
+		mRenderer.setProgress(progress);
+		mProgress = mRenderer.getProgress();
+
+		setOpaque(false);
+		setSurfaceTextureListener(this);
+	}
+
+	public void setOnThermostatChangeListener(OnThermostatChangeListener listener) {
+		mOnThermostatChangeListener = listener;
+	}
+
+	/**
+	 * Returns the setpoint as of the last frame drawn.
+	 */
+	public int getProgress() {
+		return mProgress;
+	}
+
+	/**
+	 * Sets the setpoint from any thread, it is applied on the next frame.
+	 */
+	public void setProgress(int progress) {
+		if (mPendingReadings.offerProgress(progress)) {
+			requestRender();
+		}
+	}
+
+	/**
+	 * Sets the current temperature in whole degrees from any thread, it is
+	 * applied on the next frame.
+	 */
+	public void setCurrentTemperature(int temperature) {
+		if (mPendingReadings.offerCurrentTemperature(temperature * 10, false)) {
+			requestRender();
+		}
+	}
+
+	/**
+	 * Sets the current temperature in tenths of a degree from any thread,
+	 * it is applied on the next frame.
+	 */
+	public void setCurrentTemperatureTenths(int tenths) {
+		if (mPendingReadings.offerCurrentTemperature(tenths, true)) {
+			requestRender();
+		}
+	}
+
+	public int getMin() {
+		synchronized (mConfigLock) {
+			return mMin;
+		}
+	}
+
+	public void setMin(int min) {
+		synchronized (mConfigLock) {
+			mMin = min;
+			mConfigChanged = true;
+		}
+		requestRender();
+	}
+
+	public int getMax() {
+		synchronized (mConfigLock) {
+			return mMax;
+		}
+	}
+
+	public void setMax(int max) {
+		synchronized (mConfigLock) {
+			mMax = max;
+			mConfigChanged = true;
+		}
+		requestRender();
+	}
+
+	public void setLeafLimit(int downLimit, int upperLimit) {
+		synchronized (mConfigLock) {
+			mLeafDownRange = downLimit;
+			mLeafUpperRange = upperLimit;
+			mConfigChanged = true;
+		}
+		requestRender();
+	}
+
+	public void setStartAngle(int startAngle) {
+		synchronized (mConfigLock) {
+			mStartAngle = startAngle;
+			mConfigChanged = true;
+		}
+		requestRender();
+	}
+
+	public void setSweepAngle(int sweepAngle) {
+		synchronized (mConfigLock) {
+			mSweepAngle = sweepAngle;
+			mConfigChanged = true;
+		}
+		requestRender();
+	}
+
+	public void setArcRotation(int rotation) {
+		synchronized (mConfigLock) {
+			mRotation = rotation;
+			mConfigChanged = true;
+		}
+		requestRender();
+	}
+
+	public void setClockwise(boolean isClockwise) {
+		synchronized (mConfigLock) {
+			mClockwise = isClockwise;
+			mConfigChanged = true;
+		}
+		requestRender();
+	}
+
+	public void setTouchInSide(boolean isEnabled) {
+		synchronized (mConfigLock) {
+			mTouchInside = isEnabled;
+			mConfigChanged = true;
+		}
+		requestRender();
+	}
+
+	/**
+	 * Sets the color of the dial, a TextureView has no background of its
+	 * own.
+	 */
+	@Override
+	public void setBackgroundColor(int color) {
+		synchronized (mConfigLock) {
+			mBackgroundColor = color;
+			mConfigChanged = true;
+		}
+		requestRender();
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		super.setEnabled(enabled);
+		mEnabled = enabled;
+		synchronized (mConfigLock) {
+			mConfigChanged = true;
+		}
+		requestRender();
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return mEnabled;
+	}
+
+	@Override
+	public boolean onTouchEvent(MotionEvent event) {
+		if (!mEnabled) {
+			return false;
+		}
+		final int action = event.getAction();
+		final ViewParent parent = getParent();
+		switch (action) {
+			case MotionEvent.ACTION_DOWN:
+				if (parent != null) {
+					parent.requestDisallowInterceptTouchEvent(true);
+				}
+				mTouches.offer(action, event.getX(), event.getY());
+				break;
+			case MotionEvent.ACTION_MOVE:
+				final int historySize = event.getHistorySize();
+				for (int i = 0; i < historySize; i++) {
+					mTouches.offer(action, event.getHistoricalX(i), event.getHistoricalY(i));
+				}
+				mTouches.offer(action, event.getX(), event.getY());
+				break;
+			case MotionEvent.ACTION_UP:
+			case MotionEvent.ACTION_CANCEL:
+				mTouches.offer(action, event.getX(), event.getY());
+				if (parent != null) {
+					parent.requestDisallowInterceptTouchEvent(false);
+				}
+				break;
+			default:
+				return true;
+		}
+		requestRender();
+		return true;
+	}
+
+	@Override
+	public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+		setSurfaceSize(width, height);
+		HandlerThread thread = new HandlerThread("ThermostatRender", Process.THREAD_PRIORITY_DISPLAY);
+		thread.start();
+		mRenderThread = thread;
+		mFrameScheduler = new FrameScheduler(mFrameCallback, thread.getLooper());
+		Handler handler = new Handler(thread.getLooper());
+		mRenderHandler = handler;
+		// Draws the first frame, and any request made while there was no thread
+		mRenderRequested.set(true);
+		handler.post(mScheduleFrame);
+	}
+
+	@Override
+	public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+		setSurfaceSize(width, height);
+		requestRender();
+	}
+
+	/**
+	 * Stops the render thread, waiting for the frame it is drawing, so the
+	 * surface is not drawn to once it is destroyed.
+	 */
+	@Override
+	public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+		Handler handler = mRenderHandler;
+		if (handler == null) {
+			return true;
+		}
+		mRenderHandler = null;
+		handler.post(mStopRendering);
+		boolean interrupted = false;
+		while (mRenderThread.isAlive()) {
+			try {
+				mRenderThread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		mRenderThread = null;
+		return true;
+	}
+
+	@Override
+	public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+	}
+
+	private void setSurfaceSize(int width, int height) {
+		synchronized (mConfigLock) {
+			mWidth = width;
+			mHeight = height;
+			mPadding = getPaddingLeft();
+			mConfigChanged = true;
+		}
+	}
+
+	/**
+	 * Requests a frame on the render thread, from any thread. Only the first
+	 * request since the last frame started wakes the render thread.
+	 */
+	private void requestRender() {
+		if (mRenderRequested.compareAndSet(false, true)) {
+			Handler handler = mRenderHandler;
+			if (handler != null) {
+				handler.post(mScheduleFrame);
+			}
+		}
+	}
+
+	/**
+	 * Applies the attributes, the readings and the touches that arrived
+	 * since the last frame, then draws. Render thread only.
+	 */
+	private void onRenderFrame() {
+		mRenderRequested.set(false);
+		applyConfig(false);
+		applyPendingReadings();
+		applyTouches();
+		draw();
+	}
+
+	private void applyConfig(boolean force) {
+		synchronized (mConfigLock) {
+			if (!mConfigChanged && !force) {
+				return;
+			}
+			mConfigChanged = false;
+			mRenderer.setRange(mMin, mMax);
+			mRenderer.setLeafRange(mLeafDownRange, mLeafUpperRange);
+			mRenderer.setArc(mStartAngle, mSweepAngle, mRotation, mClockwise);
+			mRenderer.setTouchInside(mTouchInside);
+			mRenderer.setBackgroundColor(mBackgroundColor);
+			mRenderer.setEnabled(mEnabled);
+			mRenderer.setSize(mWidth, mHeight, mPadding);
+		}
+		// The range may have clamped the setpoint
+		mProgress = mRenderer.getProgress();
+	}
+
+	private void applyPendingReadings() {
+		mPendingReadings.beginDrain();
+		long temperature = mPendingReadings.takeCurrentTemperature();
+		if (PendingReadings.hasTemperature(temperature)) {
+			mRenderer.setCurrentTemperatureTenths(PendingReadings.getTenths(temperature),
+					PendingReadings.isInTenths(temperature));
+		}
+		long progress = mPendingReadings.takeProgress();
+		if (PendingReadings.hasProgress(progress)
+				&& mRenderer.setProgress(PendingReadings.getProgress(progress))) {
+			publishProgress(false);
+		}
+	}
+
+	private void applyTouches() {
+		while (mTouches.poll()) {
+			switch (mTouches.getAction()) {
+				case MotionEvent.ACTION_DOWN:
+					mTracking = true;
+					mMainHandler.post(mDispatchStart);
+					updateOnTouch(mTouches.getX(), mTouches.getY());
+					break;
+				case MotionEvent.ACTION_MOVE:
+					if (mTracking) {
+						updateOnTouch(mTouches.getX(), mTouches.getY());
+					}
+					break;
+				case MotionEvent.ACTION_UP:
+					if (mTracking) {
+						updateOnTouch(mTouches.getX(), mTouches.getY());
+					}
+					stopTracking();
+					break;
+				case MotionEvent.ACTION_CANCEL:
+					stopTracking();
+					break;
+			}
+		}
+	}
+
+	private void updateOnTouch(float x, float y) {
+		int step = mRenderer.getStepForTouch(x, y);
+		if (step == ArcGeometry.INVALID_STEP) {
+			return;
+		}
+		mRenderer.setPressed(true);
+		if (mRenderer.setStep(step)) {
+			publishProgress(true);
+		}
+	}
+
+	private void stopTracking() {
+		if (!mTracking) {
+			return;
+		}
+		mTracking = false;
+		mRenderer.setPressed(false);
+		mMainHandler.post(mDispatchStop);
+	}
+
+	/**
+	 * Publishes the setpoint of the renderer and posts it to the listener,
+	 * at most one post is pending at a time.
+	 */
+	private void publishProgress(boolean fromUser) {
+		int progress = mRenderer.getProgress();
+		mProgress = progress;
+		mChangedProgress.set((progress & 0xFFFFFFFFL) | (fromUser ? FROM_USER : 0));
+		if (mProgressPosted.compareAndSet(false, true)) {
+			mMainHandler.post(mDispatchProgress);
+		}
+	}
+
+	private void draw() {
+		if (mRenderer.getWidth() <= 0 || mRenderer.getHeight() <= 0) {
+			return;
+		}
+		Canvas canvas = lockCanvas();
+		if (canvas == null) {
+			return;
+		}
+		try {
+			canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+			mRenderer.draw(canvas);
+		} finally {
+			unlockCanvasAndPost(canvas);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2016
+ * Author Joao Sampaio
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.view.MotionEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 
+ * TouchQueue.java
+ * 
+ * Hands touch samples from the UI thread to a render thread without locks
+ * or allocation. Samples are kept in a ring of primitive arrays, the UI
+ * thread offers them and the render thread polls them in order.
+ * 
+ * When the render thread falls behind and the ring fills up, move samples
+ * are dropped first: the last slots are kept for down, up and cancel
+ * samples, so a gesture always ends even if some of its moves were lost.
+ * One thread offers and one thread polls.
+ * 
+ */
+final class TouchQueue {
+
+	// Slots only down, up and cancel samples can use
+	private static final int RESERVED = 8;
+
+	private final int mMask;
+	private final int[] mActions;
+	private final float[] mXs;
+	private final float[] mYs;
+
+	// Written by the offering thread, read by the polling thread
+	private final AtomicLong mHead = new AtomicLong();
+	// Written by the polling thread, read by the offering thread
+	private final AtomicLong mTail = new AtomicLong();
+	private final AtomicLong mDropped = new AtomicLong();
+
+	// The sample returned by the last poll, polling thread only
+	private int mAction;
+	private float mX;
+	private float mY;
+
+	/**
+	 * @param capacity
+	 *            The number of samples held, a power of two larger than 8
+	 */
+	TouchQueue(int capacity) {
+		if (capacity <= RESERVED || (capacity & (capacity - 1)) != 0) {
+			throw new IllegalArgumentException("capacity is not a power of two larger than "
+					+ RESERVED + ": " + capacity);
+		}
+		mMask = capacity - 1;
+		mActions = new int[capacity];
+		mXs = new float[capacity];
+		mYs = new float[capacity];
+	}
+
+	/**
+	 * Adds a sample.
+	 *
+	 * @param action
+	 *            One of the MotionEvent ACTION_ constants
+	 * @return False if it was dropped because the queue is full
+	 */
+	boolean offer(int action, float x, float y) {
+		long head = mHead.get();
+		int limit = (action == MotionEvent.ACTION_MOVE) ? mMask + 1 - RESERVED : mMask + 1;
+		if (head - mTail.get() >= limit) {
+			mDropped.incrementAndGet();
+			return false;
+		}
+		int slot = (int) head & mMask;
+		mActions[slot] = action;
+		mXs[slot] = x;
+		mYs[slot] = y;
+		// Publishes the slot to the polling thread
+		mHead.lazySet(head + 1);
+		return true;
+	}
+
+	/**
+	 * Moves to the oldest sample, read it with {@link #getAction()},
+	 * {@link #getX()} and {@link #getY()}.
+	 *
+	 * @return False if there are no samples
+	 */
+	boolean poll() {
+		long tail = mTail.get();
+		if (tail == mHead.get()) {
+			return false;
+		}
+		int slot = (int) tail & mMask;
+		mAction = mActions[slot];
+		mX = mXs[slot];
+		mY = mYs[slot];
+		// Frees the slot for the offering thread
+		mTail.lazySet(tail + 1);
+		return true;
+	}
+
+	int getAction() {
+		return mAction;
+	}
+
+	float getX() {
+		return mX;
+	}
+
+	float getY() {
+		return mY;
+	}
+
+	/**
+	 * Returns the number of samples dropped because the queue was full.
+	 */
+	long getDroppedCount() {
+		return mDropped.get();
+	}
+}
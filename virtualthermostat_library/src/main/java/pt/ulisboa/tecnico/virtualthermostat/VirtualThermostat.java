@@ -25,19 +25,33 @@ package pt.ulisboa.tecnico.virtualthermostat;
 
 import android.content.Context;
 import android.content.res.Resources;
-import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.Typeface;
-import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextPaint;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+
+import pt.ulisboa.tecnico.virtualthermostat.core.ArcGeometry;
+import pt.ulisboa.tecnico.virtualthermostat.core.EventLog;
+import pt.ulisboa.tecnico.virtualthermostat.core.EventRecorder;
+import pt.ulisboa.tecnico.virtualthermostat.core.ScheduleStore;
+import pt.ulisboa.tecnico.virtualthermostat.core.TemperatureHistory;
+import pt.ulisboa.tecnico.virtualthermostat.core.ThermostatMetrics;
+import pt.ulisboa.tecnico.virtualthermostat.core.ThermostatModel;
+import pt.ulisboa.tecnico.virtualthermostat.core.TouchPredictor;
+import pt.ulisboa.tecnico.virtualthermostat.core.WeeklySchedule;
+
 /**
  * 
  * VirtualThermostat.java
@@ -49,128 +63,231 @@ import android.view.View;
  */
 public class VirtualThermostat extends View {
 
-	private static final String TAG = VirtualThermostat.class.getSimpleName();
 	private static int INVALID_PROGRESS_VALUE = -1;
-	// The initial rotational offset -90 means we start at 12 o'clock
-	private final int mAngleOffset = -90;
+	private static final int NO_TEMPERATURE = Integer.MIN_VALUE;
+
+	// Elements of the dial that can be invalidated on their own
+	private static final int DIRTY_THUMB = 1;
+	private static final int DIRTY_SETPOINT_LABEL = 1 << 1;
+	private static final int DIRTY_CURRENT_TEXT = 1 << 2;
+	private static final int DIRTY_LEAF = 1 << 3;
+	private static final int DIRTY_PROGRESS_ARC = 1 << 4;
+	private static final int DIRTY_SCHEDULE_TEXT = 1 << 5;
+	private static final int DIRTY_SPARKLINE = 1 << 6;
+	private static final int DIRTY_PROGRESS = DIRTY_THUMB | DIRTY_SETPOINT_LABEL
+			| DIRTY_LEAF | DIRTY_PROGRESS_ARC;
+
+	// Extra pixels around each element for anti-aliasing and the text shadow
+	private static final int DIRTY_PADDING = 2;
+
+	// Temperature history kept by setHistoryEnabled, a day at one sample per second
+	private static final long HISTORY_WINDOW_MILLIS = 24 * 60 * 60 * 1000L;
+	private static final int HISTORY_CAPACITY = 24 * 60 * 60;
 
 	private int colorBackground = Color.parseColor("#F57F17");
 
 	/**
-	 * The Drawable for the seek arc leaf icon
+	 * Lays out and draws the dial, and holds the range, the setpoint and the
+	 * arc, thumb and label as drawn. The view adds the schedule text and the
+	 * sparkline, the static layer cache and the regions to invalidate.
 	 */
-	private Drawable mLeaf;
+	private ThermostatRenderer mRenderer;
 
 	/**
-	 * The Drawable for the seek arc thumbnail
+	 * The range, setpoint and eco range of this VirtualThermostat, held by
+	 * the renderer
 	 */
-	private Drawable mThumb;
+	private ThermostatModel mModel;
 
 	/**
-	 * The Maximum value that this VirtualThermostat can be set to
+	 * Current temperature in tenths of a degree, NO_TEMPERATURE when it was
+	 * set as free text
 	 */
-	private int mMax = 100;
+	private int mCurrentTemperatureTenths = 0;
 
 	/**
-	 * The Minimum value that this VirtualThermostat can be set to
+	 * is the control enabled/touchable
 	 */
-	private int mMin = 0;
+	private boolean mEnabled = true;
+
+
+	// Internal variables
+	private ArcGeometry mGeometry;
+	private double mTouchAngle;
+	private OnVirtualThermostatChangeListener mOnVirtualThermostatChangeListener;
+	private final ListenerDispatcher mListeners = new ListenerDispatcher(this);
+	private float density;
+	private Context context;
+	private int smallest;
 
 	/**
-	 * The Current value that the VirtualThermostat is set to
+	 * The paints, labels and leaf icon shared with the other instances of
+	 * the same Resources, acquired once attached and null while detached,
+	 * so a dial that is never attached holds no entry. The renderer draws
+	 * with objects of its own meanwhile.
 	 */
-	private int mProgress = 0;
+	private ThermostatResources mSharedResources;
 
 	/**
-	 * The width of the progress line for this VirtualThermostat
+	 * Render the background circle and the track arc once into mStaticLayer
+	 * and blit it on later frames
 	 */
-	private int mProgressWidth = 4;
+	private boolean mStaticLayerCacheEnabled = false;
+	private boolean mStaticLayerDirty = true;
+	private Bitmap mStaticLayer;
+	private Canvas mStaticLayerCanvas;
 
 	/**
-	 * The Width of the background arc for the VirtualThermostat
+	 * Area to repaint, the union of the bounds of the elements that changed
+	 * before and after the change
 	 */
-	private int mArcWidth = 2;
+	private final Rect mDirtyRect = new Rect();
+	private final Rect mElementRect = new Rect();
 
 	/**
-	 * The Angle to start drawing this Arc from
+	 * Touch samples are folded into the progress of the last valid sample
+	 * and applied once per frame
 	 */
-	private int mStartAngle = 0;
+	private final FrameScheduler mFrameScheduler = new FrameScheduler(new FrameScheduler.Callback() {
+		@Override
+		public void onFrame(long frameTimeNanos) {
+			onTouchFrame(frameTimeNanos);
+		}
+	});
+	private int mPendingTouchProgress = INVALID_PROGRESS_VALUE;
 
 	/**
-	 * The Angle through which to draw the arc (Max is 360)
+	 * The last progress the listener was told about, and when
 	 */
-	private int mSweepAngle = 360;
+	private int mNotifiedProgress = INVALID_PROGRESS_VALUE;
+	private long mLastCallbackNanos;
+	private long mMinCallbackIntervalNanos = 0;
+	private boolean mCallbackPending;
+	private boolean mCallbackPendingFromUser;
 
 	/**
-	 * The rotation of the VirtualThermostat- 0 is twelve o'clock
+	 * Draw time and input latency metrics, null unless enabled
 	 */
-	private int mRotation = 0;
+	private ThermostatMetrics mMetrics;
 
 	/**
-	 * Give the VirtualThermostat rounded edges
+	 * Rates and invalidated regions drawn on the dial, null unless enabled
 	 */
-	private boolean mRoundedEdges = false;
+	private DebugOverlay mDebugOverlay;
 
 	/**
-	 * Enable touch inside the VirtualThermostat
+	 * Audit log of user setpoint changes and current temperatures, null
+	 * unless set
 	 */
-	private boolean mTouchInside = true;
+	private EventRecorder mEventRecorder;
+	private int mEventSource;
 
 	/**
-	 * Will the progress increase clockwise or anti-clockwise
+	 * Predicts the touch angle at the next vsync while dragging, null unless
+	 * touch prediction is enabled
 	 */
-	private boolean mClockwise = true;
+	private TouchPredictor mTouchPredictor;
 
+	/**
+	 * Setpoint, background and current temperature animations
+	 */
+	private final ThermostatAnimator mAnimator = new ThermostatAnimator(this);
 
 	/**
-	 * Current temperature
+	 * Whether the current temperature is shown with one decimal place
 	 */
-	private String currentTemperature = "0";
+	private boolean mCurrentInTenths;
 
 	/**
-	 * is the control enabled/touchable
+	 * The weekly schedule shown under the current temperature, the next
+	 * change and the time until it are refreshed every minute while attached
 	 */
-	private boolean mEnabled = true;
+	private WeeklySchedule mSchedule;
+	private String mScheduleText;
+	private float mScheduleTextY;
+	private float mScheduleTextWidth;
+	private final Runnable mScheduleTick = new Runnable() {
+		@Override
+		public void run() {
+			updateSchedule(System.currentTimeMillis());
+		}
+	};
 
 	/**
-	 * is leaf icon enabled
+	 * The current temperature history drawn as a sparkline above the
+	 * current temperature. The path is built in time coordinates and only
+	 * rebuilt when the downsampled points change, each frame translates it
+	 * to end at the newest sample and draws the last segment to it.
 	 */
-	private boolean mShowLeaf = false;
+	private TemperatureHistory mHistory;
+	private Paint mSparklinePaint;
+	private final Path mSparklinePath = new Path();
+	private final RectF mSparklineRect = new RectF();
+	private int mSparklineVersion;
+	private long mSparklineBaseTime;
+	private float mSparklineEndX;
+	private float mSparklineEndY;
 
 	/**
-	 * The value where the leaf is visible, above or equal mLeafDownRange, bellow or equal mLeafUpperRange
+	 * Draws the schedule text and the sparkline with the dial
 	 */
-	private int mLeafDownRange = 0;
+	private final ThermostatRenderer.Decoration mDecoration = new ThermostatRenderer.Decoration() {
+		@Override
+		public void draw(Canvas canvas) {
+			if (mScheduleText != null) {
+				canvas.drawText(mScheduleText, mRenderer.getCenterX(), mScheduleTextY,
+						mRenderer.getLabelPaint());
+			}
+			if (mHistory != null && mHistory.size() > 0 && !mSparklineRect.isEmpty()) {
+				drawSparkline(canvas);
+			}
+		}
+	};
 
 	/**
-	 * The value where the leaf is visible, above or equal mLeafDownRange, bellow or equal mLeafUpperRange
+	 * Runs posted readings on the main thread. A Handler of the main looper
+	 * rather than View.post, which loses posts made from other threads
+	 * while the view is detached before API 24.
 	 */
-	private int mLeafUpperRange = 0;
+	private static final Executor MAIN_THREAD = new Executor() {
+		private final Handler mHandler = new Handler(Looper.getMainLooper());
 
+		@Override
+		public void execute(Runnable command) {
+			mHandler.post(command);
+		}
+	};
 
-	// Internal variables
-	private int mArcRadius = 0;
-	private float mProgressSweep = 0;
-	private RectF mArcRect = new RectF();
-	private Paint mArcPaint;
-	private Paint mArcPaintBackground;
-	private Paint mProgressPaint;
-	private int mTranslateX;
-	private int mTranslateY;
-	private int mThumbXPos;
-	private int mThumbYPos;
-	private int mTextXPos;
-	private int mTextYPos;
-	private double mTouchAngle;
-	private Paint paintText;
-	private TextPaint paintTextCurrent, paintLabel;
-	private int mSelectedTemperature = 0;
-	private float mTouchIgnoreRadius;
-	private OnVirtualThermostatChangeListener mOnVirtualThermostatChangeListener;
-	private float density;
-	private Context context;
-	private int smallest;
-//	private
+	/**
+	 * Readings posted from other threads, handed to the main thread and
+	 * applied there at the start of the next frame
+	 */
+	private final PendingReadings mPendingReadings = new PendingReadings();
+	private Executor mReadingsExecutor = MAIN_THREAD;
+	private final FrameScheduler mReadingsFrame = new FrameScheduler(new FrameScheduler.Callback() {
+		@Override
+		public void onFrame(long frameTimeNanos) {
+			applyPendingReadings();
+		}
+	});
+	private final Runnable mScheduleReadingsFrame = new Runnable() {
+		@Override
+		public void run() {
+			mReadingsFrame.schedule();
+		}
+	};
+
+	/**
+	 * Event time, in uptime milliseconds, of the oldest touch that changed
+	 * the dial and was not drawn yet
+	 */
+	private long mUndrawnTouchTime;
+
+	/**
+	 * Event time of the last touch handled, stamped into mUndrawnTouchTime
+	 * only once the touch changes the step
+	 */
+	private long mLastTouchTime;
 
 	public interface OnVirtualThermostatChangeListener {
 
@@ -212,284 +329,423 @@ public class VirtualThermostat extends View {
 
 	public VirtualThermostat(Context context) {
 		super(context);
-		init(context, null, 0);
+		init(context, ThermostatStyle.getDefault(context.getResources()));
 	}
 
 	public VirtualThermostat(Context context, AttributeSet attrs) {
 		super(context, attrs);
-		this.context = context;
-		init(context, attrs, R.attr.virtualThermostatStyle);
+		init(context, (attrs != null)
+				? ThermostatStyle.resolve(context, attrs, R.attr.virtualThermostatStyle)
+				: ThermostatStyle.getDefault(context.getResources()));
 	}
 
 	public VirtualThermostat(Context context, AttributeSet attrs, int defStyle) {
 		super(context, attrs, defStyle);
-		init(context, attrs, defStyle);
+		init(context, (attrs != null)
+				? ThermostatStyle.resolve(context, attrs, defStyle)
+				: ThermostatStyle.getDefault(context.getResources()));
 	}
 
-	private void init(Context context, AttributeSet attrs, int defStyle) {
-
-		Log.d(TAG, "Initialising VirtualThermostat");
-		final Resources res = getResources();
-		density = context.getResources().getDisplayMetrics().density;
-
-		// Defaults, may need to link this into theme settings
-		int arcColor = res.getColor(R.color.progress_gray);
-		int progressColor = res.getColor(R.color.default_blue_light);
-		int thumbHalfheight = 0;
-		int thumbHalfWidth = 0;
-		mThumb = res.getDrawable(R.drawable.seek_arc_control_selector);
-		mLeaf = res.getDrawable(R.drawable.icon_leaf);
-		// Convert progress width to pixels for current density
-		mProgressWidth = (int) (mProgressWidth * density);
-
-
-
-		if (attrs != null) {
-			// Attribute initialization
-			final TypedArray a = context.obtainStyledAttributes(attrs,
-					R.styleable.VirtualThermostat, defStyle, 0);
-
-			Drawable thumb = a.getDrawable(R.styleable.VirtualThermostat_thumb);
-			if (thumb != null) {
-				mThumb = thumb;
-			}
-
-			Drawable icon = a.getDrawable(R.styleable.VirtualThermostat_thumb);
-			if (icon != null) {
-				mLeaf = thumb;
-			}
-
+	/**
+	 * Creates a dial with attributes resolved beforehand, which is faster
+	 * than inflating many dials from XML.
+	 *
+	 * @see ThermostatStyle#obtain(Context)
+	 */
+	public VirtualThermostat(Context context, ThermostatStyle style) {
+		super(context);
+		init(context, style);
+	}
 
-			paintText = new Paint(Paint.ANTI_ALIAS_FLAG);
-			// text color - #3D3D3D
-			paintText.setColor(Color.parseColor("#FF383838"));
-			// text size in pixels
-			paintText.setTextSize((int) (22 * density));
+	private void init(Context context, ThermostatStyle style) {
 
-			paintText.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.BOLD));
+		this.context = context;
+		final Resources res = context.getResources();
+		density = res.getDisplayMetrics().density;
 
-			paintText.setShadowLayer(1f, 0f, 1f, Color.WHITE);
+		mRenderer = new ThermostatRenderer(res, style);
+		mModel = mRenderer.getModel();
+		mGeometry = mRenderer.getGeometry();
+		mNotifiedProgress = mModel.getStep();
+	}
 
-			mMax = a.getInteger(R.styleable.VirtualThermostat_max, mMax);
-			mMin= a.getInteger(R.styleable.VirtualThermostat_min, mMin);
-			mMax = mMax-mMin;
-			mProgress = a.getInteger(R.styleable.VirtualThermostat_progress, mProgress);
-			mProgressWidth = (int) a.getDimension(
-					R.styleable.VirtualThermostat_progressWidth, mProgressWidth);
-			mArcWidth = (int) a.getDimension(R.styleable.VirtualThermostat_arcWidth,
-					mArcWidth);
-			mStartAngle = a.getInt(R.styleable.VirtualThermostat_startAngle, mStartAngle);
-			mSweepAngle = a.getInt(R.styleable.VirtualThermostat_sweepAngle, mSweepAngle);
-			mRotation = a.getInt(R.styleable.VirtualThermostat_rotation, mRotation);
-			mRoundedEdges = a.getBoolean(R.styleable.VirtualThermostat_roundEdges,
-					mRoundedEdges);
-			mTouchInside = a.getBoolean(R.styleable.VirtualThermostat_touchInside,
-					mTouchInside);
-			mClockwise = a.getBoolean(R.styleable.VirtualThermostat_clockwise,
-					mClockwise);
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		smallest = (w > h) ? h : w;
+		layoutDial(w, h);
+	}
 
-			arcColor = a.getColor(R.styleable.VirtualThermostat_arcColor, arcColor);
-			progressColor = a.getColor(R.styleable.VirtualThermostat_progressColor,
-					progressColor);
+	@Override
+	protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+		super.onLayout(changed, left, top, right, bottom);
+		// Picks up a change of padding, which leaves the size as it is
+		layoutDial(getWidth(), getHeight());
+	}
 
-			a.recycle();
+	/**
+	 * Lays out the dial and the schedule text and sparkline added to it.
+	 */
+	private void layoutDial(int w, int h) {
+		if (!mRenderer.setSize(w, h, getPaddingLeft())) {
+			return;
 		}
+		mStaticLayerDirty = true;
 
-		mProgress = (mProgress > mMax) ? mMax : mProgress;
-		mProgress = (mProgress < 0) ? 0 : mProgress;
-
-		mSweepAngle = (mSweepAngle > 360) ? 360 : mSweepAngle;
-		mSweepAngle = (mSweepAngle < 0) ? 0 : mSweepAngle;
-
-		mProgressSweep = (float) mProgress / mMax * mSweepAngle;
-
-		mStartAngle = (mStartAngle > 360) ? 0 : mStartAngle;
-		mStartAngle = (mStartAngle < 0) ? 0 : mStartAngle;
-
-		mArcPaintBackground = new Paint();
-		mArcPaintBackground.setColor(colorBackground);
-		mArcPaintBackground.setAntiAlias(true);
-		mArcPaintBackground.setStyle(Paint.Style.FILL);
-
-		mArcPaint = new Paint();
-		mArcPaint.setColor(arcColor);
-		mArcPaint.setAntiAlias(true);
-		mArcPaint.setStyle(Paint.Style.STROKE);
-		mArcPaint.setStrokeWidth(mArcWidth);
-
-		mProgressPaint = new Paint();
-		mProgressPaint.setColor(progressColor);
-		mProgressPaint.setAntiAlias(true);
-		mProgressPaint.setStyle(Paint.Style.STROKE);
-		mProgressPaint.setStrokeWidth(mProgressWidth);
+		final TextPaint paintLabel = mRenderer.getLabelPaint();
+		final float centerX = mRenderer.getCenterX();
+		if (mScheduleText != null) {
+			layoutScheduleText();
+		}
 
-		if (mRoundedEdges) {
-			mArcPaint.setStrokeCap(Paint.Cap.ROUND);
-			mProgressPaint.setStrokeCap(Paint.Cap.ROUND);
+		float sparklineHalfWidth = smallest * 0.2f;
+		mSparklineRect.set(centerX - sparklineHalfWidth, mRenderer.getCenterY() - smallest * 0.3f,
+				centerX + sparklineHalfWidth, mRenderer.getCurrentLabelY() + paintLabel.ascent());
+		if (mHistory != null) {
+			updateSparklineResolution();
 		}
 	}
 
+	/**
+	 * Places the schedule text below the leaf icon.
+	 */
+	private void layoutScheduleText() {
+		final TextPaint paintLabel = mRenderer.getLabelPaint();
+		mScheduleTextY = mRenderer.getLeafBottom() + paintLabel.descent() - paintLabel.ascent();
+		mScheduleTextWidth = paintLabel.measureText(mScheduleText);
+	}
+
 	@Override
 	protected void onDraw(Canvas canvas) {
-		if(!mClockwise) {
-			canvas.scale(-1, 1, mArcRect.centerX(), mArcRect.centerY() );
-		}
-
-		smallest = (getWidth() > getHeight())? getHeight() : getWidth();
+		final ThermostatMetrics metrics = mMetrics;
+		final DebugOverlay overlay = mDebugOverlay;
+		final long drawStart = (metrics != null || overlay != null) ? System.nanoTime() : 0;
+		// The overlay is drawn without the transforms of the decoration
+		final int overlaySaveCount = (overlay != null) ? canvas.save() : 0;
 
-		if(paintTextCurrent == null){
-			int thumbHalfheight = (int) mThumb.getIntrinsicHeight() / 2;
-			int thumbHalfWidth = (int) mThumb.getIntrinsicWidth() / 2;
+		boolean staticLayerDrawn = mStaticLayerCacheEnabled && drawStaticLayerCache(canvas);
+		mRenderer.draw(canvas, !staticLayerDrawn, mDecoration);
 
-			thumbHalfheight = (int)(thumbHalfheight * ((smallest/density)/500));
-			thumbHalfWidth = (int)(thumbHalfWidth * ((smallest/density)/500));
-			mThumb.setBounds(-thumbHalfWidth, -thumbHalfheight, thumbHalfWidth,
-					thumbHalfheight);
+		if (metrics != null) {
+			recordDraw(metrics, drawStart);
 		}
-
-
-		if(paintTextCurrent == null){
-			paintTextCurrent = new TextPaint();
-			paintTextCurrent.setColor(Color.WHITE);
-			paintTextCurrent.setTextAlign(Paint.Align.CENTER);
-			paintTextCurrent.setTextSize(getScaledSize(110));
-
-
+		if (overlay != null) {
+			drawDebugOverlay(canvas, overlay, overlaySaveCount, drawStart);
 		}
-		if(paintLabel == null) {
-			paintLabel = new TextPaint();
-			paintLabel.setColor(context.getResources().getColor(R.color.grey));
-			paintLabel.setTextAlign(Paint.Align.CENTER);
-			paintLabel.setTextSize(getScaledSize(25));
+	}
 
+	private void drawDebugOverlay(Canvas canvas, DebugOverlay overlay, int saveCount,
+			long drawStart) {
+		long now = System.nanoTime();
+		canvas.restoreToCount(saveCount);
+		// Neither repaint is counted, so the overlay does not show its own
+		if (overlay.draw(canvas, now - drawStart, now)) {
+			invalidate();
 		}
-
-		// Draw the arcs
-		final int arcStart = mStartAngle + mAngleOffset + mRotation;
-		final int arcSweep = mSweepAngle;
-
-		if (mProgress == 0) {
-
-			canvas.drawArc(mArcRect, 0, 360, false, mArcPaintBackground);
-
-			canvas.drawArc(mArcRect, arcStart, arcSweep, false, mArcPaint);
-
-		} else {
-
-			canvas.drawArc(mArcRect, 0, 360, false, mArcPaintBackground);
-			canvas.drawArc(mArcRect, arcStart, arcSweep, false, mArcPaint);
-
-			float bias = (float) mProgressSweep / (float) (arcSweep - 1);
-			int mColor1 =  Color.parseColor("#ff33b5e5");
-			int mColor2 =  Color.parseColor("#ffe2231a");
-			int color = interpolateColor(mColor1, mColor2, bias);
-			mProgressPaint.setColor(color);
-
-
-			canvas.drawArc(mArcRect, arcStart, mProgressSweep, false, mProgressPaint);
-
+		long refreshDelay = overlay.getRefreshDelayMillis(now);
+		if (refreshDelay >= 0) {
+			postInvalidateDelayed(refreshDelay);
 		}
-		canvas.drawText(""+(mSelectedTemperature+mMin), mTranslateX - mTextXPos  ,  mTranslateY - mTextYPos  , paintText);
+	}
 
+	private void recordDraw(ThermostatMetrics metrics, long drawStart) {
+		long drawEnd = System.nanoTime();
+		metrics.recordDraw(drawEnd - drawStart);
+		if (mUndrawnTouchTime != 0) {
+			// Event times are uptimeMillis, which shares its clock with nanoTime on Android
+			metrics.recordTouchToDraw(drawEnd - mUndrawnTouchTime * 1000000L);
+			mUndrawnTouchTime = 0;
+		}
+	}
 
-		RectF centerTemperature = new RectF(0, 0, getWidth(), getHeight());
-		float textHeight = paintTextCurrent.descent() - paintTextCurrent.ascent();
-		float textOffset = (textHeight / 2) - paintTextCurrent.descent();
-		canvas.drawText(""+currentTemperature, centerTemperature.centerX(), centerTemperature.centerY() + textOffset, paintTextCurrent);
+	/**
+	 * Enables recording draw durations, touch to draw latency and
+	 * invalidation and callback counts, see {@link #getMetrics()}. When
+	 * disabled, the default, the cost is a null check per event.
+	 *
+	 * @param enabled
+	 *            True to record metrics
+	 */
+	public void setMetricsEnabled(boolean enabled) {
+		if (!enabled) {
+			mMetrics = null;
+		} else if (mMetrics == null) {
+			mMetrics = new ThermostatMetrics();
+		}
+		mUndrawnTouchTime = 0;
+		mLastTouchTime = 0;
+	}
 
+	/**
+	 * Shows a debug overlay on the dial with the invalidations and
+	 * onProgressChanged callbacks per second, the average onDraw time and
+	 * the average share of the dial each invalidation repaints, and flashes
+	 * the invalidated regions. While shown, the whole dial is repainted on
+	 * every change and once a second so the overlay stays current. When
+	 * hidden, the default,
+	 * the cost is a null check per event.
+	 *
+	 * @param enabled
+	 *            True to show the overlay
+	 */
+	public void setDebugOverlayEnabled(boolean enabled) {
+		if (!enabled) {
+			mDebugOverlay = null;
+		} else if (mDebugOverlay == null) {
+			mDebugOverlay = new DebugOverlay(density, System.nanoTime());
+		}
+		invalidate();
+	}
 
+	public boolean isDebugOverlayEnabled() {
+		return mDebugOverlay != null;
+	}
 
-		float textHeightLabel = paintLabel.descent() - paintLabel.ascent();
-		float textOffsetLabel = (textHeightLabel / 2) - paintLabel.descent();
-		float yCurrent = centerTemperature.centerY()  - textHeightLabel - getScaledSize(50);
-		canvas.drawText("Current", centerTemperature.centerX(), yCurrent, paintLabel);
+	/**
+	 * Returns the metrics recorded since they were enabled or last reset, or
+	 * null if they are disabled. Poll {@link ThermostatMetrics#getSnapshot()}
+	 * on the UI thread.
+	 */
+	public ThermostatMetrics getMetrics() {
+		return mMetrics;
+	}
 
-		if(getProgress() >= mLeafDownRange && getProgress() <= mLeafUpperRange) {
-			int mLeafHalfheight = (int) mLeaf.getIntrinsicHeight() / 2;
-			int mLeafHalfWidth = (int) mLeaf.getIntrinsicWidth() / 2;
+	/**
+	 * Records user setpoint changes, the end of every gesture and the current
+	 * temperatures shown to an event log. Recording stores the event in
+	 * memory and returns, the recorder writes and flushes the log on its own
+	 * thread. When unset, the default, the cost is a null check per event.
+	 *
+	 * @param recorder
+	 *            The recorder, shared by any number of views on the UI
+	 *            thread, or null to stop recording
+	 * @param source
+	 *            The id stored with the events of this view, from
+	 *            Short.MIN_VALUE to Short.MAX_VALUE
+	 */
+	public void setEventRecorder(EventRecorder recorder, int source) {
+		mEventRecorder = recorder;
+		mEventSource = source;
+	}
 
-			mLeafHalfheight = (int) (mLeafHalfheight * ((smallest / density) / 500));
-			mLeafHalfWidth = (int) (mLeafHalfWidth * ((smallest / density) / 500));
+	public EventRecorder getEventRecorder() {
+		return mEventRecorder;
+	}
 
-			int left = (int) (centerTemperature.centerX() - mLeafHalfWidth);
-			int right = (int) (centerTemperature.centerX() + mLeafHalfWidth);
-			int top = (int) (centerTemperature.centerY() + textOffset + getScaledSize(50));
-			int bottom = (int) (top + mLeafHalfheight * 2);
-			mLeaf.setBounds(left, top, right, bottom);
-			mLeaf.draw(canvas);
+	private void recordEvent(int type, int value) {
+		if (mEventRecorder != null) {
+			mEventRecorder.record(mEventSource, type, value);
 		}
-
-		canvas.translate(mTranslateX - mThumbXPos, mTranslateY - mThumbYPos);
-
-		canvas.save(Canvas.MATRIX_SAVE_FLAG); //Saving the canvas and later restoring it so only this image will be rotated.
-		canvas.rotate(mProgressSweep+mStartAngle);
-		mThumb.draw(canvas);
-		canvas.restore();
-
 	}
 
-	private int getScaledSize(int value){
-		return (int)(density * value * ((smallest/density)/500));
+	/**
+	 * @param dirty
+	 *            The region invalidated, or null for the whole view
+	 */
+	private void recordInvalidate(Rect dirty) {
+		if (mMetrics != null) {
+			mMetrics.recordInvalidate();
+		}
+		if (mDebugOverlay != null) {
+			mDebugOverlay.onInvalidate(dirty, getWidth(), getHeight(), System.nanoTime());
+		}
 	}
 
-	private int interpolateColor(int colorA, int colorB, float bias) {
-		float[] hsvColorA = new float[3];
-		Color.colorToHSV(colorA, hsvColorA);
-
-		float[] hsvColorB = new float[3];
-		Color.colorToHSV(colorB, hsvColorB);
+	/**
+	 * Blits the cached static layer, rendering it first if it is out of date.
+	 *
+	 * @return false if the view has no size yet and nothing was drawn
+	 */
+	private boolean drawStaticLayerCache(Canvas canvas) {
+		final int width = getWidth();
+		final int height = getHeight();
+		if (width <= 0 || height <= 0) {
+			return false;
+		}
+		if (mStaticLayer == null || mStaticLayer.getWidth() != width
+				|| mStaticLayer.getHeight() != height) {
+			releaseStaticLayer();
+			mStaticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+			mStaticLayerCanvas = new Canvas(mStaticLayer);
+			mStaticLayerDirty = true;
+		}
+		if (mStaticLayerDirty) {
+			mStaticLayer.eraseColor(Color.TRANSPARENT);
+			mRenderer.drawStaticLayer(mStaticLayerCanvas);
+			mStaticLayerDirty = false;
+		}
+		canvas.drawBitmap(mStaticLayer, 0, 0, null);
+		return true;
+	}
 
-		hsvColorB[0] = interpolate(hsvColorA[0], hsvColorB[0], bias);
-		hsvColorB[1] = interpolate(hsvColorA[1], hsvColorB[1], bias);
-		hsvColorB[2] = interpolate(hsvColorA[2], hsvColorB[2], bias);
+	private void releaseStaticLayer() {
+		if (mStaticLayer != null) {
+			mStaticLayer.recycle();
+			mStaticLayer = null;
+			mStaticLayerCanvas = null;
+		}
+	}
 
-		// NOTE For some reason the method HSVToColor fail in edit mode. Just use the start color for now
-		if (isInEditMode())
-			return colorA;
+	/**
+	 * Marks the cached static layer as out of date and redraws the view.
+	 */
+	private void invalidateStaticLayer() {
+		mStaticLayerDirty = true;
+		recordInvalidate(null);
+		invalidate();
+	}
 
-		return Color.HSVToColor(hsvColorB);
+	/**
+	 * Enables caching the background circle and the track arc in a bitmap.
+	 * They are then rendered once per size, color or arc configuration
+	 * change instead of on every frame, at the cost of one view sized bitmap.
+	 *
+	 * @param enabled
+	 *            True to cache the static parts of the dial
+	 */
+	public void setStaticLayerCacheEnabled(boolean enabled) {
+		mStaticLayerCacheEnabled = enabled;
+		if (!enabled) {
+			releaseStaticLayer();
+		}
+		invalidateStaticLayer();
 	}
 
-	private float interpolate(float a, float b, float bias) {
-		return (a + ((b - a) * bias));
+	public boolean isStaticLayerCacheEnabled() {
+		return mStaticLayerCacheEnabled;
 	}
 
 	@Override
-	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-
-		final int height = getDefaultSize(getSuggestedMinimumHeight(),
-				heightMeasureSpec);
-		final int width = getDefaultSize(getSuggestedMinimumWidth(),
-				widthMeasureSpec);
-		final int min = Math.min(width, height);
-		float top = 0;
-		float left = 0;
-		int arcDiameter = 0;
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		flushTouch();
+		mAnimator.finish();
+		releaseStaticLayer();
+		mRenderer.clearBitmaps();
+		if (mSharedResources != null) {
+			// The renderer draws with objects of its own until attached again
+			mRenderer.setSharedResources(null);
+			mSharedResources.release();
+			mSharedResources = null;
+		}
+		removeCallbacks(mScheduleTick);
+	}
 
-		mTranslateX = (int) (width * 0.5f);
-		mTranslateY = (int) (height * 0.5f);
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if (mSharedResources == null) {
+			mSharedResources = ThermostatResources.acquire(context.getResources());
+			mRenderer.setSharedResources(mSharedResources);
+		}
+		if (mSchedule != null) {
+			updateSchedule(System.currentTimeMillis());
+		}
+	}
 
-		arcDiameter = min - getPaddingLeft();
-		mArcRadius = arcDiameter / 2;
-		top = height / 2 - (arcDiameter / 2);
-		left = width / 2 - (arcDiameter / 2);
-		mArcRect.set(left, top, left + arcDiameter, top + arcDiameter);
+	/**
+	 * Starts collecting the area to repaint for a change to some elements of
+	 * the dial, call before the change so their current bounds are included.
+	 *
+	 * @param elements
+	 *            DIRTY_* flags of the elements that are about to change
+	 */
+	private void beginDirty(int elements) {
+		mDirtyRect.setEmpty();
+		unionDirty(elements);
+	}
 
-		int arcStart = (int)mProgressSweep + mStartAngle  + mRotation + 90;
-		mThumbXPos = (int) (mArcRadius * Math.cos(Math.toRadians(arcStart)));
-		mThumbYPos = (int) (mArcRadius * Math.sin(Math.toRadians(arcStart)));
+	/**
+	 * Adds the bounds of the changed elements after the change and
+	 * invalidates only the collected area.
+	 *
+	 * @param elements
+	 *            DIRTY_* flags of the elements that changed
+	 */
+	private void endDirty(int elements) {
+		unionDirty(elements);
+		boolean full = mDirtyRect.isEmpty() || getWidth() <= 0;
+		recordInvalidate(full ? null : mDirtyRect);
+		// The debug overlay is refreshed along with any change
+		if (full || mDebugOverlay != null) {
+			invalidate();
+		} else {
+			invalidate(mDirtyRect);
+		}
+	}
 
-		mTextXPos = (int) (mArcRadius * Math.cos(Math.toRadians(arcStart+10)));
-		mTextYPos = (int) (mArcRadius * Math.sin(Math.toRadians(arcStart+10)));
+	/**
+	 * Invalidates the current bounds of some elements of the dial.
+	 */
+	private void invalidateElements(int elements) {
+		beginDirty(elements);
+		endDirty(0);
+	}
 
+	private void unionDirty(int elements) {
+		final ThermostatRenderer renderer = mRenderer;
+		if ((elements & DIRTY_PROGRESS_ARC) != 0) {
+			renderer.getArcBounds(mElementRect);
+			unionElement();
+		}
+		if ((elements & DIRTY_THUMB) != 0) {
+			renderer.getThumbBounds(mElementRect);
+			unionElement();
+		}
+		if ((elements & DIRTY_SETPOINT_LABEL) != 0) {
+			renderer.getSetpointBounds(mElementRect);
+			unionElement();
+		}
+		if ((elements & DIRTY_CURRENT_TEXT) != 0) {
+			renderer.getCurrentTextBounds(mElementRect);
+			unionElement();
+		}
+		if ((elements & DIRTY_LEAF) != 0) {
+			renderer.getLeafBounds(mElementRect);
+			unionElement();
+		}
+		if ((elements & DIRTY_SPARKLINE) != 0 && mHistory != null) {
+			int halfStroke = (int) Math.ceil(mSparklinePaint.getStrokeWidth() / 2);
+			mElementRect.set((int) mSparklineRect.left, (int) mSparklineRect.top,
+					(int) Math.ceil(mSparklineRect.right), (int) Math.ceil(mSparklineRect.bottom));
+			mElementRect.inset(-halfStroke, -halfStroke);
+			renderer.mirror(mElementRect);
+			unionElement();
+		}
+		if ((elements & DIRTY_SCHEDULE_TEXT) != 0 && mScheduleText != null) {
+			final TextPaint paintLabel = renderer.getLabelPaint();
+			final float centerX = renderer.getCenterX();
+			float halfWidth = mScheduleTextWidth / 2;
+			mElementRect.set((int) (centerX - halfWidth),
+					(int) (mScheduleTextY + paintLabel.ascent()),
+					(int) Math.ceil(centerX + halfWidth),
+					(int) Math.ceil(mScheduleTextY + paintLabel.descent()));
+			renderer.mirror(mElementRect);
+			unionElement();
+		}
+	}
 
-		setTouchInSide(mTouchInside);
-		super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+	/**
+	 * Adds the bounds in mElementRect, already on the canvas, to the area
+	 * to repaint.
+	 */
+	private void unionElement() {
+		if (mElementRect.isEmpty()) {
+			return;
+		}
+		mElementRect.inset(-DIRTY_PADDING, -DIRTY_PADDING);
+		mDirtyRect.union(mElementRect);
 	}
 
 	@Override
 	public boolean onTouchEvent(MotionEvent event) {
+		if (mMetrics != null) {
+			mMetrics.recordTouchEvent();
+		}
 		if (mEnabled) {
+			if (mMetrics != null) {
+				mLastTouchTime = event.getEventTime();
+			}
 			this.getParent().requestDisallowInterceptTouchEvent(true);
 
 			switch (event.getAction()) {
@@ -498,14 +754,19 @@ public class VirtualThermostat extends View {
 					updateOnTouch(event);
 					break;
 				case MotionEvent.ACTION_MOVE:
-					updateOnTouch(event);
+					queueTouch(event);
 					break;
 				case MotionEvent.ACTION_UP:
+					queueTouch(event);
+					flushTouch();
+					mLastTouchTime = 0;
 					onStopTrackingTouch();
 					setPressed(false);
 					this.getParent().requestDisallowInterceptTouchEvent(false);
 					break;
 				case MotionEvent.ACTION_CANCEL:
+					flushTouch();
+					mLastTouchTime = 0;
 					onStopTrackingTouch();
 					setPressed(false);
 					this.getParent().requestDisallowInterceptTouchEvent(false);
@@ -519,87 +780,180 @@ public class VirtualThermostat extends View {
 	@Override
 	protected void drawableStateChanged() {
 		super.drawableStateChanged();
-		if (mThumb != null && mThumb.isStateful()) {
-			int[] state = getDrawableState();
-			mThumb.setState(state);
+		if (mRenderer != null && mRenderer.isThumbStateful()) {
+			mRenderer.setThumbState(getDrawableState());
+			invalidateElements(DIRTY_THUMB);
+			return;
 		}
+		recordInvalidate(null);
 		invalidate();
 	}
 
 	private void onStartTrackingTouch() {
-		if (mOnVirtualThermostatChangeListener != null) {
-			mOnVirtualThermostatChangeListener.onStartTrackingTouch(this);
-		}
+		mListeners.dispatchStartTrackingTouch();
 	}
 
 	private void onStopTrackingTouch() {
-		if (mOnVirtualThermostatChangeListener != null) {
-			mOnVirtualThermostatChangeListener.onStopTrackingTouch(this);
-		}
+		recordEvent(EventLog.TYPE_SETPOINT_COMMITTED, mModel.getProgress());
+		mListeners.dispatchStopTrackingTouch();
 	}
 
 	private void updateOnTouch(MotionEvent event) {
-		boolean ignoreTouch = ignoreTouch(event.getX(), event.getY());
+		if (mTouchPredictor != null) {
+			mTouchPredictor.reset();
+		}
+		updateOnTouch(event.getX(), event.getY());
+		addPredictorSample(event.getEventTime(), event.getX(), event.getY());
+	}
+
+	void updateOnTouch(float x, float y) {
+		boolean ignoreTouch = ignoreTouch(x, y);
 		if (ignoreTouch) {
 			return;
 		}
 		setPressed(true);
-		mTouchAngle = getTouchDegrees(event.getX(), event.getY());
+		mTouchAngle = getTouchDegrees(x, y);
 		int progress = getProgressForAngle(mTouchAngle);
 		onProgressRefresh(progress, true);
 	}
 
-	private boolean ignoreTouch(float xPos, float yPos) {
-		boolean ignore = false;
-		float x = xPos - mTranslateX;
-		float y = yPos - mTranslateY;
+	/**
+	 * Folds the samples of a move event, the batched historical ones first,
+	 * into the pending progress and schedules it for the next frame. The
+	 * last sample that maps to the arc wins, so a fast drag into the dead
+	 * zone still ends on the edge the finger crossed.
+	 */
+	private void queueTouch(MotionEvent event) {
+		final int historySize = event.getHistorySize();
+		for (int i = 0; i < historySize; i++) {
+			queueTouch(event.getHistoricalX(i), event.getHistoricalY(i));
+			addPredictorSample(event.getHistoricalEventTime(i), event.getHistoricalX(i),
+					event.getHistoricalY(i));
+		}
+		queueTouch(event.getX(), event.getY());
+		addPredictorSample(event.getEventTime(), event.getX(), event.getY());
+	}
 
-		float touchRadius = (float) Math.sqrt(((x * x) + (y * y)));
-		if (touchRadius < mTouchIgnoreRadius) {
-			ignore = true;
+	void queueTouch(float x, float y) {
+		if (ignoreTouch(x, y)) {
+			return;
+		}
+		int progress = getProgressForAngle(getTouchDegrees(x, y));
+		if (progress == INVALID_PROGRESS_VALUE) {
+			return;
 		}
-		return ignore;
+		mPendingTouchProgress = progress;
+		mFrameScheduler.schedule();
 	}
 
-	private double getTouchDegrees(float xPos, float yPos) {
-		float x = xPos - mTranslateX;
-		float y = yPos - mTranslateY;
-		//invert the x-coord if we are rotating anti-clockwise
-		x= (mClockwise) ? x:-x;
-		// convert to arc Angle
-		double angle = Math.toDegrees(Math.atan2(y, x) + (Math.PI / 2)
-				- Math.toRadians(mRotation));
-		if (angle < 0) {
-			angle = 360 + angle;
+	/**
+	 * Applies the pending touch progress and any throttled callback now,
+	 * used when the gesture ends.
+	 */
+	private void flushTouch() {
+		mFrameScheduler.cancel();
+		applyPendingTouch();
+		if (mCallbackPending) {
+			mCallbackPending = false;
+			notifyProgressChanged(mModel.getStep(), mCallbackPendingFromUser);
+		}
+		if (mTouchPredictor != null && mTouchPredictor.hasSamples()) {
+			// Snap the thumb and arc to the committed progress
+			mTouchPredictor.reset();
+			applyAnimatedSweep(mRenderer.getProgressSweep(), true);
 		}
-		angle -= mStartAngle;
-		return angle;
 	}
 
-	private int getProgressForAngle(double angle) {
-		int touchProgress = (int) Math.round(valuePerDegree() * angle);
+	void onTouchFrame(long frameTimeNanos) {
+		applyPendingTouch();
+		if (mCallbackPending) {
+			dispatchProgressChanged(mModel.getStep(), mCallbackPendingFromUser);
+		}
+		if (mTouchPredictor != null && mTouchPredictor.hasSamples()) {
+			applyPredictedTouch(frameTimeNanos);
+		}
+	}
 
-		touchProgress = (touchProgress < 0) ? INVALID_PROGRESS_VALUE
-				: touchProgress;
-		touchProgress = (touchProgress > mMax) ? INVALID_PROGRESS_VALUE
-				: touchProgress;
-		return touchProgress;
+	/**
+	 * Draws the thumb and the progress arc at the angle the finger is
+	 * predicted to be at when this frame is shown. The progress, its label
+	 * and the listeners keep the committed step. Frames are requested until
+	 * the prediction settles on the newest sample.
+	 */
+	private void applyPredictedTouch(long frameTimeNanos) {
+		final TouchPredictor predictor = mTouchPredictor;
+		double angle = predictor.predict(frameTimeNanos);
+		if (angle != predictor.getNewestAngle()) {
+			mFrameScheduler.schedule();
+		}
+		// Unwrapped angles can be a turn away from the arc
+		float committed = mGeometry.getSweep(mModel.getStep());
+		angle -= 360 * Math.round((angle - committed) / 360);
+		float maxSweep = mGeometry.getSweep(mGeometry.getMax());
+		float sweep = (float) Math.max(0, Math.min(maxSweep, angle));
+		if (sweep != mRenderer.getProgressSweep()) {
+			applySweep(sweep, mModel.getStep());
+		}
 	}
 
-	private float valuePerDegree() {
-		return (float) mMax / mSweepAngle;
+	private void addPredictorSample(long eventTimeMillis, float x, float y) {
+		if (mTouchPredictor == null || ignoreTouch(x, y)) {
+			return;
+		}
+		// MotionEvent times are uptimeMillis, the same clock as frame times
+		mTouchPredictor.addSample(eventTimeMillis * 1000000L, getTouchDegrees(x, y));
 	}
 
-	private void onProgressRefresh(int progress, boolean fromUser) {
-		updateProgress(progress, fromUser);
+	/**
+	 * Draws the thumb and the progress arc ahead of the finger while
+	 * dragging, at the angle it is predicted to reach by the time the frame
+	 * is shown, hiding a frame or two of touch latency. The prediction uses
+	 * the angular velocity of the last touch samples and snaps to the
+	 * committed progress when the finger lifts. Only committed progress
+	 * values are reported to the listeners. Disabled by default.
+	 */
+	public void setTouchPredictionEnabled(boolean enabled) {
+		if (!enabled) {
+			if (mTouchPredictor != null && mTouchPredictor.hasSamples()) {
+				applyAnimatedSweep(mRenderer.getProgressSweep(), true);
+			}
+			mTouchPredictor = null;
+		} else if (mTouchPredictor == null) {
+			mTouchPredictor = new TouchPredictor();
+		}
+	}
+
+	public boolean isTouchPredictionEnabled() {
+		return mTouchPredictor != null;
+	}
+
+	private void applyPendingTouch() {
+		if (mPendingTouchProgress == INVALID_PROGRESS_VALUE) {
+			return;
+		}
+		setPressed(true);
+		int progress = mPendingTouchProgress;
+		mPendingTouchProgress = INVALID_PROGRESS_VALUE;
+		onProgressRefresh(progress, true);
+	}
+
+	private boolean ignoreTouch(float xPos, float yPos) {
+		return mRenderer.isTouchIgnored(xPos, yPos);
+	}
+
+	private double getTouchDegrees(float xPos, float yPos) {
+		return mRenderer.getTouchDegrees(xPos, yPos);
 	}
 
-	private void updateThumbPosition() {
-		int thumbAngle = (int) (mStartAngle + mProgressSweep + mRotation + 90);
-		mThumbXPos = (int) (mArcRadius * Math.cos(Math.toRadians(thumbAngle)));
-		mThumbYPos = (int) (mArcRadius * Math.sin(Math.toRadians(thumbAngle)));
-		mTextXPos = (int) (mArcRadius * Math.cos(Math.toRadians(thumbAngle+10)));
-		mTextYPos = (int) (mArcRadius * Math.sin(Math.toRadians(thumbAngle+10)));
+
+	private int getProgressForAngle(double angle) {
+		int touchProgress = mGeometry.getStepForAngle(angle);
+		return (touchProgress == ArcGeometry.INVALID_STEP) ? INVALID_PROGRESS_VALUE
+				: touchProgress;
+	}
+
+	private void onProgressRefresh(int progress, boolean fromUser) {
+		updateProgress(progress, fromUser);
 	}
 
 	private void updateProgress(int progress, boolean fromUser) {
@@ -608,36 +962,429 @@ public class VirtualThermostat extends View {
 			return;
 		}
 
-		progress = (progress > mMax) ? mMax : progress;
-		progress = (progress < 0) ? 0 : progress;
-		mProgress = progress;
+		progress = mModel.clampStep(progress);
 
-		if (mOnVirtualThermostatChangeListener != null) {
-			mOnVirtualThermostatChangeListener
-					.onProgressChanged(this, progress+mMin, fromUser);
+		if (fromUser && mAnimator.isSweepRunning()) {
+			mAnimator.cancelSweep();
+			applyAnimatedSweep(mRenderer.getProgressSweep(), true);
 		}
 
-		mProgressSweep = (float) progress / mMax * mSweepAngle;
+		if (progress != mModel.getStep() || mGeometry.getSweep(progress) != mRenderer.getProgressSweep()
+				|| progress != mRenderer.getLabelStep()) {
+			beginDirty(DIRTY_PROGRESS);
+			mRenderer.setStep(progress);
+			endDirty(DIRTY_PROGRESS);
+			if (fromUser && mLastTouchTime != 0 && mUndrawnTouchTime == 0) {
+				mUndrawnTouchTime = mLastTouchTime;
+			}
+		}
 
-		updateThumbPosition();
-		mSelectedTemperature = progress;
-		invalidate();
+		dispatchProgressChanged(progress, fromUser);
+	}
+
+	/**
+	 * Tells the listener about a new progress if it differs from the last
+	 * one it was told about. When the callback rate is limited and the last
+	 * callback was too recent, the callback is deferred to a later frame.
+	 */
+	private void dispatchProgressChanged(int progress, boolean fromUser) {
+		if (progress == mNotifiedProgress) {
+			mCallbackPending = false;
+			return;
+		}
+		if (mMinCallbackIntervalNanos > 0
+				&& System.nanoTime() - mLastCallbackNanos < mMinCallbackIntervalNanos) {
+			mCallbackPending = true;
+			mCallbackPendingFromUser = fromUser;
+			mFrameScheduler.schedule();
+			return;
+		}
+		mCallbackPending = false;
+		notifyProgressChanged(progress, fromUser);
+	}
+
+	private void notifyProgressChanged(int progress, boolean fromUser) {
+		if (progress == mNotifiedProgress) {
+			return;
+		}
+		mNotifiedProgress = progress;
+		mLastCallbackNanos = System.nanoTime();
+		if (mMetrics != null) {
+			mMetrics.recordCallback();
+		}
+		if (mDebugOverlay != null) {
+			mDebugOverlay.onCallback();
+		}
+		if (fromUser) {
+			recordEvent(EventLog.TYPE_SETPOINT, progress + mModel.getMin());
+		}
+		mListeners.dispatchProgressChanged(progress + mModel.getMin(), fromUser);
+	}
+
+	/**
+	 * Limits how often onProgressChanged is called while dragging. Changes
+	 * that come too soon after the previous callback are delivered on a
+	 * later frame with the latest value, and the final value is always
+	 * delivered when the gesture ends.
+	 *
+	 * @param callbacksPerSecond
+	 *            The maximum callback rate, 0 for no limit
+	 */
+	public void setMaxCallbackRate(int callbacksPerSecond) {
+		mMinCallbackIntervalNanos = (callbacksPerSecond <= 0) ? 0
+				: 1000000000L / callbacksPerSecond;
 	}
 
 	public void setBackgroundColor(int color){
+		setBackgroundColor(color, false);
+	}
+
+	/**
+	 * Sets the color of the dial, optionally fading to it from the current
+	 * color.
+	 */
+	public void setBackgroundColor(int color, boolean animate) {
+		int from = colorBackground;
 		colorBackground = color;
-		mArcPaintBackground.setColor(color);
-		invalidate();
+		if (animate && getWidth() != 0 && from != color) {
+			mAnimator.animateBackground(from, color);
+			return;
+		}
+		mAnimator.cancelBackground();
+		applyAnimatedBackground(color);
+	}
+
+	void applyAnimatedBackground(int color) {
+		mRenderer.setBackgroundColor(color);
+		invalidateStaticLayer();
 	}
 
 	public void setCurrentTemperature(String temperature){
 
-		currentTemperature = temperature;
+		mAnimator.cancelCurrentTemperature();
+		beginDirty(DIRTY_CURRENT_TEXT);
+		mCurrentTemperatureTenths = NO_TEMPERATURE;
+		mRenderer.setCurrentText(temperature);
+		endDirty(DIRTY_CURRENT_TEXT);
+	}
 
-		invalidate();
+	/**
+	 * Sets the current temperature in whole degrees. Values inside the
+	 * current temperature range reuse a cached label.
+	 *
+	 * @param temperature
+	 *            The current temperature, in degrees
+	 */
+	public void setCurrentTemperature(int temperature) {
+		setCurrentTemperatureValue(temperature * 10, false, false);
+	}
+
+	/**
+	 * Sets the current temperature in whole degrees, optionally counting up
+	 * or down to it from the temperature shown.
+	 */
+	public void setCurrentTemperature(int temperature, boolean animate) {
+		setCurrentTemperatureValue(temperature * 10, false, animate);
+	}
+
+	/**
+	 * Sets the current temperature as fixed-point tenths of a degree, it is
+	 * shown with one decimal place (215 is shown as 21.5). Values inside the
+	 * current temperature range reuse a cached label.
+	 *
+	 * @param tenths
+	 *            The current temperature, in tenths of a degree
+	 */
+	public void setCurrentTemperatureTenths(int tenths) {
+		setCurrentTemperatureValue(tenths, true, false);
+	}
+
+	/**
+	 * Sets the current temperature as tenths of a degree, optionally
+	 * counting up or down to it from the temperature shown.
+	 */
+	public void setCurrentTemperatureTenths(int tenths, boolean animate) {
+		setCurrentTemperatureValue(tenths, true, animate);
+	}
+
+	/**
+	 * Shows a weekly schedule on the dial: the next scheduled setpoint and
+	 * the time until it takes effect, refreshed every minute. The schedule
+	 * does not change the setpoint of the dial, see
+	 * {@link #getScheduledSetpoint()}.
+	 *
+	 * @param schedule
+	 *            The schedule, for example from a {@link ScheduleStore}, or
+	 *            null to stop showing one
+	 */
+	public void setSchedule(WeeklySchedule schedule) {
+		mSchedule = schedule;
+		updateSchedule(System.currentTimeMillis());
 	}
 
+	public WeeklySchedule getSchedule() {
+		return mSchedule;
+	}
 
+	/**
+	 * Returns the setpoint the schedule has in effect now, or
+	 * Integer.MIN_VALUE if there is no schedule or it is empty.
+	 */
+	public int getScheduledSetpoint() {
+		if (mSchedule == null || mSchedule.size() == 0) {
+			return Integer.MIN_VALUE;
+		}
+		return mSchedule.getActiveSetpoint(getMinuteOfWeek(System.currentTimeMillis()));
+	}
+
+	/**
+	 * Refreshes the schedule text for a time and, while attached, schedules
+	 * the next refresh at the start of the following minute.
+	 */
+	void updateSchedule(long nowMillis) {
+		removeCallbacks(mScheduleTick);
+		beginDirty(DIRTY_SCHEDULE_TEXT);
+		if (mSchedule == null || mSchedule.size() == 0) {
+			mScheduleText = null;
+		} else {
+			int minute = getMinuteOfWeek(nowMillis);
+			int next = mSchedule.nextIndexAfter(minute);
+			mScheduleText = formatSchedule(mSchedule.getSetpoint(next),
+					mSchedule.getMinutesUntilNext(minute));
+			layoutScheduleText();
+			postDelayed(mScheduleTick, 60000 - nowMillis % 60000);
+		}
+		endDirty(DIRTY_SCHEDULE_TEXT);
+	}
+
+	private static int getMinuteOfWeek(long millis) {
+		return WeeklySchedule.minuteOfWeek(millis, TimeZone.getDefault().getOffset(millis));
+	}
+
+	static String formatSchedule(int setpoint, int minutes) {
+		StringBuilder sb = new StringBuilder(24);
+		sb.append("Next ").append(setpoint).append(" in ");
+		int hours = minutes / 60;
+		if (hours >= 24) {
+			sb.append(hours / 24).append("d ");
+			hours %= 24;
+		}
+		if (hours > 0) {
+			sb.append(hours).append("h ");
+		}
+		return sb.append(minutes % 60).append('m').toString();
+	}
+
+	/**
+	 * Sets the current temperature in whole degrees from any thread, attached
+	 * or not. It is applied on the main thread, and readings posted before
+	 * then replace each other, so only the latest one is shown.
+	 *
+	 * @param temperature
+	 *            The current temperature, in degrees
+	 */
+	public void postCurrentTemperature(int temperature) {
+		if (mPendingReadings.offerCurrentTemperature(temperature * 10, false)) {
+			scheduleReadings();
+		}
+	}
+
+	/**
+	 * Sets the current temperature in tenths of a degree from any thread,
+	 * attached or not. It is applied on the main thread, and readings posted
+	 * before then replace each other, so only the latest one is shown.
+	 *
+	 * @param tenths
+	 *            The current temperature, in tenths of a degree
+	 */
+	public void postCurrentTemperatureTenths(int tenths) {
+		if (mPendingReadings.offerCurrentTemperature(tenths, true)) {
+			scheduleReadings();
+		}
+	}
+
+	/**
+	 * Posts the pending readings to the main thread, which applies them at
+	 * the start of the next frame, so at most once per frame however many
+	 * arrive. At most one post is pending at a time. Applying them
+	 * invalidates the dial, so they are drawn in that frame.
+	 */
+	private void scheduleReadings() {
+		mReadingsExecutor.execute(mScheduleReadingsFrame);
+	}
+
+	/**
+	 * Replaces the main thread executor posted readings are handed to, for
+	 * tests.
+	 */
+	void setReadingsExecutor(Executor executor) {
+		mReadingsExecutor = executor;
+	}
+
+	void applyPendingReadings() {
+		mPendingReadings.beginDrain();
+		long temperature = mPendingReadings.takeCurrentTemperature();
+		if (PendingReadings.hasTemperature(temperature)) {
+			setCurrentTemperatureValue(PendingReadings.getTenths(temperature),
+					PendingReadings.isInTenths(temperature), false);
+		}
+		long progress = mPendingReadings.takeProgress();
+		if (PendingReadings.hasProgress(progress)) {
+			setProgress(PendingReadings.getProgress(progress));
+		}
+	}
+
+	private void setCurrentTemperatureValue(int tenths, boolean inTenths, boolean animate) {
+		int from = mAnimator.isCurrentTemperatureRunning() ? mAnimator.getCurrentTemperature()
+				: mCurrentTemperatureTenths;
+		mCurrentTemperatureTenths = tenths;
+		mCurrentInTenths = inTenths;
+		recordEvent(EventLog.TYPE_CURRENT_TEMPERATURE, tenths);
+		if (mHistory != null) {
+			mHistory.add(System.currentTimeMillis(), tenths / 10f);
+			invalidateElements(DIRTY_SPARKLINE);
+		}
+		if (animate && getWidth() != 0 && from != NO_TEMPERATURE && from != tenths) {
+			mAnimator.animateCurrentTemperature(from, tenths);
+			return;
+		}
+		mAnimator.cancelCurrentTemperature();
+		showCurrentTemperature(tenths);
+	}
+
+	/**
+	 * Keeps the last 24 hours of numeric current temperatures and draws them
+	 * as a sparkline on the dial, downsampled to its width in pixels.
+	 */
+	public void setHistoryEnabled(boolean enabled) {
+		if (!enabled) {
+			setTemperatureHistory(null);
+		} else if (mHistory == null) {
+			setTemperatureHistory(new TemperatureHistory(HISTORY_CAPACITY, HISTORY_WINDOW_MILLIS, 2));
+		}
+	}
+
+	/**
+	 * Sets the history drawn as a sparkline, for example one filled with
+	 * stored samples. Numeric current temperatures set afterwards are added
+	 * to it, and its resolution is changed to the sparkline width.
+	 *
+	 * @param history
+	 *            The history, or null to stop keeping and drawing one
+	 */
+	public void setTemperatureHistory(TemperatureHistory history) {
+		mHistory = history;
+		if (history != null) {
+			if (mSparklinePaint == null) {
+				mSparklinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+				mSparklinePaint.setStyle(Paint.Style.STROKE);
+				mSparklinePaint.setStrokeWidth(2 * density);
+				mSparklinePaint.setColor(0x99FFFFFF);
+			}
+			updateSparklineResolution();
+			mSparklineVersion = history.getVersion() - 1;
+		}
+		invalidateElements(DIRTY_SPARKLINE);
+	}
+
+	public TemperatureHistory getTemperatureHistory() {
+		return mHistory;
+	}
+
+	private void updateSparklineResolution() {
+		int width = (int) mSparklineRect.width();
+		if (width >= 2) {
+			mHistory.setResolution(width);
+		}
+	}
+
+	private void drawSparkline(Canvas canvas) {
+		final TemperatureHistory history = mHistory;
+		if (history.getVersion() != mSparklineVersion) {
+			buildSparklinePath();
+		}
+		final int newest = history.size() - 1;
+		final float endX = getSparklineX(history.getTime(newest));
+		final float endY = getSparklineY(history.getValue(newest));
+
+		canvas.save();
+		canvas.clipRect(mSparklineRect);
+		// Slide the path so that the newest sample is at the right edge
+		canvas.translate(mSparklineRect.right - endX, 0);
+		canvas.drawPath(mSparklinePath, mSparklinePaint);
+		if (history.getPointCount() > 0) {
+			canvas.drawLine(mSparklineEndX, mSparklineEndY, endX, endY, mSparklinePaint);
+		}
+		canvas.restore();
+	}
+
+	private void buildSparklinePath() {
+		final TemperatureHistory history = mHistory;
+		final int count = history.getPointCount();
+		mSparklineVersion = history.getVersion();
+		mSparklinePath.rewind();
+		if (count == 0) {
+			return;
+		}
+		mSparklineBaseTime = history.getPointTime(0);
+		for (int i = 0; i < count; i++) {
+			float x = getSparklineX(history.getPointTime(i));
+			float y = getSparklineY(history.getPointValue(i));
+			if (i == 0) {
+				mSparklinePath.moveTo(x, y);
+			} else {
+				mSparklinePath.lineTo(x, y);
+			}
+			mSparklineEndX = x;
+			mSparklineEndY = y;
+		}
+	}
+
+	private float getSparklineX(long time) {
+		return (float) ((time - mSparklineBaseTime) * (double) mSparklineRect.width()
+				/ mHistory.getWindowMillis());
+	}
+
+	/**
+	 * Maps a temperature to the sparkline height, the setpoint range spans
+	 * the whole height.
+	 */
+	private float getSparklineY(float temperature) {
+		float range = Math.max(1, mModel.getMax() - mModel.getMin());
+		float fraction = (temperature - mModel.getMin()) / range;
+		return mSparklineRect.bottom - fraction * mSparklineRect.height();
+	}
+
+	void applyAnimatedCurrentTemperature(int tenths) {
+		showCurrentTemperature(tenths);
+	}
+
+	/**
+	 * Shows a current temperature, in tenths of a degree, with one decimal
+	 * place or rounded to whole degrees as it was last set.
+	 */
+	private void showCurrentTemperature(int tenths) {
+		beginDirty(DIRTY_CURRENT_TEXT);
+		mRenderer.setCurrentTemperatureTenths(tenths, mCurrentInTenths);
+		endDirty(DIRTY_CURRENT_TEXT);
+	}
+
+	/**
+	 * Returns the current temperature in tenths of a degree, or
+	 * Integer.MIN_VALUE when it was set as text.
+	 */
+	public int getCurrentTemperatureTenths() {
+		return mCurrentTemperatureTenths;
+	}
+
+	/**
+	 * Sets the range of current temperatures, in degrees, whose labels are
+	 * cached by the numeric setCurrentTemperature methods. Defaults to -50
+	 * to 100.
+	 */
+	public void setCurrentTemperatureRange(int min, int max) {
+		mRenderer.setCurrentTemperatureRange(min, max);
+	}
 
 	/**
 	 * Sets a listener to receive notifications of changes to the VirtualThermostat's
@@ -649,91 +1396,188 @@ public class VirtualThermostat extends View {
 	 *
 	 */
 	public void setOnVirtualThermostatChangeListener(OnVirtualThermostatChangeListener l) {
+		mListeners.remove(mOnVirtualThermostatChangeListener);
 		mOnVirtualThermostatChangeListener = l;
+		mListeners.add(l);
+	}
+
+	/**
+	 * Adds a listener, in addition to the one set with
+	 * {@link #setOnVirtualThermostatChangeListener}. Listeners are called in
+	 * the order they were added.
+	 *
+	 * @param l
+	 *            The listener to add
+	 */
+	public void addOnVirtualThermostatChangeListener(OnVirtualThermostatChangeListener l) {
+		mListeners.add(l);
+	}
+
+	public void removeOnVirtualThermostatChangeListener(OnVirtualThermostatChangeListener l) {
+		if (l == mOnVirtualThermostatChangeListener) {
+			mOnVirtualThermostatChangeListener = null;
+		}
+		mListeners.remove(l);
+	}
+
+	/**
+	 * Delivers listener callbacks on an executor instead of the UI thread, so
+	 * slow listeners never stall the touch path. While a delivery is pending
+	 * newer progress values replace older ones, listeners only see the latest
+	 * value. Listeners called this way must not touch the view.
+	 *
+	 * @param executor
+	 *            The executor to call listeners on, null to call them
+	 *            synchronously on the UI thread (the default)
+	 */
+	public void setListenerExecutor(Executor executor) {
+		mListeners.setExecutor(executor);
 	}
 
 	public void setProgress(int progress) {
-		updateProgress(progress-mMin, false);
+		setProgress(progress, false);
+	}
+
+	/**
+	 * Sets the setpoint, optionally animating the arc, thumb and label to it.
+	 * The new setpoint is reported to the listeners right away, only the
+	 * display is animated. A touch on the dial ends the animation.
+	 *
+	 * @param progress
+	 *            The new setpoint
+	 * @param animate
+	 *            Whether to animate the dial to the new setpoint
+	 */
+	public void setProgress(int progress, boolean animate) {
+		int step = mModel.clampStep(progress - mModel.getMin());
+		if (!animate || getWidth() == 0 || step == mModel.getStep()) {
+			if (mAnimator.isSweepRunning()) {
+				mAnimator.cancelSweep();
+				applyAnimatedSweep(mRenderer.getProgressSweep(), true);
+			}
+			updateProgress(step, false);
+			return;
+		}
+		float from = mRenderer.getProgressSweep();
+		mModel.setStep(step);
+		dispatchProgressChanged(step, false);
+		mAnimator.animateSweep(from, mGeometry.getSweep(step));
+	}
+
+	/**
+	 * Moves the arc, thumb and label to an intermediate sweep of a setpoint
+	 * animation, and to the model's setpoint once it has finished.
+	 */
+	void applyAnimatedSweep(float sweep, boolean finished) {
+		if (finished) {
+			beginDirty(DIRTY_PROGRESS);
+			mRenderer.showStep();
+			endDirty(DIRTY_PROGRESS);
+		} else {
+			applySweep(sweep, mGeometry.getStepForSweep(sweep));
+		}
+	}
+
+	/**
+	 * Moves the arc, thumb and label to a sweep between steps, labelled with
+	 * the given step.
+	 */
+	private void applySweep(float sweep, int labelStep) {
+		beginDirty(DIRTY_PROGRESS);
+		mRenderer.setSweep(sweep, labelStep);
+		endDirty(DIRTY_PROGRESS);
+	}
+
+	/**
+	 * Sets the duration of the setpoint, background and current temperature
+	 * animations. Defaults to 300 milliseconds.
+	 */
+	public void setAnimationDuration(long durationMs) {
+		mAnimator.setDuration(durationMs);
+	}
+
+	public long getAnimationDuration() {
+		return mAnimator.getDuration();
+	}
+
+	/**
+	 * Sets the setpoint from any thread, attached or not. It is applied on the
+	 * main thread, and setpoints posted before then replace each other, so
+	 * only the latest one is applied and reported to the listeners.
+	 *
+	 * @param progress
+	 *            The new setpoint
+	 */
+	public void postProgress(int progress) {
+		if (mPendingReadings.offerProgress(progress)) {
+			scheduleReadings();
+		}
 	}
 
 	public int getProgress() {
-		return mProgress+ mMin;
+		return mModel.getProgress();
 	}
 
 	public int getProgressWidth() {
-		return mProgressWidth;
+		return mRenderer.getProgressWidth();
 	}
 
 	public void setProgressWidth(int mProgressWidth) {
-		this.mProgressWidth = mProgressWidth;
-		mProgressPaint.setStrokeWidth(mProgressWidth);
+		mRenderer.setProgressWidth(mProgressWidth);
+		invalidateElements(DIRTY_PROGRESS_ARC);
 	}
 
 	public int getArcWidth() {
-		return mArcWidth;
+		return mRenderer.getArcWidth();
 	}
 
 	public void setArcWidth(int mArcWidth) {
-		this.mArcWidth = mArcWidth;
-		mArcPaint.setStrokeWidth(mArcWidth);
+		mRenderer.setArcWidth(mArcWidth);
+		invalidateStaticLayer();
 	}
 	public int getArcRotation() {
-		return mRotation;
+		return mRenderer.getRotation();
 	}
 
 	public void setArcRotation(int mRotation) {
-		this.mRotation = mRotation;
-		updateThumbPosition();
+		mRenderer.setArc(getStartAngle(), getSweepAngle(), mRotation, isClockwise());
+		invalidateStaticLayer();
 	}
 
 	public int getStartAngle() {
-		return mStartAngle;
+		return mRenderer.getStartAngle();
 	}
 
 	public void setStartAngle(int mStartAngle) {
-		this.mStartAngle = mStartAngle;
-		updateThumbPosition();
+		mRenderer.setArc(mStartAngle, getSweepAngle(), getArcRotation(), isClockwise());
+		invalidateStaticLayer();
 	}
 
 	public int getSweepAngle() {
-		return mSweepAngle;
+		return mRenderer.getSweepAngle();
 	}
 
 	public void setSweepAngle(int mSweepAngle) {
-		this.mSweepAngle = mSweepAngle;
-		updateThumbPosition();
+		mRenderer.setArc(getStartAngle(), mSweepAngle, getArcRotation(), isClockwise());
+		invalidateStaticLayer();
 	}
 
 	public void setRoundedEdges(boolean isEnabled) {
-		mRoundedEdges = isEnabled;
-		if (mRoundedEdges) {
-			mArcPaint.setStrokeCap(Paint.Cap.ROUND);
-			mProgressPaint.setStrokeCap(Paint.Cap.ROUND);
-		} else {
-			mArcPaint.setStrokeCap(Paint.Cap.SQUARE);
-			mProgressPaint.setStrokeCap(Paint.Cap.SQUARE);
-		}
+		mRenderer.setRoundedEdges(isEnabled);
+		invalidateStaticLayer();
 	}
 
 	public void setTouchInSide(boolean isEnabled) {
-		int thumbHalfheight = (int) mThumb.getIntrinsicHeight() / 2;
-		int thumbHalfWidth = (int) mThumb.getIntrinsicWidth() / 2;
-		mTouchInside = isEnabled;
-		if (mTouchInside) {
-			mTouchIgnoreRadius = (float) mArcRadius / 4;
-		} else {
-			// Don't use the exact radius makes interaction too tricky
-			mTouchIgnoreRadius = mArcRadius
-					- Math.min(thumbHalfWidth, thumbHalfheight);
-		}
+		mRenderer.setTouchInside(isEnabled);
 	}
 
 	public void setClockwise(boolean isClockwise) {
-		mClockwise = isClockwise;
+		mRenderer.setArc(getStartAngle(), getSweepAngle(), getArcRotation(), isClockwise);
+		invalidateStaticLayer();
 	}
 
 	public boolean isClockwise() {
-		return mClockwise;
+		return mRenderer.isClockwise();
 	}
 
 	public boolean isEnabled() {
@@ -745,43 +1589,49 @@ public class VirtualThermostat extends View {
 	}
 
 	public int getProgressColor() {
-		return mProgressPaint.getColor();
+		return mRenderer.getProgressColor();
 	}
 
 	public void setProgressColor(int color) {
-		mProgressPaint.setColor(color);
-		invalidate();
+		mRenderer.setProgressColor(color);
+		invalidateElements(DIRTY_PROGRESS_ARC);
 	}
 
 	public int getArcColor() {
-		return mArcPaint.getColor();
+		return mRenderer.getArcColor();
 	}
 
 	public void setArcColor(int color) {
-		mArcPaint.setColor(color);
-		invalidate();
+		mRenderer.setArcColor(color);
+		invalidateStaticLayer();
 	}
 
 	public int getMax() {
-		return mMax+mMin;
+		return mModel.getMax();
 	}
 
+	/**
+	 * Sets the maximum, the number of steps becomes max - min.
+	 */
 	public void setMax(int mMax) {
-		this.mMax = mMax-mMin;
+		mRenderer.setRange(getMin(), mMax);
 	}
 
 	public int getMin() {
-		return mMin;
+		return mModel.getMin();
 	}
 
+	/**
+	 * Sets the minimum, keeping the number of steps, so the maximum moves
+	 * with it.
+	 */
 	public void setMin(int mMin) {
-		this.mMin = mMin;
+		mRenderer.setRange(mMin, mMin + mModel.getSteps());
 	}
 
 	public void setLeafLimit(int downLimit, int upperLimit ){
-		mLeafDownRange = downLimit;
-		mLeafUpperRange = upperLimit;
-		invalidate();
+		mRenderer.setLeafRange(downLimit, upperLimit);
+		invalidateElements(DIRTY_LEAF);
 	}
 
 
@@ -0,0 +1,96 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DebugOverlayTest {
+
+	private static final long SECOND = 1000000000L;
+
+	@Test
+	public void ratesCoverTheLastSecond() {
+		DebugOverlay overlay = new DebugOverlay(2f, 0);
+		RecordingCanvas canvas = new RecordingCanvas();
+		for (int i = 0; i < 3; i++) {
+			overlay.onInvalidate(null, 100, 100, i * 1000L);
+		}
+		overlay.onCallback();
+		overlay.onCallback();
+		overlay.draw(canvas, 2000000L, SECOND / 2);
+		assertEquals("inval -", overlay.getLine(0));
+
+		// Drawn late, the window still closes at one second and the draw
+		// is counted in the next one
+		overlay.draw(canvas, 4000000L, SECOND + SECOND / 4);
+		assertEquals("inval 3/s", overlay.getLine(0));
+		assertEquals("draw 2.00 ms", overlay.getLine(1));
+		assertEquals("onProgressChanged 2/s", overlay.getLine(2));
+
+		overlay.onInvalidate(null, 100, 100, SECOND + SECOND / 2);
+		overlay.draw(canvas, 0, 2 * SECOND);
+		assertEquals("inval 1/s", overlay.getLine(0));
+		assertEquals("draw 4.00 ms", overlay.getLine(1));
+	}
+
+	@Test
+	public void idleDialShowsZeroRates() {
+		DebugOverlay overlay = new DebugOverlay(2f, 0);
+		RecordingCanvas canvas = new RecordingCanvas();
+		overlay.onInvalidate(null, 100, 100, 0);
+		overlay.onCallback();
+		overlay.draw(canvas, 0, SECOND / 2);
+
+		// The refresh at the end of each second finds nothing counted
+		overlay.draw(canvas, 0, SECOND);
+		overlay.draw(canvas, 0, 2 * SECOND);
+		assertEquals("inval 0/s", overlay.getLine(0));
+		assertEquals("onProgressChanged 0/s", overlay.getLine(2));
+
+		// And so does a draw after seconds without one
+		overlay.onInvalidate(null, 100, 100, 2 * SECOND);
+		overlay.draw(canvas, 0, 5 * SECOND + SECOND / 2);
+		assertEquals("inval 0/s", overlay.getLine(0));
+	}
+
+	@Test
+	public void refreshIsScheduledOncePerWindow() {
+		DebugOverlay overlay = new DebugOverlay(2f, 0);
+		RecordingCanvas canvas = new RecordingCanvas();
+		overlay.draw(canvas, 0, SECOND / 4);
+		assertEquals(750, overlay.getRefreshDelayMillis(SECOND / 4));
+		assertEquals(-1, overlay.getRefreshDelayMillis(SECOND / 2));
+
+		overlay.draw(canvas, 0, SECOND + SECOND / 10);
+		assertEquals(900, overlay.getRefreshDelayMillis(SECOND + SECOND / 10));
+	}
+
+	@Test
+	public void invalidatedRegionsFadeOut() {
+		DebugOverlay overlay = new DebugOverlay(2f, 0);
+		RecordingCanvas canvas = new RecordingCanvas();
+		overlay.onInvalidate(null, 100, 100, 0);
+		assertTrue(overlay.draw(canvas, 0, SECOND / 10));
+		assertFalse(overlay.draw(canvas, 0, SECOND / 2));
+	}
+
+	@Test
+	public void dialDrawsOverlayOnlyWhenEnabled() {
+		VirtualThermostat thermostat = TestThermostats.create(500, 500);
+		RecordingCanvas canvas = new RecordingCanvas();
+		thermostat.onDraw(canvas);
+		int texts = canvas.getTextCount();
+
+		thermostat.setDebugOverlayEnabled(true);
+		canvas.resetCounts();
+		thermostat.onDraw(canvas);
+		assertEquals(texts + 4, canvas.getTextCount());
+
+		thermostat.setDebugOverlayEnabled(false);
+		canvas.resetCounts();
+		thermostat.onDraw(canvas);
+		assertEquals(texts, canvas.getTextCount());
+	}
+}
@@ -0,0 +1,119 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ListenerDispatcherTest {
+
+	@Test
+	public void asyncDeliveryKeepsGestureOrder() {
+		QueueExecutor executor = new QueueExecutor();
+		RecordingListener listener = new RecordingListener();
+		ListenerDispatcher dispatcher = new ListenerDispatcher(null);
+		dispatcher.add(listener);
+		dispatcher.setExecutor(executor);
+
+		dispatcher.dispatchStartTrackingTouch();
+		dispatcher.dispatchProgressChanged(1, true);
+		dispatcher.dispatchProgressChanged(2, true);
+		dispatcher.dispatchStopTrackingTouch();
+		dispatcher.dispatchStartTrackingTouch();
+		dispatcher.dispatchProgressChanged(3, true);
+		executor.runAll();
+
+		assertEquals("[start, progress 2, stop, start, progress 3]", listener.mEvents.toString());
+	}
+
+	@Test
+	public void eventsPostedWhileDeliveringAreDelivered() {
+		QueueExecutor executor = new QueueExecutor();
+		final ListenerDispatcher dispatcher = new ListenerDispatcher(null);
+		RecordingListener listener = new RecordingListener() {
+			@Override
+			public void onStartTrackingTouch(VirtualThermostat virtualThermostat) {
+				super.onStartTrackingTouch(virtualThermostat);
+				dispatcher.dispatchStopTrackingTouch();
+			}
+		};
+		dispatcher.add(listener);
+		dispatcher.setExecutor(executor);
+
+		dispatcher.dispatchStartTrackingTouch();
+		executor.runAll();
+
+		assertEquals("[start, stop]", listener.mEvents.toString());
+		assertTrue(executor.mTasks.isEmpty());
+	}
+
+	@Test
+	public void rejectedDeliveryIsScheduledAgain() {
+		QueueExecutor executor = new QueueExecutor();
+		RecordingListener listener = new RecordingListener();
+		ListenerDispatcher dispatcher = new ListenerDispatcher(null);
+		dispatcher.add(listener);
+		dispatcher.setExecutor(executor);
+
+		executor.mRejecting = true;
+		try {
+			dispatcher.dispatchStartTrackingTouch();
+			fail("the rejection was not thrown");
+		} catch (RejectedExecutionException e) {
+			// Expected
+		}
+		executor.mRejecting = false;
+		dispatcher.dispatchProgressChanged(4, true);
+		executor.runAll();
+
+		assertEquals("[start, progress 4]", listener.mEvents.toString());
+	}
+
+	private static class RecordingListener
+			implements VirtualThermostat.OnVirtualThermostatChangeListener {
+
+		final List<String> mEvents = new ArrayList<String>();
+
+		@Override
+		public void onProgressChanged(VirtualThermostat virtualThermostat, int progress,
+				boolean fromUser) {
+			mEvents.add("progress " + progress);
+		}
+
+		@Override
+		public void onStartTrackingTouch(VirtualThermostat virtualThermostat) {
+			mEvents.add("start");
+		}
+
+		@Override
+		public void onStopTrackingTouch(VirtualThermostat virtualThermostat) {
+			mEvents.add("stop");
+		}
+	}
+
+	private static final class QueueExecutor implements Executor {
+
+		final List<Runnable> mTasks = new ArrayList<Runnable>();
+		boolean mRejecting;
+
+		@Override
+		public void execute(Runnable task) {
+			if (mRejecting) {
+				throw new RejectedExecutionException();
+			}
+			mTasks.add(task);
+		}
+
+		void runAll() {
+			while (!mTasks.isEmpty()) {
+				mTasks.remove(0).run();
+			}
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that readings posted from several threads schedule a single drain,
+ * that only the latest reading is kept, that any int is a reading and that
+ * a detached dial applies readings posted from other threads on the next
+ * frame.
+ */
+public class PendingReadingsTest {
+
+	private static final int THREADS = 4;
+	private static final int READINGS = 10000;
+
+	@Test
+	public void laterReadingsReplaceEarlierOnes() {
+		PendingReadings readings = new PendingReadings();
+		assertTrue(readings.offerCurrentTemperature(215, true));
+		assertFalse(readings.offerCurrentTemperature(-35, true));
+		assertFalse(readings.offerProgress(22));
+
+		readings.beginDrain();
+		long temperature = readings.takeCurrentTemperature();
+		assertTrue(PendingReadings.hasTemperature(temperature));
+		assertEquals(-35, PendingReadings.getTenths(temperature));
+		assertTrue(PendingReadings.isInTenths(temperature));
+		long progress = readings.takeProgress();
+		assertTrue(PendingReadings.hasProgress(progress));
+		assertEquals(22, PendingReadings.getProgress(progress));
+
+		assertFalse(PendingReadings.hasTemperature(readings.takeCurrentTemperature()));
+		assertFalse(PendingReadings.hasProgress(readings.takeProgress()));
+		assertTrue(readings.offerCurrentTemperature(20, false));
+	}
+
+	@Test
+	public void extremeValuesAreReadings() {
+		PendingReadings readings = new PendingReadings();
+		readings.offerProgress(Integer.MIN_VALUE);
+		readings.offerCurrentTemperature(Integer.MIN_VALUE, false);
+
+		readings.beginDrain();
+		long progress = readings.takeProgress();
+		assertTrue(PendingReadings.hasProgress(progress));
+		assertEquals(Integer.MIN_VALUE, PendingReadings.getProgress(progress));
+		long temperature = readings.takeCurrentTemperature();
+		assertTrue(PendingReadings.hasTemperature(temperature));
+		assertEquals(Integer.MIN_VALUE, PendingReadings.getTenths(temperature));
+		assertFalse(PendingReadings.isInTenths(temperature));
+	}
+
+	@Test
+	public void concurrentReadingsScheduleOnce() throws InterruptedException {
+		final PendingReadings readings = new PendingReadings();
+		final AtomicInteger scheduled = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < THREADS; i++) {
+			final int thread = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int r = 0; r < READINGS; r++) {
+						if (readings.offerCurrentTemperature(thread * READINGS + r, true)) {
+							scheduled.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(1, scheduled.get());
+		readings.beginDrain();
+		int tenths = PendingReadings.getTenths(readings.takeCurrentTemperature());
+		assertEquals(READINGS - 1, tenths % READINGS);
+	}
+
+	@Test
+	public void detachedDialAppliesReadingsPostedFromOtherThreadsOnTheNextFrame()
+			throws InterruptedException {
+		final VirtualThermostat thermostat = TestThermostats.create(500, 500);
+		final List<Runnable> mainThread = new ArrayList<Runnable>();
+		thermostat.setReadingsExecutor(new Executor() {
+			@Override
+			public synchronized void execute(Runnable command) {
+				mainThread.add(command);
+			}
+		});
+
+		for (int setpoint = 20; setpoint <= 30; setpoint += 10) {
+			final int progress = setpoint;
+			Thread worker = new Thread() {
+				@Override
+				public void run() {
+					thermostat.postProgress(progress);
+				}
+			};
+			worker.start();
+			worker.join();
+
+			assertEquals(1, mainThread.size());
+			int before = thermostat.getProgress();
+			// On the main thread the readings wait for the next frame
+			mainThread.remove(0).run();
+			assertEquals(before, thermostat.getProgress());
+			thermostat.applyPendingReadings();
+			assertEquals(setpoint, thermostat.getProgress());
+		}
+	}
+}
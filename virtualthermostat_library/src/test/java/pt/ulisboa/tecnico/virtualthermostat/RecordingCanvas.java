@@ -0,0 +1,286 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A Canvas that counts what is drawn on it and, while recording, writes
+ * every call down as a line of text.
+ *
+ * The mockable android.jar draws no pixels, so the calls made by the view
+ * are its output: the tests compare the recorded lines against golden
+ * files and the counters against per frame budgets. Counting allocates
+ * nothing, so it can run while allocations are measured.
+ *
+ * Only the calls and their arguments are meaningful: the paints, rects
+ * and bitmaps of the mockable android.jar keep no state, so colors,
+ * bounds and pixels are checked on a device by RenderingPixelTest.
+ */
+final class RecordingCanvas extends Canvas {
+
+	private final List<String> mOps = new ArrayList<String>();
+	private boolean mRecording;
+
+	private int mDrawCount;
+	private int mTextCount;
+	private int mBitmapCount;
+	private int mDrawableCount;
+	private int mSaveCount;
+
+	/**
+	 * Starts or stops writing the calls down, counting goes on either way.
+	 */
+	void setRecording(boolean recording) {
+		mRecording = recording;
+	}
+
+	/**
+	 * Returns the calls recorded so far, one per line.
+	 */
+	List<String> getOps() {
+		return mOps;
+	}
+
+	/**
+	 * Clears the counters, call before each frame.
+	 */
+	void resetCounts() {
+		mDrawCount = 0;
+		mTextCount = 0;
+		mBitmapCount = 0;
+		mDrawableCount = 0;
+		mSaveCount = 0;
+	}
+
+	/**
+	 * Returns the draw calls, text and bitmaps included.
+	 */
+	int getDrawCount() {
+		return mDrawCount;
+	}
+
+	int getTextCount() {
+		return mTextCount;
+	}
+
+	int getBitmapCount() {
+		return mBitmapCount;
+	}
+
+	/**
+	 * Returns the drawables drawn directly instead of from a prescaled
+	 * bitmap.
+	 */
+	int getDrawableCount() {
+		return mDrawableCount;
+	}
+
+	int getSaveCount() {
+		return mSaveCount;
+	}
+
+	/**
+	 * Called by the test drawables when they are drawn on this canvas.
+	 */
+	void onDrawableDrawn(int width, int height, int intrinsicWidth, int intrinsicHeight) {
+		mDrawCount++;
+		mDrawableCount++;
+		if (mRecording) {
+			mOps.add("drawable " + width + "x" + height + " from " + intrinsicWidth + "x"
+					+ intrinsicHeight);
+		}
+	}
+
+	@Override
+	public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter, Paint paint) {
+		mDrawCount++;
+		if (mRecording) {
+			mOps.add("drawArc " + format(startAngle) + " " + format(sweepAngle) + " " + useCenter);
+		}
+	}
+
+	@Override
+	public void drawText(String text, float x, float y, Paint paint) {
+		mDrawCount++;
+		mTextCount++;
+		if (mRecording) {
+			mOps.add("drawText \"" + text + "\" " + format(x) + " " + format(y));
+		}
+	}
+
+	@Override
+	public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+		mDrawCount++;
+		mTextCount++;
+		if (mRecording) {
+			mOps.add("drawText \"" + new String(text, index, count) + "\" " + format(x) + " "
+					+ format(y));
+		}
+	}
+
+	@Override
+	public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+		mDrawCount++;
+		mBitmapCount++;
+		if (mRecording) {
+			mOps.add("drawBitmap " + format(left) + " " + format(top));
+		}
+	}
+
+	@Override
+	public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+		mDrawCount++;
+		mBitmapCount++;
+		if (mRecording) {
+			mOps.add("drawBitmap scaled");
+		}
+	}
+
+	@Override
+	public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+		mDrawCount++;
+		mBitmapCount++;
+		if (mRecording) {
+			mOps.add("drawBitmap scaled");
+		}
+	}
+
+	@Override
+	public void drawColor(int color) {
+		mDrawCount++;
+		if (mRecording) {
+			mOps.add("drawColor " + Integer.toHexString(color));
+		}
+	}
+
+	@Override
+	public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+		mDrawCount++;
+		if (mRecording) {
+			mOps.add("drawRect " + format(left) + " " + format(top) + " " + format(right) + " "
+					+ format(bottom));
+		}
+	}
+
+	@Override
+	public void drawRect(RectF rect, Paint paint) {
+		mDrawCount++;
+		if (mRecording) {
+			mOps.add("drawRect");
+		}
+	}
+
+	@Override
+	public void drawRect(Rect rect, Paint paint) {
+		mDrawCount++;
+		if (mRecording) {
+			mOps.add("drawRect");
+		}
+	}
+
+	@Override
+	public void drawPath(Path path, Paint paint) {
+		mDrawCount++;
+		if (mRecording) {
+			mOps.add("drawPath");
+		}
+	}
+
+	@Override
+	public void drawCircle(float cx, float cy, float radius, Paint paint) {
+		mDrawCount++;
+		if (mRecording) {
+			mOps.add("drawCircle " + format(cx) + " " + format(cy) + " " + format(radius));
+		}
+	}
+
+	@Override
+	public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+		mDrawCount++;
+		if (mRecording) {
+			mOps.add("drawLine " + format(startX) + " " + format(startY) + " " + format(stopX)
+					+ " " + format(stopY));
+		}
+	}
+
+	@Override
+	public void drawLines(float[] pts, int offset, int count, Paint paint) {
+		mDrawCount++;
+		if (mRecording) {
+			mOps.add("drawLines " + count);
+		}
+	}
+
+	@Override
+	public int save() {
+		mSaveCount++;
+		if (mRecording) {
+			mOps.add("save");
+		}
+		return 0;
+	}
+
+	@Override
+	public int save(int saveFlags) {
+		mSaveCount++;
+		if (mRecording) {
+			mOps.add("save");
+		}
+		return 0;
+	}
+
+	@Override
+	public void restore() {
+		if (mRecording) {
+			mOps.add("restore");
+		}
+	}
+
+	@Override
+	public void restoreToCount(int saveCount) {
+		if (mRecording) {
+			mOps.add("restoreToCount");
+		}
+	}
+
+	@Override
+	public void translate(float dx, float dy) {
+		if (mRecording) {
+			mOps.add("translate " + format(dx) + " " + format(dy));
+		}
+	}
+
+	@Override
+	public void rotate(float degrees) {
+		if (mRecording) {
+			mOps.add("rotate " + format(degrees));
+		}
+	}
+
+	@Override
+	public void scale(float sx, float sy, float px, float py) {
+		if (mRecording) {
+			mOps.add("scale " + format(sx) + " " + format(sy));
+		}
+	}
+
+	@Override
+	public boolean clipRect(RectF rect) {
+		if (mRecording) {
+			mOps.add("clipRect");
+		}
+		return true;
+	}
+
+	private static String format(float value) {
+		return String.format(Locale.US, "%.1f", value);
+	}
+}
@@ -0,0 +1,181 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives a dial through scripted touches and API calls and checks what it
+ * draws: the calls of each frame against golden files, and the draw calls,
+ * texts, drawables and allocations of every frame against budgets.
+ *
+ * The mockable android.jar draws no pixels, so the golden files hold the
+ * recorded canvas calls instead of images. Their paints and bounds read
+ * as zero there, so the colors, the geometry and the invalidated regions
+ * are checked in pixels by the RenderingPixelTest instrumentation test. A
+ * missing golden file fails the test, run ./gradlew test -PupdateGoldens
+ * to record them after an intended change to the drawing.
+ */
+public class RenderingRegressionTest {
+
+	private static final int SIZE = 500;
+	private static final int STEPS = 360;
+	private static final int FRAMES = 20000;
+
+	// Arcs, setpoint and current texts with their label, the sparkline and
+	// the thumb and leaf
+	private static final int MAX_DRAWS_PER_FRAME = 10;
+	private static final int MAX_TEXTS_PER_FRAME = 3;
+	// Prescaled bitmaps can not be created on the mockable android.jar, so
+	// the thumb and leaf drawables are drawn directly, RenderingPixelTest
+	// checks that no bitmap is scaled on a device
+	private static final int MAX_DRAWABLES_PER_FRAME = 2;
+	private static final int MAX_SAVES_PER_FRAME = 2;
+
+	private static final File GOLDEN_DIR = new File("src/test/resources/golden");
+
+	private VirtualThermostat mThermostat;
+	private RecordingCanvas mCanvas;
+	private final float[] mTouchX = new float[STEPS];
+	private final float[] mTouchY = new float[STEPS];
+
+	@Before
+	public void setUp() {
+		mThermostat = TestThermostats.create(SIZE, SIZE);
+		mThermostat.setMin(15);
+		mThermostat.setMax(35);
+		mThermostat.setLeafLimit(21, 26);
+		mCanvas = new RecordingCanvas();
+
+		float radius = SIZE * 0.4f;
+		for (int i = 0; i < STEPS; i++) {
+			double angle = Math.toRadians(i);
+			mTouchX[i] = (float) (SIZE / 2 + radius * Math.cos(angle));
+			mTouchY[i] = (float) (SIZE / 2 + radius * Math.sin(angle));
+		}
+	}
+
+	@Test
+	public void idleDialMatchesGolden() throws IOException {
+		mThermostat.setProgress(23);
+		mThermostat.setCurrentTemperatureTenths(215, false);
+
+		mCanvas.setRecording(true);
+		mThermostat.onDraw(mCanvas);
+		assertMatchesGolden("idle", mCanvas.getOps());
+	}
+
+	@Test
+	public void dragMatchesGolden() throws IOException {
+		mThermostat.setCurrentTemperatureTenths(198, false);
+
+		mCanvas.setRecording(true);
+		for (int step = 0; step < STEPS; step += 30) {
+			mThermostat.updateOnTouch(mTouchX[step], mTouchY[step]);
+			mThermostat.onDraw(mCanvas);
+		}
+		assertMatchesGolden("drag", mCanvas.getOps());
+	}
+
+	@Test
+	public void dragStaysWithinFrameBudget() {
+		mThermostat.setHistoryEnabled(true);
+		// Warm up so that class loading, caches and the leaf load are not counted
+		drag(FRAMES);
+
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		boolean measureAllocations = bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported();
+		long before = 0;
+		if (measureAllocations) {
+			((com.sun.management.ThreadMXBean) bean).setThreadAllocatedMemoryEnabled(true);
+			before = allocatedBytes(bean);
+		}
+		drag(FRAMES);
+		if (measureAllocations) {
+			long allocated = allocatedBytes(bean) - before;
+			// Anything allocated per frame adds up to at least FRAMES bytes
+			assertTrue("drag allocated " + allocated + " bytes over " + FRAMES + " frames",
+					allocated < FRAMES);
+		}
+	}
+
+	private void drag(int frames) {
+		for (int i = 0; i < frames; i++) {
+			int step = i % STEPS;
+			mThermostat.updateOnTouch(mTouchX[step], mTouchY[step]);
+			mThermostat.setCurrentTemperatureTenths(180 + step, false);
+
+			mCanvas.resetCounts();
+			mThermostat.onDraw(mCanvas);
+			assertBudget(i, "draws", mCanvas.getDrawCount(), MAX_DRAWS_PER_FRAME);
+			assertBudget(i, "texts", mCanvas.getTextCount(), MAX_TEXTS_PER_FRAME);
+			assertBudget(i, "drawables", mCanvas.getDrawableCount(), MAX_DRAWABLES_PER_FRAME);
+			assertBudget(i, "saves", mCanvas.getSaveCount(), MAX_SAVES_PER_FRAME);
+		}
+	}
+
+	private static void assertBudget(int frame, String what, int count, int budget) {
+		// Only builds the message when the budget is exceeded
+		if (count > budget) {
+			throw new AssertionError("frame " + frame + " drew " + count + " " + what
+					+ ", the budget is " + budget);
+		}
+	}
+
+	private static long allocatedBytes(ThreadMXBean bean) {
+		return ((com.sun.management.ThreadMXBean) bean)
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static void assertMatchesGolden(String name, List<String> ops) throws IOException {
+		StringBuilder actual = new StringBuilder();
+		for (String op : ops) {
+			actual.append(op).append('\n');
+		}
+		File golden = new File(GOLDEN_DIR, name + ".ops");
+		if (Boolean.getBoolean("golden.update")) {
+			GOLDEN_DIR.mkdirs();
+			Writer writer = new OutputStreamWriter(new FileOutputStream(golden), "UTF-8");
+			try {
+				writer.write(actual.toString());
+			} finally {
+				writer.close();
+			}
+			Assume.assumeTrue("recorded " + golden, false);
+		}
+		assertTrue("missing " + golden + ", record it with ./gradlew test -PupdateGoldens",
+				golden.exists());
+		assertEquals("drawing differs from " + golden, read(golden), actual.toString());
+	}
+
+	private static String read(File file) throws IOException {
+		StringBuilder text = new StringBuilder();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				text.append(line).append('\n');
+			}
+		} finally {
+			reader.close();
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,118 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import android.util.DisplayMetrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds VirtualThermostat instances for the plain JVM tests.
+ *
+ * The framework classes are the mockable android.jar ones, so resources are
+ * faked here and the view is sized by calling onSizeChanged directly.
+ */
+final class TestThermostats {
+
+	private TestThermostats() {
+	}
+
+	static VirtualThermostat create(int width, int height) {
+		VirtualThermostat thermostat = new VirtualThermostat(newContext());
+		thermostat.onSizeChanged(width, height, 0, 0);
+		return thermostat;
+	}
+
+	static Context newContext() {
+		return newContext(new AtomicInteger());
+	}
+
+	/**
+	 * @param drawableLoads
+	 *            Counts the drawables loaded from the resources
+	 */
+	static Context newContext(final AtomicInteger drawableLoads) {
+		final DisplayMetrics metrics = new DisplayMetrics();
+		metrics.density = 2f;
+
+		final Resources resources = new Resources(null, metrics, null) {
+			@Override
+			public DisplayMetrics getDisplayMetrics() {
+				return metrics;
+			}
+
+			@Override
+			public int getColor(int id) {
+				return 0xff888888;
+			}
+
+			@Override
+			public Drawable getDrawable(int id) {
+				drawableLoads.incrementAndGet();
+				return new FakeDrawable(48, 48);
+			}
+		};
+
+		return new ContextWrapper(null) {
+			@Override
+			public Resources getResources() {
+				return resources;
+			}
+		};
+	}
+
+	static final class FakeDrawable extends Drawable {
+
+		private final int mWidth;
+		private final int mHeight;
+		private int mBoundsWidth;
+		private int mBoundsHeight;
+
+		FakeDrawable(int width, int height) {
+			mWidth = width;
+			mHeight = height;
+		}
+
+		@Override
+		public int getIntrinsicWidth() {
+			return mWidth;
+		}
+
+		@Override
+		public int getIntrinsicHeight() {
+			return mHeight;
+		}
+
+		@Override
+		public void setBounds(int left, int top, int right, int bottom) {
+			mBoundsWidth = right - left;
+			mBoundsHeight = bottom - top;
+		}
+
+		@Override
+		public void draw(Canvas canvas) {
+			if (canvas instanceof RecordingCanvas) {
+				((RecordingCanvas) canvas).onDrawableDrawn(mBoundsWidth, mBoundsHeight, mWidth,
+						mHeight);
+			}
+		}
+
+		@Override
+		public void setAlpha(int alpha) {
+		}
+
+		@Override
+		public void setColorFilter(ColorFilter colorFilter) {
+		}
+
+		@Override
+		public int getOpacity() {
+			return PixelFormat.TRANSLUCENT;
+		}
+	}
+}
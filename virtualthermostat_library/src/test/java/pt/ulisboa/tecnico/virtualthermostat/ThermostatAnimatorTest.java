@@ -0,0 +1,75 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThermostatAnimatorTest {
+
+	private static final long SECOND = 1000000000L;
+
+	@Test
+	public void finishBeforeTheFirstFrameEndsEveryAnimation() {
+		VirtualThermostat thermostat = TestThermostats.create(500, 500);
+		ThermostatAnimator animator = new ThermostatAnimator(thermostat);
+		animator.animateSweep(0, 120);
+		animator.animateBackground(0xff000000, 0xffffffff);
+		animator.animateCurrentTemperature(180, 215);
+
+		animator.finish();
+		assertFalse(animator.isSweepRunning());
+		assertFalse(animator.isCurrentTemperatureRunning());
+		assertEquals(215, animator.getCurrentTemperature());
+
+		// A frame already queued finds nothing left to animate
+		animator.onFrame(SECOND);
+		assertFalse(animator.isSweepRunning());
+		assertEquals(215, animator.getCurrentTemperature());
+	}
+
+	@Test
+	public void finishMidwayJumpsToTheEnd() {
+		VirtualThermostat thermostat = TestThermostats.create(500, 500);
+		ThermostatAnimator animator = new ThermostatAnimator(thermostat);
+		animator.animateCurrentTemperature(100, 200);
+		animator.onFrame(SECOND);
+		animator.onFrame(SECOND + 100000000L);
+		assertTrue(animator.isCurrentTemperatureRunning());
+
+		animator.finish();
+		assertFalse(animator.isCurrentTemperatureRunning());
+		assertEquals(200, animator.getCurrentTemperature());
+	}
+
+	@Test
+	public void progressArcFollowsTheSweepShown() {
+		VirtualThermostat thermostat = TestThermostats.create(500, 500);
+		thermostat.setProgress(0);
+		// Animating up from step 0, the setpoint is not there yet
+		thermostat.applyAnimatedSweep(40, false);
+		assertEquals(3, countArcs(thermostat));
+
+		// Animating down to step 0, the arc shrinks until the last frame
+		thermostat.setProgress(50);
+		thermostat.setProgress(0);
+		thermostat.applyAnimatedSweep(40, false);
+		assertEquals(3, countArcs(thermostat));
+		thermostat.applyAnimatedSweep(0, true);
+		assertEquals(2, countArcs(thermostat));
+	}
+
+	private static int countArcs(VirtualThermostat thermostat) {
+		RecordingCanvas canvas = new RecordingCanvas();
+		canvas.setRecording(true);
+		thermostat.onDraw(canvas);
+		int arcs = 0;
+		for (String op : canvas.getOps()) {
+			if (op.startsWith("drawArc")) {
+				arcs++;
+			}
+		}
+		return arcs;
+	}
+}
@@ -0,0 +1,56 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the shared resources are only held by attached dials and that
+ * the setpoint labels kept for past ranges are bounded.
+ */
+public class ThermostatResourcesTest {
+
+	@Test
+	public void dialHoldsSharedResourcesOnlyWhileAttached() {
+		Context context = TestThermostats.newContext();
+		Resources res = context.getResources();
+		VirtualThermostat thermostat = new VirtualThermostat(context);
+		thermostat.onSizeChanged(500, 500, 0, 0);
+		thermostat.setProgress(60);
+		thermostat.onDraw(new Canvas());
+		assertFalse(ThermostatResources.isPooled(res));
+
+		thermostat.onAttachedToWindow();
+		assertTrue(ThermostatResources.isPooled(res));
+		thermostat.onDraw(new Canvas());
+
+		thermostat.onDetachedFromWindow();
+		assertFalse(ThermostatResources.isPooled(res));
+		// Still drawable after it gave the shared resources back
+		thermostat.onSizeChanged(300, 300, 500, 500);
+		thermostat.onDraw(new Canvas());
+	}
+
+	@Test
+	public void setpointLabelsOfOldRangesAreDropped() {
+		ThermostatResources resources = ThermostatResources.acquire(
+				TestThermostats.newContext().getResources());
+		try {
+			LabelCache first = resources.getSetpointLabels(0, 10);
+			assertSame(first, resources.getSetpointLabels(0, 10));
+			for (int i = 1; i <= ThermostatResources.MAX_SETPOINT_RANGES; i++) {
+				resources.getSetpointLabels(0, 10 + i);
+			}
+			assertNotSame(first, resources.getSetpointLabels(0, 10));
+		} finally {
+			resources.release();
+		}
+	}
+}
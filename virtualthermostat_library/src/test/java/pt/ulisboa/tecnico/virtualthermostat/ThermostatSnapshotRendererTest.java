@@ -0,0 +1,73 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import pt.ulisboa.tecnico.virtualthermostat.core.ThermostatZones;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that rendering the zones on a pool of threads hands every zone to
+ * the listener exactly once.
+ */
+public class ThermostatSnapshotRendererTest {
+
+	@Test
+	public void renderAllDrawsEveryZoneOnce() {
+		ThermostatZones zones = new ThermostatZones(1000, 15, 35, 0xffF57F17);
+		for (int i = 0; i < zones.getCount(); i++) {
+			zones.setSetpoint(i, 15 + i % 21);
+			zones.setCurrentTemperatureTenths(i, 150 + i);
+		}
+		ThermostatSnapshotRenderer renderer = new ThermostatSnapshotRenderer(
+				TestThermostats.newContext().getResources(), 200, 200);
+		renderer.setArc(60, 240, 180, true);
+		renderer.setLeafRange(18, 21);
+
+		final AtomicIntegerArray calls = new AtomicIntegerArray(zones.getCount());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			renderer.renderAll(executor, zones, new ThermostatSnapshotRenderer.OnSnapshotListener() {
+				@Override
+				public void onSnapshot(int zone, Bitmap bitmap) {
+					calls.incrementAndGet(zone);
+				}
+			});
+		} finally {
+			executor.shutdown();
+		}
+		for (int i = 0; i < zones.getCount(); i++) {
+			assertEquals("zone " + i, 1, calls.get(i));
+		}
+	}
+
+	@Test
+	public void listenerExceptionsReachTheCaller() {
+		ThermostatZones zones = new ThermostatZones(40, 15, 35, 0xffF57F17);
+		ThermostatSnapshotRenderer renderer = new ThermostatSnapshotRenderer(
+				TestThermostats.newContext().getResources(), 100, 100);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			renderer.renderAll(executor, zones, new ThermostatSnapshotRenderer.OnSnapshotListener() {
+				@Override
+				public void onSnapshot(int zone, Bitmap bitmap) {
+					if (zone == 20) {
+						throw new IllegalStateException("zone 20");
+					}
+				}
+			});
+			fail("expected the listener exception");
+		} catch (IllegalStateException e) {
+			assertEquals("zone 20", e.getMessage());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.view.MotionEvent;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that touch samples come out in order and that a full queue drops
+ * moves before the end of a gesture.
+ */
+public class TouchQueueTest {
+
+	@Test
+	public void samplesArePolledInOrder() {
+		TouchQueue queue = new TouchQueue(16);
+		assertTrue(queue.offer(MotionEvent.ACTION_DOWN, 1, 2));
+		assertTrue(queue.offer(MotionEvent.ACTION_MOVE, 3, 4));
+
+		assertTrue(queue.poll());
+		assertEquals(MotionEvent.ACTION_DOWN, queue.getAction());
+		assertEquals(1f, queue.getX(), 0f);
+		assertEquals(2f, queue.getY(), 0f);
+		assertTrue(queue.poll());
+		assertEquals(MotionEvent.ACTION_MOVE, queue.getAction());
+		assertEquals(3f, queue.getX(), 0f);
+		assertFalse(queue.poll());
+	}
+
+	@Test
+	public void fullQueueKeepsRoomForTheEndOfAGesture() {
+		TouchQueue queue = new TouchQueue(16);
+		int moves = 0;
+		while (queue.offer(MotionEvent.ACTION_MOVE, moves, 0)) {
+			moves++;
+		}
+		assertEquals(8, moves);
+		assertEquals(1, queue.getDroppedCount());
+		assertTrue(queue.offer(MotionEvent.ACTION_UP, 0, 0));
+
+		for (int i = 0; i < moves; i++) {
+			assertTrue(queue.poll());
+		}
+		assertTrue(queue.poll());
+		assertEquals(MotionEvent.ACTION_UP, queue.getAction());
+		assertFalse(queue.poll());
+	}
+}
@@ -0,0 +1,123 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.graphics.Canvas;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import pt.ulisboa.tecnico.virtualthermostat.core.EventLog;
+import pt.ulisboa.tecnico.virtualthermostat.core.EventRecorder;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fails when a drag over the dial, with the current temperature changing
+ * along, allocates in updateProgress, setCurrentTemperatureTenths or onDraw.
+ */
+public class VirtualThermostatAllocationTest {
+
+	private static final int SIZE = 500;
+	private static final int FRAMES = 20000;
+	private static final int STEPS = 360;
+
+	@Rule
+	public final TemporaryFolder mFolder = new TemporaryFolder();
+
+	private com.sun.management.ThreadMXBean mThreadBean;
+	private EventRecorder mRecorder;
+	private VirtualThermostat mThermostat;
+	private Canvas mCanvas;
+	private final float[] mTouchX = new float[STEPS];
+	private final float[] mTouchY = new float[STEPS];
+
+	@Before
+	public void setUp() throws IOException {
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		mThreadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(mThreadBean.isThreadAllocatedMemorySupported());
+		mThreadBean.setThreadAllocatedMemoryEnabled(true);
+
+		mThermostat = TestThermostats.create(SIZE, SIZE);
+		mThermostat.setMin(15);
+		mThermostat.setMax(35);
+		mThermostat.setLeafLimit(21, 26);
+		mThermostat.setOnVirtualThermostatChangeListener(new CountingListener());
+		mThermostat.setMaxCallbackRate(60);
+		mThermostat.setMetricsEnabled(true);
+		mThermostat.setHistoryEnabled(true);
+		mRecorder = new EventRecorder(EventLog.open(mFolder.newFile("events.bin")));
+		mThermostat.setEventRecorder(mRecorder, 0);
+		mCanvas = new Canvas();
+
+		float radius = SIZE * 0.4f;
+		for (int i = 0; i < STEPS; i++) {
+			double angle = Math.toRadians(i);
+			mTouchX[i] = (float) (SIZE / 2 + radius * Math.cos(angle));
+			mTouchY[i] = (float) (SIZE / 2 + radius * Math.sin(angle));
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (mRecorder != null) {
+			mRecorder.close();
+		}
+	}
+
+	@Test
+	public void dragDoesNotAllocate() {
+		// Warm up so that class loading and JIT work is not counted
+		drag(FRAMES);
+
+		long before = mThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		drag(FRAMES);
+		long allocated = mThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+		// Anything allocated per frame adds up to at least FRAMES bytes, a
+		// constant below that is the cost of the measurement itself
+		assertTrue("drag allocated " + allocated + " bytes over " + FRAMES + " frames",
+				allocated < FRAMES);
+	}
+
+	private void drag(int frames) {
+		for (int i = 0; i < frames; i++) {
+			int step = i % STEPS;
+			if ((i & 1) == 0) {
+				mThermostat.updateOnTouch(mTouchX[step], mTouchY[step]);
+			} else {
+				// A batched move event, applied on the next frame
+				int previous = (step + STEPS - 1) % STEPS;
+				mThermostat.queueTouch(mTouchX[previous], mTouchY[previous]);
+				mThermostat.queueTouch(mTouchX[step], mTouchY[step]);
+				mThermostat.onTouchFrame(i);
+			}
+			mThermostat.setCurrentTemperatureTenths(180 + step);
+			mThermostat.onDraw(mCanvas);
+		}
+	}
+
+	private static final class CountingListener implements VirtualThermostat.OnVirtualThermostatChangeListener {
+
+		int changes;
+
+		@Override
+		public void onProgressChanged(VirtualThermostat virtualThermostat, int progress, boolean fromUser) {
+			changes++;
+		}
+
+		@Override
+		public void onStartTrackingTouch(VirtualThermostat virtualThermostat) {
+		}
+
+		@Override
+		public void onStopTrackingTouch(VirtualThermostat virtualThermostat) {
+		}
+	}
+}
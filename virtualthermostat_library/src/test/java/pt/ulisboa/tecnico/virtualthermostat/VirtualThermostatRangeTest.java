@@ -0,0 +1,33 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks how setMin and setMax change the range of a dial.
+ */
+public class VirtualThermostatRangeTest {
+
+	@Test
+	public void setMinKeepsTheNumberOfSteps() {
+		VirtualThermostat thermostat = TestThermostats.create(500, 500);
+		thermostat.setMax(30);
+		thermostat.setMin(10);
+		assertEquals(10, thermostat.getMin());
+		assertEquals(40, thermostat.getMax());
+	}
+
+	@Test
+	public void setMaxChangesTheNumberOfSteps() {
+		VirtualThermostat thermostat = TestThermostats.create(500, 500);
+		thermostat.setMin(15);
+		thermostat.setMax(35);
+		assertEquals(15, thermostat.getMin());
+		assertEquals(35, thermostat.getMax());
+
+		thermostat.setProgress(30);
+		thermostat.setMax(25);
+		assertEquals(25, thermostat.getProgress());
+	}
+}
@@ -0,0 +1,47 @@
+package pt.ulisboa.tecnico.virtualthermostat;
+
+import android.content.Context;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that creating a dial loads no drawable before it is drawn, that the
+ * first draw loads only those it shows, and that the leaf icon is loaded
+ * once the setpoint enters the eco range.
+ */
+public class VirtualThermostatStartupTest {
+
+	@Test
+	public void leafIsLoadedWhenFirstShown() {
+		AtomicInteger loads = new AtomicInteger();
+		Context context = TestThermostats.newContext(loads);
+		VirtualThermostat thermostat = new VirtualThermostat(context,
+				ThermostatStyle.getDefault(context.getResources()));
+		thermostat.setLeafLimit(50, 60);
+		thermostat.onSizeChanged(500, 500, 0, 0);
+		assertEquals(0, loads.get());
+
+		thermostat.onDraw(new Canvas());
+		// The thumb only
+		assertEquals(1, loads.get());
+
+		thermostat.setProgress(55);
+		thermostat.onDraw(new Canvas());
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void styleIsResolvedOncePerResources() {
+		Context context = TestThermostats.newContext();
+		ThermostatStyle style = ThermostatStyle.getDefault(context.getResources());
+		assertEquals(style, ThermostatStyle.getDefault(context.getResources()));
+		assertEquals(100, style.getMax());
+		assertEquals(360, style.getSweepAngle());
+		assertEquals(8, style.getProgressWidth());
+	}
+}